@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.FileMisc;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Catalogs a synthetic directory of 5,000 plugins with a cold {@link PluginCatalogCache}.
+ *
+ * `parallelism=1 leadingEntries=false` is the serial, central-directory scan which
+ * `PluginCatalog` used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PluginCatalogBenchmark {
+	private static final int PLUGINS = 5_000;
+	private static final int CLASSES_PER_PLUGIN = 50;
+
+	@Param({"1", "8"})
+	public int parallelism;
+
+	@Param({"false", "true"})
+	public boolean leadingEntries;
+
+	private File root;
+	private File plugins;
+	private List<File> files;
+
+	@Setup(Level.Trial)
+	public void createPlugins() throws IOException {
+		root = Files.createTempDirectory("goomph-plugin-catalog-benchmark").toFile();
+		plugins = new File(root, "plugins");
+		FileMisc.mkdirs(plugins);
+		byte[] content = new byte[512];
+		for (int i = 0; i < PLUGINS; ++i) {
+			Manifest manifest = new Manifest();
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			manifest.getMainAttributes().putValue("Bundle-SymbolicName", "plugin" + i + ";singleton:=true");
+			manifest.getMainAttributes().putValue("Bundle-Version", "1.0." + i);
+			if (i % 10 == 0) {
+				manifest.getMainAttributes().putValue("Eclipse-PlatformFilter", "(& (osgi.ws=win32) (osgi.os=win32) (osgi.arch=x86_64))");
+			}
+			try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(plugins, "plugin" + i + "_1.0." + i + ".jar")), manifest)) {
+				for (int c = 0; c < CLASSES_PER_PLUGIN; ++c) {
+					output.putNextEntry(new ZipEntry("plugin" + i + "/internal/Class" + c + ".class"));
+					output.write(content);
+				}
+			}
+		}
+		files = FileMisc.list(plugins);
+	}
+
+	@Setup(Level.Invocation)
+	public void coldCache() throws IOException {
+		File cache = new File(root, "cache");
+		FileMisc.cleanDir(cache);
+		GoomphCacheLocations.override_pluginCatalog = cache;
+	}
+
+	@TearDown(Level.Trial)
+	public void deletePlugins() throws IOException {
+		GoomphCacheLocations.override_pluginCatalog = null;
+		FileMisc.forceDelete(root);
+	}
+
+	@Benchmark
+	public List<PluginCatalogCache.Entry> catalog() throws IOException {
+		return new PluginCatalogCache(plugins, SwtPlatform.getAll(), parallelism, leadingEntries).entries(files);
+	}
+}
@@ -28,11 +28,16 @@ import com.diffplug.common.tree.TreeStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.net.URI;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -46,14 +51,22 @@ import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.BufferedSink;
 import okio.Okio;
+import okio.Source;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.Project;
 
 /** Miscellaneous utilties for copying files around. */
 public class FileMisc {
-	/** Downloads the url to the destination file (with support for redirects). */
+	/** Downloads the url to the destination file (with support for redirects and local `file:` urls). */
 	public static void download(String url, File dst) throws IOException {
 		mkdirs(dst.getParentFile());
+		if (url.regionMatches(true, 0, "file:", 0, "file:".length())) {
+			try (Source source = Okio.source(new File(URI.create(url)));
+					BufferedSink sink = Okio.buffer(Okio.sink(dst))) {
+				sink.writeAll(source);
+			}
+			return;
+		}
 		OkHttpClient client = new OkHttpClient.Builder().build();
 		Request req = new Request.Builder().url(url).build();
 		try (Response response = client.newCall(req).execute()) {
@@ -282,6 +295,23 @@ public class FileMisc {
 		mkdirs(dirToRemove);
 	}
 
+	/**
+	 * Hard links `dst` to `src` if the filesystem allows it, else copies it
+	 * (keeping its timestamp).  Any existing `dst` is replaced.
+	 *
+	 * Because a hard link shares its content with `src`, `dst` must be
+	 * treated as read-only.
+	 */
+	public static void linkOrCopy(File src, File dst) throws IOException {
+		java.nio.file.Files.deleteIfExists(dst.toPath());
+		try {
+			java.nio.file.Files.createLink(dst.toPath(), src.toPath());
+		} catch (IOException | UnsupportedOperationException e) {
+			// different filesystems, or a filesystem without hard links
+			java.nio.file.Files.copy(src.toPath(), dst.toPath(), StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	/**
 	 * Flattens a single directory (moves its children to be its peers, then deletes the given directory.
 	 * 
@@ -358,6 +388,32 @@ public class FileMisc {
 		return inputs.stream().map(project::file).collect(Collectors.toList());
 	}
 
+	/////////////
+	// Hashing //
+	/////////////
+	/** Returns a new SHA-256 digest. */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw Errors.asRuntime(e);
+		}
+	}
+
+	/** Returns the given bytes as lowercase hex digits. */
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/** Returns the first 16 hex digits of the SHA-256 of the given string, for short and stable file names. */
+	public static String shortHash(String input) {
+		return toHex(Arrays.copyOf(sha256().digest(input.getBytes(StandardCharsets.UTF_8)), 8));
+	}
+
 	///////////////////////////
 	// Unix file permissions //
 	///////////////////////////
@@ -409,6 +465,27 @@ public class FileMisc {
 		return result;
 	}
 
+	/** Converts the permission bits of a chmod-style octal file mode to a set of {@link PosixFilePermission}. */
+	public static Set<PosixFilePermission> fromOctalFileModeInt(int mode) {
+		Set<PosixFilePermission> result = EnumSet.noneOf(PosixFilePermission.class);
+		addIfSet(result, mode, OWNER_READ_FILEMODE, PosixFilePermission.OWNER_READ);
+		addIfSet(result, mode, OWNER_WRITE_FILEMODE, PosixFilePermission.OWNER_WRITE);
+		addIfSet(result, mode, OWNER_EXEC_FILEMODE, PosixFilePermission.OWNER_EXECUTE);
+		addIfSet(result, mode, GROUP_READ_FILEMODE, PosixFilePermission.GROUP_READ);
+		addIfSet(result, mode, GROUP_WRITE_FILEMODE, PosixFilePermission.GROUP_WRITE);
+		addIfSet(result, mode, GROUP_EXEC_FILEMODE, PosixFilePermission.GROUP_EXECUTE);
+		addIfSet(result, mode, OTHERS_READ_FILEMODE, PosixFilePermission.OTHERS_READ);
+		addIfSet(result, mode, OTHERS_WRITE_FILEMODE, PosixFilePermission.OTHERS_WRITE);
+		addIfSet(result, mode, OTHERS_EXEC_FILEMODE, PosixFilePermission.OTHERS_EXECUTE);
+		return result;
+	}
+
+	private static void addIfSet(Set<PosixFilePermission> result, int mode, int bit, PosixFilePermission permission) {
+		if ((mode & bit) != 0) {
+			result.add(permission);
+		}
+	}
+
 	/** Converts a set of {@link PosixFilePermission} to chmod-style octal file mode. */
 	public static String toOctalFileMode(Set<PosixFilePermission> permissions) {
 		int value = toOctalFileModeInt(permissions);
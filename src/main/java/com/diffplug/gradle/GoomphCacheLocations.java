@@ -37,6 +37,9 @@ import org.gradle.api.Project;
  * - {@link #pdeBootstrapUrl()}
  * - {@link #bundlePool()}
  * - {@link #workspaces()}
+ * - {@link #installedJreDiscovery()}
+ * - {@link #pdeTargetPlatforms()}
+ * - {@link #pluginCatalog()}
  *
  * All these values can be overridden either by setting the
  * value of the `public static override_whatever` variable.
@@ -93,6 +96,44 @@ public class GoomphCacheLocations {
 
 	public static File override_workspaces = null;
 
+	/**
+	 * {@link com.diffplug.gradle.oomph.InstalledJreDiscovery} looks for JDKs
+	 * in the common install locations (sdkman, `/usr/lib/jvm`, gradle toolchains,
+	 * etc).  The version of each JDK it finds is cached here, so that
+	 * we don't have to re-read every JDK on every build.
+	 */
+	public static File installedJreDiscovery() {
+		return defOverride(ROOT + "/installed-jre-discovery", override_installedJreDiscovery);
+	}
+
+	public static File override_installedJreDiscovery = null;
+
+	/**
+	 * Every `ideSetupWorkspace` starts from an empty workspace,
+	 * which means that PDE has to resolve the targetplatform from
+	 * scratch.  Once a targetplatform has been resolved, PDE's state
+	 * for it is cached here, keyed by the content of its installations,
+	 * so that the next workspace can start from it.
+	 */
+	public static File pdeTargetPlatforms() {
+		return defOverride(ROOT + "/pde-targetplatforms", override_pdeTargetPlatforms);
+	}
+
+	public static File override_pdeTargetPlatforms = null;
+
+	/**
+	 * The PDE tasks catalog every plugin in their plugin paths, which
+	 * means reading the manifest of every jar.  The name, version, and
+	 * platform filter of each plugin is cached here, keyed by the size
+	 * and timestamp of its jar, so that only new or changed jars
+	 * need to be opened.
+	 */
+	public static File pluginCatalog() {
+		return defOverride(ROOT + "/plugin-catalog", override_pluginCatalog);
+	}
+
+	public static File override_pluginCatalog = null;
+
 	/**
 	 * Location where the p2-bootstrap application should be downloaded from.
 	 *
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.gradle.api.Project;
+
+/**
+ * Offline-first cache for the metadata which goomph downloads into {@link GoomphCacheLocations},
+ * such as the `artifacts.jar` of an eclipse release.
+ *
+ * Next to each cached file is a `.metadata` file with the URL it came from, its `ETag` and
+ * `Last-Modified` headers, and when it was last checked.  A cached file is used as-is until
+ * {@link #revalidateAfter} has passed, and is then revalidated with a conditional GET, which
+ * only downloads it again if it changed.  If the revalidation fails, the cached file is used
+ * anyway, and the revalidation isn't retried until {@link #retryAfterFailure} has passed, so
+ * that an unreachable server doesn't cost every build a connection timeout.
+ *
+ * When gradle runs with `--offline`, nothing is downloaded or revalidated, and anything which
+ * isn't in the cache fails fast with an explanation, unless it comes from a local `file:` URL.  So an air-gapped CI can run the build
+ * online once to prime the cache (or copy in a primed `~/.goomph`), and never touch the network
+ * again.
+ *
+ * The interval can be set with the project property `goomph_metadataRevalidationDays`, where
+ * `0` revalidates every time and a negative number never revalidates.
+ */
+@SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+public class MetadataCache {
+	private MetadataCache() {}
+
+	/** True if gradle is running with `--offline`. */
+	public static boolean offline = false;
+
+	private static final Duration DEFAULT_REVALIDATE_AFTER = Duration.ofDays(30);
+	private static final Duration DEFAULT_RETRY_AFTER_FAILURE = Duration.ofHours(1);
+
+	/** How long a cached file is trusted before it is revalidated, or null to never revalidate. */
+	public static Duration revalidateAfter = DEFAULT_REVALIDATE_AFTER;
+
+	/** How long to wait before retrying a revalidation which failed. */
+	public static Duration retryAfterFailure = DEFAULT_RETRY_AFTER_FAILURE;
+
+	/**
+	 * Reads `--offline` and `goomph_metadataRevalidationDays` from the given project.  Everything
+	 * else goes back to its default, so that nothing leaks from one build to the next in the same
+	 * daemon.
+	 */
+	public static void initFromProject(Project project) {
+		offline = project.getGradle().getStartParameter().isOffline();
+		Object days = project.findProperty("goomph_metadataRevalidationDays");
+		if (days == null) {
+			revalidateAfter = DEFAULT_REVALIDATE_AFTER;
+		} else {
+			long parsed = Long.parseLong(days.toString().trim());
+			revalidateAfter = parsed < 0 ? null : Duration.ofDays(parsed);
+		}
+		retryAfterFailure = DEFAULT_RETRY_AFTER_FAILURE;
+	}
+
+	private static final String URL = "url";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "lastModified";
+	private static final String CHECKED = "checked";
+	private static final String FAILED = "failed";
+
+	/**
+	 * Returns `dst` after making sure that it holds the content of `url`, downloading it if it
+	 * isn't cached, and revalidating it if it is stale.
+	 *
+	 * @throws IllegalStateException if gradle is `--offline` and it isn't cached
+	 */
+	public static File get(String url, File dst) throws IOException {
+		File metadataFile = metadataFile(dst);
+		Properties metadata = readMetadata(metadataFile);
+		boolean isCached = dst.isFile() && dst.length() > 0 && url.equals(metadata.getProperty(URL, url));
+		if (isCached && !metadata.containsKey(URL)) {
+			// downloaded by an older goomph, so we trust it for now and revalidate it later
+			metadata.setProperty(URL, url);
+			metadata.setProperty(CHECKED, Long.toString(System.currentTimeMillis()));
+			writeMetadata(metadataFile, metadata);
+		} else if (!isCached) {
+			checkOnline(url, dst);
+			download(url, dst, new Properties());
+		} else if (!offline && isStale(metadata)) {
+			try {
+				download(url, dst, metadata);
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Unable to revalidate " + url + ", using the cached copy at " + dst + ": " + e.getMessage());
+				metadata.setProperty(FAILED, Long.toString(System.currentTimeMillis()));
+				writeMetadata(metadataFile, metadata);
+			}
+		}
+		return dst;
+	}
+
+	/**
+	 * Throws an exception which explains how to prime the cache if gradle is `--offline`,
+	 * for anything which would need to be downloaded into `dst`.
+	 */
+	public static void checkOnline(String what, File dst) {
+		if (offline) {
+			throw new IllegalStateException("Gradle is running with --offline, but goomph needs " + what + " which isn't in its cache at " + dst + ".\n" +
+					"Run the build once without --offline to fill the cache, or copy in a ~/.goomph which has it.");
+		}
+	}
+
+	/** Same as {@link #checkOnline(String, File)}, but only if it would be downloaded from `url` over the network. */
+	public static void checkOnline(String what, String url, File dst) {
+		if (isRemote(url)) {
+			checkOnline(what, dst);
+		}
+	}
+
+	/** Returns true unless the given URL is local, e.g. a `file:` URL. */
+	static boolean isRemote(String url) {
+		String lower = url.toLowerCase(Locale.ROOT);
+		return lower.startsWith("http:") || lower.startsWith("https:");
+	}
+
+	private static boolean isStale(Properties metadata) {
+		if (revalidateAfter == null) {
+			return false;
+		}
+		try {
+			long now = System.currentTimeMillis();
+			if (now - Long.parseLong(metadata.getProperty(FAILED, "0")) < retryAfterFailure.toMillis()) {
+				return false;
+			}
+			return now - Long.parseLong(metadata.getProperty(CHECKED, "0")) >= revalidateAfter.toMillis();
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	/** Downloads the url, conditionally if the metadata has an `ETag` or `Last-Modified`, then updates the metadata. */
+	private static void download(String url, File dst, Properties metadata) throws IOException {
+		FileMisc.mkdirs(dst.getParentFile());
+		OkHttpClient client = new OkHttpClient.Builder().build();
+		Request.Builder request = new Request.Builder().url(url);
+		String etag = metadata.getProperty(ETAG);
+		if (etag != null) {
+			request.header("If-None-Match", etag);
+		}
+		String lastModified = metadata.getProperty(LAST_MODIFIED);
+		if (lastModified != null) {
+			request.header("If-Modified-Since", lastModified);
+		}
+		try (Response response = client.newCall(request.build()).execute()) {
+			if (response.code() != HTTP_NOT_MODIFIED) {
+				ResponseBody body = response.body();
+				if (!response.isSuccessful()) {
+					throw new IllegalArgumentException(url + "\nreceived http code " + response.code() + (body == null ? "" : "\n" + body.string()));
+				}
+				if (body == null) {
+					throw new IllegalArgumentException("Body was expected to be non-null");
+				}
+				// download next to the destination, so a failure never leaves a partial file behind
+				File temp = File.createTempFile(dst.getName(), ".tmp", dst.getParentFile());
+				try {
+					try (InputStream input = body.byteStream()) {
+						Files.copy(input, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					}
+					Files.move(temp.toPath(), dst.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} finally {
+					Files.deleteIfExists(temp.toPath());
+				}
+				setOrRemove(metadata, ETAG, response.header("ETag"));
+				setOrRemove(metadata, LAST_MODIFIED, response.header("Last-Modified"));
+			}
+		}
+		metadata.setProperty(URL, url);
+		metadata.setProperty(CHECKED, Long.toString(System.currentTimeMillis()));
+		metadata.remove(FAILED);
+		writeMetadata(metadataFile(dst), metadata);
+	}
+
+	private static final int HTTP_NOT_MODIFIED = 304;
+
+	private static void setOrRemove(Properties metadata, String key, String value) {
+		if (value == null) {
+			metadata.remove(key);
+		} else {
+			metadata.setProperty(key, value);
+		}
+	}
+
+	static File metadataFile(File dst) {
+		return new File(dst.getParentFile(), dst.getName() + ".metadata");
+	}
+
+	private static Properties readMetadata(File metadataFile) {
+		Properties metadata = new Properties();
+		if (metadataFile.isFile()) {
+			try (InputStream input = Files.newInputStream(metadataFile.toPath())) {
+				metadata.load(input);
+			} catch (IOException | IllegalArgumentException e) {
+				// a corrupt metadata file just means we download again
+				metadata.clear();
+			}
+		}
+		return metadata;
+	}
+
+	/** Writes the metadata to a temporary file which atomically replaces the old one, so a concurrent reader never sees half of it. */
+	private static void writeMetadata(File metadataFile, Properties metadata) throws IOException {
+		File temp = File.createTempFile(metadataFile.getName(), ".tmp", metadataFile.getParentFile());
+		try {
+			try (OutputStream output = Files.newOutputStream(temp.toPath())) {
+				metadata.store(output, "goomph metadata cache");
+			}
+			Files.move(temp.toPath(), metadataFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
@@ -26,6 +26,7 @@ public abstract class ProjectPlugin implements Plugin<Project> {
 	@Override
 	public final void apply(Project project) {
 		project.afterEvaluate(GoomphCacheLocations::initFromProject);
+		MetadataCache.initFromProject(project);
 		// apply the plugin once
 		applyOnce(project);
 	}
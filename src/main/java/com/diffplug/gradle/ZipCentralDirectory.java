@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The central directory of a zip, read straight from its bytes, for the
+ * things {@link java.util.zip.ZipFile} won't tell us: the external attributes
+ * (unix permissions), where each entry's local header is, and the raw records
+ * themselves so they can be copied without being re-encoded.
+ */
+class ZipCentralDirectory {
+	static final int LOCAL_HEADER = 0x04034b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_DIR_HEADER = 0x02014b50;
+	static final int CENTRAL_DIR_HEADER_SIZE = 46;
+	static final int END_OF_CENTRAL_DIR = 0x06054b50;
+	static final int END_OF_CENTRAL_DIR_SIZE = 22;
+	static final int ZIP64_END_OF_CENTRAL_DIR_LOCATOR = 0x07064b50;
+	static final int ZIP64_END_OF_CENTRAL_DIR = 0x06064b50;
+	private static final int MAX_COMMENT = 0xFFFF;
+	/** The largest value of a 4-byte field, which means "see the zip64 extra field". */
+	static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	/** The "version made by" host for unix, whose external attributes hold `st_mode` in their upper 16 bits. */
+	private static final int HOST_UNIX = 3;
+	private static final int S_IFMT = 0170000;
+	private static final int S_IFREG = 0100000;
+
+	/** A single record of the central directory. */
+	static class Entry {
+		/** The record exactly as it appears in the central directory, including its name, extra, and comment. */
+		final byte[] record;
+		final String name;
+
+		private Entry(byte[] record) {
+			this.record = record;
+			this.name = new String(record, CENTRAL_DIR_HEADER_SIZE, nameLength(), StandardCharsets.UTF_8);
+		}
+
+		private ByteBuffer buffer() {
+			return ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		int flags() {
+			return Short.toUnsignedInt(buffer().getShort(8));
+		}
+
+		int method() {
+			return Short.toUnsignedInt(buffer().getShort(10));
+		}
+
+		long crc() {
+			return Integer.toUnsignedLong(buffer().getInt(16));
+		}
+
+		long compressedSize() {
+			return Integer.toUnsignedLong(buffer().getInt(20));
+		}
+
+		long size() {
+			return Integer.toUnsignedLong(buffer().getInt(24));
+		}
+
+		int nameLength() {
+			return Short.toUnsignedInt(buffer().getShort(28));
+		}
+
+		long localHeaderOffset() {
+			return Integer.toUnsignedLong(buffer().getInt(42));
+		}
+
+		/** True if any of the sizes or the offset are stored in a zip64 extra field instead. */
+		boolean isZip64() {
+			return compressedSize() == ZIP64_MAGIC || size() == ZIP64_MAGIC || localHeaderOffset() == ZIP64_MAGIC;
+		}
+
+		/** The permission bits of a regular file zipped on unix, or -1 if it wasn't. */
+		int unixMode() {
+			ByteBuffer buffer = buffer();
+			int host = (buffer.getShort(4) >> 8) & 0xFF;
+			int mode = (buffer.getInt(38) >>> 16) & 0xFFFF;
+			if (host == HOST_UNIX && (mode & S_IFMT) == S_IFREG && (mode & 0777) != 0) {
+				return mode & 0777;
+			} else {
+				return -1;
+			}
+		}
+	}
+
+	final List<Entry> entries;
+	/** The offset of the central directory, which is also where the last entry's data ends. */
+	final long offset;
+	/** The zip's comment. */
+	final byte[] comment;
+
+	private ZipCentralDirectory(List<Entry> entries, long offset, byte[] comment) {
+		this.entries = entries;
+		this.offset = offset;
+		this.comment = comment;
+	}
+
+	/** Reads the central directory of the given zip, or returns null if it isn't a zip we can make sense of. */
+	@Nullable
+	static ZipCentralDirectory read(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIR_SIZE + MAX_COMMENT);
+		ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+		int eocd = -1;
+		for (int i = tailSize - END_OF_CENTRAL_DIR_SIZE; i >= 0; --i) {
+			if (tail.getInt(i) == END_OF_CENTRAL_DIR) {
+				eocd = i;
+				break;
+			}
+		}
+		if (eocd == -1) {
+			return null;
+		}
+		long cdSize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+		long cdOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+		int commentLength = Math.min(Short.toUnsignedInt(tail.getShort(eocd + 20)), tailSize - eocd - END_OF_CENTRAL_DIR_SIZE);
+		byte[] comment = Arrays.copyOfRange(tail.array(), eocd + END_OF_CENTRAL_DIR_SIZE, eocd + END_OF_CENTRAL_DIR_SIZE + commentLength);
+		if (Short.toUnsignedInt(tail.getShort(eocd + 10)) == 0xFFFF || cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC) {
+			long locator = fileSize - tailSize + eocd - 20;
+			if (locator < 0) {
+				return null;
+			}
+			ByteBuffer zip64Locator = read(channel, locator, 20);
+			if (zip64Locator.getInt(0) != ZIP64_END_OF_CENTRAL_DIR_LOCATOR) {
+				return null;
+			}
+			ByteBuffer zip64 = read(channel, zip64Locator.getLong(8), 56);
+			if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIR) {
+				return null;
+			}
+			cdSize = zip64.getLong(40);
+			cdOffset = zip64.getLong(48);
+		}
+		if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > fileSize) {
+			return null;
+		}
+		ByteBuffer cd = read(channel, cdOffset, (int) cdSize);
+		List<Entry> entries = new ArrayList<>();
+		int pos = 0;
+		while (pos + CENTRAL_DIR_HEADER_SIZE <= cdSize && cd.getInt(pos) == CENTRAL_DIR_HEADER) {
+			int length = CENTRAL_DIR_HEADER_SIZE
+					+ Short.toUnsignedInt(cd.getShort(pos + 28))
+					+ Short.toUnsignedInt(cd.getShort(pos + 30))
+					+ Short.toUnsignedInt(cd.getShort(pos + 32));
+			if (pos + length > cdSize) {
+				return null;
+			}
+			entries.add(new Entry(Arrays.copyOfRange(cd.array(), pos, pos + length)));
+			pos += length;
+		}
+		return new ZipCentralDirectory(entries, cdOffset, comment);
+	}
+
+	/** Reads the given range of the channel into a little-endian buffer. */
+	static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("Unexpected end of zip at " + (position + buffer.position()));
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a zip using several threads, for the multi-hundred-MB archives
+ * which bootstrap p2 and PDE.
+ *
+ * The archive is opened with {@link ZipFile}, so every entry can be read
+ * independently.  All of the directories are created up front, and then
+ * the files are split across the workers so that each has roughly the same
+ * number of bytes to inflate.  Each file is preallocated to its final size
+ * before it is written, and entries which are stored rather than deflated are
+ * copied straight from the archive with {@link FileChannel#transferFrom}.  The
+ * execute bits of the POSIX permissions (from the zip's central directory) are
+ * restored when the filesystem supports them, so that native launchers stay
+ * executable.  The rest of the permissions are left to the umask, so that a
+ * read-only entry doesn't stop the next extraction from overwriting it.
+ */
+public class ZipExtractor {
+	private ZipExtractor() {}
+
+	/** Extracts the given zip into the given directory, using one worker per processor. */
+	public static void unzip(File input, File destinationDir) throws IOException {
+		unzip(input, destinationDir, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Extracts the given zip into the given directory, using at most the given number of workers. */
+	public static void unzip(File input, File destinationDir, int parallelism) throws IOException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+		}
+		Path root = destinationDir.toPath().normalize();
+		Map<String, ZipCentralDirectory.Entry> records = records(input);
+		try (ZipFile zip = new ZipFile(input)) {
+			// validate every entry and create every directory before writing anything
+			Set<File> dirs = new TreeSet<>();
+			List<ZipEntry> files = new ArrayList<>();
+			for (ZipEntry entry : Collections.list(zip.entries())) {
+				File dest = new File(destinationDir, entry.getName());
+				if (!dest.toPath().normalize().startsWith(root)) {
+					throw new RuntimeException("Bad zip entry");
+				}
+				if (entry.isDirectory()) {
+					dirs.add(dest);
+				} else {
+					dirs.add(dest.getParentFile());
+					files.add(entry);
+				}
+			}
+			for (File dir : dirs) {
+				FileMisc.mkdirs(dir);
+			}
+			List<List<ZipEntry>> partitions = partition(files, Math.min(parallelism, Math.max(1, files.size())));
+			if (partitions.size() == 1) {
+				extract(input, zip, partitions.get(0), destinationDir, records);
+				return;
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+			try {
+				List<Future<?>> workers = new ArrayList<>();
+				for (List<ZipEntry> partition : partitions) {
+					workers.add(executor.submit(() -> {
+						extract(input, zip, partition, destinationDir, records);
+						return null;
+					}));
+				}
+				for (Future<?> worker : workers) {
+					try {
+						worker.get();
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof IOException) {
+							throw (IOException) e.getCause();
+						} else if (e.getCause() instanceof RuntimeException) {
+							throw (RuntimeException) e.getCause();
+						} else {
+							throw new IOException(e.getCause());
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while extracting " + input, e);
+					}
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/** Splits the entries into the given number of partitions, biggest first into whichever partition has the fewest bytes so far. */
+	static List<List<ZipEntry>> partition(List<ZipEntry> entries, int count) {
+		List<ZipEntry> bySize = new ArrayList<>(entries);
+		bySize.sort(Comparator.comparingLong(ZipExtractor::size).reversed());
+		List<List<ZipEntry>> partitions = new ArrayList<>(count);
+		long[] bytes = new long[count];
+		PriorityQueue<Integer> lightest = new PriorityQueue<>(count, Comparator.<Integer> comparingLong(i -> bytes[i]).thenComparing(i -> i));
+		for (int i = 0; i < count; ++i) {
+			partitions.add(new ArrayList<>());
+			lightest.add(i);
+		}
+		for (ZipEntry entry : bySize) {
+			int i = lightest.poll();
+			partitions.get(i).add(entry);
+			bytes[i] += size(entry);
+			lightest.add(i);
+		}
+		return partitions;
+	}
+
+	private static long size(ZipEntry entry) {
+		return Math.max(0, entry.getSize());
+	}
+
+	/** Writes the given entries, each preallocated to its final size. */
+	private static void extract(File input, ZipFile zip, List<ZipEntry> entries, File destinationDir, Map<String, ZipCentralDirectory.Entry> records) throws IOException {
+		boolean posix = isPosix();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		// each worker has its own channel, because transferFrom reads from the channel's position
+		try (FileChannel archive = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+			for (ZipEntry entry : entries) {
+				File dest = new File(destinationDir, entry.getName());
+				ZipCentralDirectory.Entry record = records.get(entry.getName());
+				try (RandomAccessFile output = new RandomAccessFile(dest, "rw")) {
+					output.setLength(size(entry));
+					if (entry.getMethod() == ZipEntry.STORED && record != null && isRaw(record)) {
+						transferStored(archive, record, output.getChannel());
+					} else {
+						try (InputStream stream = zip.getInputStream(entry)) {
+							int numRead;
+							while ((numRead = stream.read(buffer)) != -1) {
+								output.write(buffer, 0, numRead);
+							}
+						}
+						// in case the central directory lied about the size
+						output.setLength(output.getFilePointer());
+					}
+				}
+				if (posix && record != null && record.unixMode() != -1) {
+					restoreExecute(dest.toPath(), FileMisc.fromOctalFileModeInt(record.unixMode()));
+				}
+			}
+		}
+	}
+
+	/** Makes the file executable by whoever the archive says, as long as they can also read it. */
+	private static void restoreExecute(Path file, Set<PosixFilePermission> fromArchive) throws IOException {
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+		boolean changed = setExecute(permissions, fromArchive, PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_EXECUTE);
+		changed |= setExecute(permissions, fromArchive, PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_EXECUTE);
+		changed |= setExecute(permissions, fromArchive, PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_EXECUTE);
+		if (changed) {
+			Files.setPosixFilePermissions(file, permissions);
+		}
+	}
+
+	private static boolean setExecute(Set<PosixFilePermission> permissions, Set<PosixFilePermission> fromArchive, PosixFilePermission read, PosixFilePermission execute) {
+		if (fromArchive.contains(execute) && permissions.contains(read)) {
+			return permissions.add(execute);
+		} else {
+			return permissions.remove(execute);
+		}
+	}
+
+	/** True if the entry's bytes in the archive are exactly its content. */
+	private static boolean isRaw(ZipCentralDirectory.Entry record) {
+		return record.method() == ZipEntry.STORED && !record.isZip64() && (record.flags() & FLAG_ENCRYPTED) == 0
+				&& record.compressedSize() == record.size();
+	}
+
+	private static final int FLAG_ENCRYPTED = 1;
+
+	/** Copies a stored entry from the archive to the output without passing it through the heap. */
+	private static void transferStored(FileChannel archive, ZipCentralDirectory.Entry record, FileChannel output) throws IOException {
+		ByteBuffer local = ZipCentralDirectory.read(archive, record.localHeaderOffset(), ZipCentralDirectory.LOCAL_HEADER_SIZE);
+		if (local.getInt(0) != ZipCentralDirectory.LOCAL_HEADER) {
+			throw new IOException("Bad local header for " + record.name);
+		}
+		long dataStart = record.localHeaderOffset() + ZipCentralDirectory.LOCAL_HEADER_SIZE
+				+ Short.toUnsignedInt(local.getShort(26)) + Short.toUnsignedInt(local.getShort(28));
+		archive.position(dataStart);
+		long transferred = 0;
+		while (transferred < record.size()) {
+			long numTransferred = output.transferFrom(archive, transferred, record.size() - transferred);
+			if (numTransferred <= 0) {
+				throw new IOException("Unexpected end of zip in " + record.name);
+			}
+			transferred += numTransferred;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static boolean isPosix() {
+		return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+	}
+
+	/** The central directory records by name, or empty if the zip is one we can't make sense of. */
+	private static Map<String, ZipCentralDirectory.Entry> records(File input) throws IOException {
+		Map<String, ZipCentralDirectory.Entry> records = new HashMap<>();
+		try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+			ZipCentralDirectory cd = ZipCentralDirectory.read(channel);
+			if (cd != null) {
+				for (ZipCentralDirectory.Entry entry : cd.entries) {
+					records.put(entry.name, entry);
+				}
+			}
+		}
+		return records;
+	}
+}
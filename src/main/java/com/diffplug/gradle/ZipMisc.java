@@ -53,20 +53,19 @@ public class ZipMisc {
 	 * @param reader	will be called with an InputStream containing the contents of that entry in the zip file
 	 */
 	public static void read(File input, String toRead, Throwing.Specific.Consumer<InputStream, IOException> reader) throws IOException {
-		try (
-				ZipFile file = new ZipFile(input);
-				InputStream stream = file.getInputStream(file.getEntry(toRead));) {
-			reader.accept(stream);
-		} catch (NullPointerException e) {
-			if (e.getMessage().equals("entry")) {
+		try (ZipFile file = new ZipFile(input)) {
+			ZipEntry entry = file.getEntry(toRead);
+			if (entry == null) {
+				// list the available entries from the handle we already have
 				System.err.println("No such entry: " + toRead);
-				try (ZipFile file = new ZipFile(input)) {
-					Enumeration<? extends ZipEntry> entries = file.entries();
-					while (entries.hasMoreElements()) {
-						ZipEntry entry = entries.nextElement();
-						System.err.println("  available: " + entry.getName());
-					}
+				Enumeration<? extends ZipEntry> entries = file.entries();
+				while (entries.hasMoreElements()) {
+					System.err.println("  available: " + entries.nextElement().getName());
 				}
+				return;
+			}
+			try (InputStream stream = file.getInputStream(entry)) {
+				reader.accept(stream);
 			}
 		}
 	}
@@ -136,12 +135,18 @@ public class ZipMisc {
 		}
 	}
 
-	/** Modifies a file in-place. */
+	/**
+	 * Modifies a file in-place.
+	 *
+	 * The zip is streamed into a temporary file which then replaces it atomically,
+	 * so it is never held in memory.  Entries which aren't modified are copied
+	 * as raw compressed bytes, unless the zip uses zip64 for individual entries,
+	 * in which case every entry is re-compressed.
+	 */
 	public static void modify(File file, Map<String, Function<byte[], byte[]>> toModify, Predicate<String> toOmit) throws IOException {
-		byte[] allContent = Files.asByteSource(file).read();
-		ByteSource source = ByteSource.wrap(allContent);
-		ByteSink sink = Files.asByteSink(file);
-		modify(source, sink, toModify, toOmit);
+		if (!ZipRewriter.rewrite(file, toModify, toOmit)) {
+			ZipRewriter.replace(file, temp -> modify(Files.asByteSource(file), Files.asByteSink(temp), toModify, toOmit));
+		}
 	}
 
 	/**
@@ -168,28 +173,13 @@ public class ZipMisc {
 	}
 
 	/**
-	 * Unzips a directory to a folder.
+	 * Unzips a directory to a folder, using {@link ZipExtractor} to extract
+	 * the entries in parallel and restore their POSIX permissions.
 	 *
 	 * @param input				a zip file
 	 * @param destinationDir	where the zip will be extracted to
 	 */
 	public static void unzip(File input, File destinationDir) throws IOException {
-		try (ZipInputStream zipInput = new ZipInputStream(new BufferedInputStream(new FileInputStream(input)))) {
-			ZipEntry entry;
-			while ((entry = zipInput.getNextEntry()) != null) {
-				File dest = new File(destinationDir, entry.getName());
-				if (!dest.toPath().normalize().startsWith(destinationDir.toPath().normalize())) {
-					throw new RuntimeException("Bad zip entry");
-				}
-				if (entry.isDirectory()) {
-					FileMisc.mkdirs(dest);
-				} else {
-					FileMisc.mkdirs(dest.getParentFile());
-					try (OutputStream output = new BufferedOutputStream(new FileOutputStream(dest))) {
-						copy(zipInput, output);
-					}
-				}
-			}
-		}
+		ZipExtractor.unzip(input, destinationDir);
 	}
 }
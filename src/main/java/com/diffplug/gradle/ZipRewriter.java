@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import com.diffplug.common.base.Throwing;
+import com.diffplug.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Rewrites a zip in-place without holding it in memory, and without
+ * re-compressing the entries which aren't modified.
+ *
+ * Every unmodified entry has its compressed bytes copied straight across
+ * with {@link FileChannel#transferTo}, along with its CRC, sizes, timestamp,
+ * and extra fields.  Only the modified entries are inflated and deflated.
+ * The result is written to a temporary file next to the original, which is
+ * then moved over it atomically, so a failure never leaves a half-written zip.
+ */
+class ZipRewriter {
+	private ZipRewriter() {}
+
+	/** The general purpose flag which means the CRC and sizes follow the data instead of being in the local header. */
+	private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+	private static final int FLAG_ENCRYPTED = 1;
+	private static final int VERSION_ZIP64 = 45;
+
+	/**
+	 * Rewrites the given zip, returning false without touching it if it can't be
+	 * copied raw, e.g. because an individual entry needs zip64.
+	 */
+	static boolean rewrite(File file, Map<String, Function<byte[], byte[]>> toModify, Predicate<String> toOmit) throws IOException {
+		try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ZipCentralDirectory cd = ZipCentralDirectory.read(input);
+			if (cd == null || cd.entries.stream().anyMatch(entry -> entry.isZip64() || (entry.flags() & FLAG_ENCRYPTED) != 0)) {
+				return false;
+			}
+			try {
+				replace(file, temp -> {
+					try (ZipFile zipFile = toModify.isEmpty() ? null : new ZipFile(file);
+							FileChannel output = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+						write(cd, input, zipFile, output, toModify, toOmit);
+					}
+				});
+				return true;
+			} catch (NeedsZip64 e) {
+				return false;
+			}
+		}
+	}
+
+	/** Thrown when the rewritten zip turns out to need zip64 offsets, which we don't write. */
+	private static class NeedsZip64 extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** Writes the rewritten zip. */
+	private static void write(ZipCentralDirectory cd, FileChannel input, ZipFile zipFile, FileChannel output, Map<String, Function<byte[], byte[]>> toModify, Predicate<String> toOmit) throws IOException {
+		ByteArrayOutputStream centralDir = new ByteArrayOutputStream();
+		int count = 0;
+		for (ZipCentralDirectory.Entry entry : cd.entries) {
+			Function<byte[], byte[]> replacement = toModify.get(entry.name);
+			if (replacement == null && toOmit.test(entry.name)) {
+				continue;
+			}
+			long offset = output.position();
+			if (offset >= ZipCentralDirectory.ZIP64_MAGIC) {
+				throw new NeedsZip64();
+			}
+			ByteBuffer local = ZipCentralDirectory.read(input, entry.localHeaderOffset(), ZipCentralDirectory.LOCAL_HEADER_SIZE);
+			if (local.getInt(0) != ZipCentralDirectory.LOCAL_HEADER) {
+				throw new IOException("Bad local header for " + entry.name);
+			}
+			int localNameLength = Short.toUnsignedInt(local.getShort(26));
+			int localExtraLength = Short.toUnsignedInt(local.getShort(28));
+			ByteBuffer localExtra = ZipCentralDirectory.read(input, entry.localHeaderOffset() + ZipCentralDirectory.LOCAL_HEADER_SIZE + localNameLength, localExtraLength);
+			long dataStart = entry.localHeaderOffset() + ZipCentralDirectory.LOCAL_HEADER_SIZE + localNameLength + localExtraLength;
+
+			ByteBuffer record = ByteBuffer.wrap(entry.record.clone()).order(ByteOrder.LITTLE_ENDIAN);
+			// the sizes always go in the local header, so there's never a data descriptor
+			record.putShort(8, (short) (entry.flags() & ~FLAG_DATA_DESCRIPTOR));
+			record.putInt(42, (int) offset);
+			if (replacement == null) {
+				writeLocalHeader(output, record, localExtra);
+				transfer(input, dataStart, entry.compressedSize(), output);
+			} else {
+				byte[] content;
+				try (InputStream stream = zipFile.getInputStream(zipFile.getEntry(entry.name))) {
+					content = replacement.apply(ByteStreams.toByteArray(stream));
+				}
+				CRC32 crc = new CRC32();
+				crc.update(content);
+				int method = entry.method() == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+				byte[] compressed = method == ZipEntry.STORED ? content : deflate(content);
+				record.putShort(10, (short) method);
+				record.putInt(16, (int) crc.getValue());
+				record.putInt(20, compressed.length);
+				record.putInt(24, content.length);
+				writeLocalHeader(output, record, localExtra);
+				writeFully(output, ByteBuffer.wrap(compressed));
+			}
+			centralDir.write(record.array());
+			++count;
+		}
+		long cdOffset = output.position();
+		if (cdOffset >= ZipCentralDirectory.ZIP64_MAGIC) {
+			throw new NeedsZip64();
+		}
+		writeFully(output, ByteBuffer.wrap(centralDir.toByteArray()));
+		writeEndOfCentralDir(output, count, cdOffset, centralDir.size(), cd.comment);
+	}
+
+	/** Writes a local header which matches the given central directory record. */
+	private static void writeLocalHeader(FileChannel output, ByteBuffer record, ByteBuffer extra) throws IOException {
+		int nameLength = Short.toUnsignedInt(record.getShort(28));
+		ByteBuffer local = ByteBuffer.allocate(ZipCentralDirectory.LOCAL_HEADER_SIZE + nameLength + extra.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+		local.putInt(ZipCentralDirectory.LOCAL_HEADER);
+		// version needed, flags, method, time, date, crc, compressed size, size
+		local.put(record.array(), 6, 22);
+		local.putShort((short) nameLength);
+		local.putShort((short) extra.remaining());
+		local.put(record.array(), ZipCentralDirectory.CENTRAL_DIR_HEADER_SIZE, nameLength);
+		local.put(extra.duplicate());
+		local.flip();
+		writeFully(output, local);
+	}
+
+	/** Writes the end of central directory record, preceded by its zip64 version if there are too many entries for the classic one. */
+	private static void writeEndOfCentralDir(FileChannel output, int count, long cdOffset, long cdSize, byte[] comment) throws IOException {
+		if (count >= 0xFFFF) {
+			long zip64Offset = output.position();
+			ByteBuffer zip64 = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+			zip64.putInt(ZipCentralDirectory.ZIP64_END_OF_CENTRAL_DIR);
+			zip64.putLong(44);
+			zip64.putShort((short) VERSION_ZIP64);
+			zip64.putShort((short) VERSION_ZIP64);
+			zip64.putInt(0);
+			zip64.putInt(0);
+			zip64.putLong(count);
+			zip64.putLong(count);
+			zip64.putLong(cdSize);
+			zip64.putLong(cdOffset);
+			zip64.putInt(ZipCentralDirectory.ZIP64_END_OF_CENTRAL_DIR_LOCATOR);
+			zip64.putInt(0);
+			zip64.putLong(zip64Offset);
+			zip64.putInt(1);
+			zip64.flip();
+			writeFully(output, zip64);
+		}
+		ByteBuffer eocd = ByteBuffer.allocate(ZipCentralDirectory.END_OF_CENTRAL_DIR_SIZE + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+		eocd.putInt(ZipCentralDirectory.END_OF_CENTRAL_DIR);
+		eocd.putShort((short) 0);
+		eocd.putShort((short) 0);
+		eocd.putShort((short) Math.min(count, 0xFFFF));
+		eocd.putShort((short) Math.min(count, 0xFFFF));
+		eocd.putInt((int) cdSize);
+		eocd.putInt((int) cdOffset);
+		eocd.putShort((short) comment.length);
+		eocd.put(comment);
+		eocd.flip();
+		writeFully(output, eocd);
+	}
+
+	private static byte[] deflate(byte[] content) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+			byte[] buffer = new byte[8 * 1024];
+			while (!deflater.finished()) {
+				int numDeflated = deflater.deflate(buffer);
+				compressed.write(buffer, 0, numDeflated);
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void transfer(FileChannel input, long position, long count, FileChannel output) throws IOException {
+		long transferred = 0;
+		while (transferred < count) {
+			long numTransferred = input.transferTo(position + transferred, count - transferred, output);
+			if (numTransferred <= 0) {
+				throw new IOException("Unexpected end of zip at " + (position + transferred));
+			}
+			transferred += numTransferred;
+		}
+	}
+
+	private static void writeFully(FileChannel output, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			output.write(buffer);
+		}
+	}
+
+	/**
+	 * Calls the writer with an empty temporary file next to the given file,
+	 * then atomically moves it over the given file, keeping its permissions.
+	 * If the writer throws, the given file is untouched.
+	 */
+	static void replace(File file, Throwing.Specific.Consumer<File, IOException> writer) throws IOException {
+		Path target = file.toPath();
+		Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+		try {
+			writer.accept(temp.toFile());
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+				Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
@@ -18,6 +18,7 @@ package com.diffplug.gradle.eclipse;
 import com.diffplug.common.base.StringPrinter;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.pde.EclipseRelease;
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -25,9 +26,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ModuleVersionSelector;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.util.GradleVersion;
 
 public class MavenCentralExtension {
 	public static final String NAME = "eclipseMavenCentral";
@@ -57,7 +61,12 @@ public class MavenCentralExtension {
 
 		public ReleaseConfigurer(EclipseRelease release) throws IOException {
 			this.release = release;
-			this.groupIdArtifactIdToVersion = MavenCentralMapping.groupIdArtifactIdToVersion(release);
+			if (GradleVersion.current().getBaseVersion().compareTo(GradleVersion.version("6.1")) >= 0) {
+				this.groupIdArtifactIdToVersion = MavenCentralMappingService.get(project).get().groupIdArtifactIdToVersion(release);
+			} else {
+				// build services need gradle 6.1+, so older versions compute it for each project
+				this.groupIdArtifactIdToVersion = MavenCentralMapping.groupIdArtifactIdToVersion(release);
+			}
 		}
 
 		public void compileOnly(String bundleId) {
@@ -88,6 +97,26 @@ public class MavenCentralExtension {
 			dep(JavaPlugin.TEST_RUNTIME_ONLY_CONFIGURATION_NAME, bundleId);
 		}
 
+		private static final String BOM_REPOSITORY = "goomphEclipseReleaseBom";
+
+		/**
+		 * Adds the BOM of this release (see {@link MavenCentralMapping#bomRepository(EclipseRelease)})
+		 * as a platform of the given configuration, along with the local repository which holds it,
+		 * so that Gradle aligns every eclipse artifact to this release during resolution.
+		 */
+		public void bom(String configName) throws IOException {
+			File repository = MavenCentralMapping.bomRepository();
+			MavenCentralMapping.writeBom(repository, release, groupIdArtifactIdToVersion);
+			if (project.getRepositories().findByName(BOM_REPOSITORY) == null) {
+				project.getRepositories().maven(maven -> {
+					maven.setName(BOM_REPOSITORY);
+					maven.setUrl(repository);
+					maven.mavenContent(content -> content.includeGroup(MavenCentralMapping.BOM_GROUP_ID));
+				});
+			}
+			project.getDependencies().add(configName, project.getDependencies().platform(MavenCentralMapping.bomCoordinate(release)));
+		}
+
 		public void dep(String configName, String bundleId) {
 			String groupIdArtifactId = MavenCentralMapping.groupIdArtifactId(bundleId);
 			String version = groupIdArtifactIdToVersion.get(groupIdArtifactId);
@@ -117,6 +146,32 @@ public class MavenCentralExtension {
 			});
 		}
 
+		/**
+		 * Same as {@link #useNativesForRunningPlatform()}, but with a dependency substitution for each
+		 * native artifact of this release, rather than a callback which inspects every dependency
+		 * of every resolution.  The substituted artifact has this release's version.
+		 *
+		 * Requires Gradle 6.6 or later.
+		 */
+		public void substituteNativesForRunningPlatform() {
+			requireGradle("6.6", "substituteNativesForRunningPlatform()", "useNativesForRunningPlatform()");
+			String suffix = "." + SwtPlatform.getRunning();
+			Map<String, String> substitutions = new TreeMap<>();
+			groupIdArtifactIdToVersion.forEach((groupIdArtifactId, version) -> {
+				if (groupIdArtifactId.endsWith(suffix)) {
+					String requested = groupIdArtifactId.substring(0, groupIdArtifactId.length() - suffix.length()) + "." + $_OSGI_PLATFORM;
+					substitutions.put(requested, groupIdArtifactId + ":" + version);
+				}
+			});
+			project.getConfigurations().all(config -> {
+				config.getResolutionStrategy().dependencySubstitution(substitute -> {
+					substitutions.forEach((requested, target) -> {
+						substitute.substitute(substitute.module(requested)).using(substitute.module(target));
+					});
+				});
+			});
+		}
+
 		public void constrainTransitivesToThisRelease() {
 			constrainTransitivesToThisReleaseExcept();
 		}
@@ -136,6 +191,54 @@ public class MavenCentralExtension {
 			});
 		}
 
+		/** The configuration which holds the constraints of {@link #constrainTransitivesToThisReleaseUsingConstraints(String...)}. */
+		public static final String CONSTRAINTS_CONFIGURATION_NAME = "eclipseMavenCentralConstraints";
+
+		/**
+		 * Same as {@link #constrainTransitivesToThisReleaseExcept(String...)}, but with a strict
+		 * dependency constraint for every artifact in this release, which Gradle applies as part
+		 * of resolution, rather than a callback which inspects every dependency of every resolution.
+		 *
+		 * The constraints are added to every resolvable configuration when it is resolved, but not
+		 * to the consumable ones, so they don't end up in the published metadata.
+		 *
+		 * Requires Gradle 6.0 or later.
+		 */
+		public void constrainTransitivesToThisReleaseUsingConstraints(String... artifactNames) {
+			requireGradle("6.0", "constrainTransitivesToThisReleaseUsingConstraints()", "constrainTransitivesToThisReleaseExcept()");
+			List<String> names = Arrays.asList(artifactNames);
+			Configuration constraints = project.getConfigurations().maybeCreate(CONSTRAINTS_CONFIGURATION_NAME);
+			constraints.setDescription("Constrains every artifact to its version in eclipse " + release);
+			constraints.setVisible(false);
+			constraints.setCanBeResolved(false);
+			constraints.setCanBeConsumed(false);
+			groupIdArtifactIdToVersion.forEach((groupIdArtifactId, version) -> {
+				String artifactName = groupIdArtifactId.substring(groupIdArtifactId.indexOf(':') + 1);
+				if (!names.contains(artifactName)) {
+					project.getDependencies().getConstraints().add(CONSTRAINTS_CONFIGURATION_NAME, groupIdArtifactId, constraint -> {
+						constraint.version(versionConstraint -> versionConstraint.strictly(version));
+						constraint.because("eclipse " + release);
+					});
+				}
+			});
+			project.getConfigurations().configureEach(config -> {
+				// checked when the configuration is resolved, so that one which is made resolvable later still gets them
+				if (config != constraints && config.getState() == Configuration.State.UNRESOLVED) {
+					config.withDependencies(unused -> {
+						if (config.isCanBeResolved()) {
+							config.getDependencyConstraints().addAll(constraints.getDependencyConstraints());
+						}
+					});
+				}
+			});
+		}
+
+		private void requireGradle(String minimum, String method, String alternative) {
+			if (GradleVersion.current().getBaseVersion().compareTo(GradleVersion.version(minimum)) < 0) {
+				throw new GradleException(method + " requires Gradle " + minimum + " or later, but this is " + GradleVersion.current().getVersion() + ".  Use " + alternative + " instead.");
+			}
+		}
+
 		/////////////
 		// natives //
 		/////////////
@@ -18,24 +18,39 @@ package com.diffplug.gradle.eclipse;
 
 import com.diffplug.common.base.Box;
 import com.diffplug.common.base.Errors;
+import com.diffplug.common.base.StringPrinter;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.GoomphCacheLocations;
+import com.diffplug.gradle.MetadataCache;
 import com.diffplug.gradle.ZipMisc;
 import com.diffplug.gradle.pde.EclipseRelease;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.function.Function;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.osgi.framework.Version;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
 
 /** Maps eclipse jars to their mavenCentral artifact ids and versions based on their official release. */
 public class MavenCentralMapping {
@@ -76,26 +91,66 @@ public class MavenCentralMapping {
 	}
 
 	/** Creates a map from a key defined by the keyExtractor function to its corresponding version in maven central. */
-	static Map<String, String> parse(InputStream inputStream, Function<String, String> keyExtractor) throws ParserConfigurationException, SAXException, IOException {
+	static Map<String, String> parse(InputStream inputStream, Function<String, String> keyExtractor) throws IOException {
+		return toMap(parseBundles(inputStream), keyExtractor);
+	}
+
+	private static Map<String, String> toMap(List<Map.Entry<String, String>> bundles, Function<String, String> keyExtractor) {
 		Map<String, String> map = new HashMap<>();
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		DocumentBuilder db = dbf.newDocumentBuilder();
-		Document doc = db.parse(inputStream);
-		Node artifacts = doc.getDocumentElement().getElementsByTagName("artifacts").item(0);
-		for (int i = 0; i < artifacts.getChildNodes().getLength(); ++i) {
-			Node artifact = artifacts.getChildNodes().item(i);
-			if ("artifact".equals(artifact.getNodeName())) {
-				String classifier = artifact.getAttributes().getNamedItem("classifier").getNodeValue();
-				if ("osgi.bundle".equals(classifier)) {
-					String bundleId = artifact.getAttributes().getNamedItem("id").getNodeValue();
-					String bundleVersion = artifact.getAttributes().getNamedItem("version").getNodeValue();
-					String key = keyExtractor.apply(bundleId);
-					String version = calculateMavenCentralVersion(bundleId, bundleVersion);
-					map.put(key, version);
+		for (Map.Entry<String, String> bundle : bundles) {
+			map.put(keyExtractor.apply(bundle.getKey()), bundle.getValue());
+		}
+		return map;
+	}
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/**
+	 * Streams through an `artifacts.xml`, returning the bundleId and maven central version
+	 * of every `osgi.bundle` artifact in the order they appear.  Only the attributes of the
+	 * `<artifact>` elements are read, so the tens of MB of a modern release are never held
+	 * in memory at once.
+	 */
+	static List<Map.Entry<String, String>> parseBundles(InputStream inputStream) throws IOException {
+		List<Map.Entry<String, String>> bundles = new ArrayList<>();
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+			try {
+				int depth = 0;
+				int artifactsDepth = -1;
+				while (reader.hasNext()) {
+					int eventType = reader.next();
+					if (eventType == XMLStreamConstants.START_ELEMENT) {
+						++depth;
+						String name = reader.getLocalName();
+						if (artifactsDepth == -1 && name.equals("artifacts")) {
+							artifactsDepth = depth;
+						} else if (depth == artifactsDepth + 1 && name.equals("artifact")
+								&& "osgi.bundle".equals(reader.getAttributeValue(null, "classifier"))) {
+							String bundleId = reader.getAttributeValue(null, "id");
+							String bundleVersion = reader.getAttributeValue(null, "version");
+							bundles.add(new AbstractMap.SimpleImmutableEntry<>(bundleId, calculateMavenCentralVersion(bundleId, bundleVersion)));
+						}
+					} else if (eventType == XMLStreamConstants.END_ELEMENT) {
+						if (depth == artifactsDepth) {
+							// everything we need is inside the first <artifacts>
+							break;
+						}
+						--depth;
+					}
 				}
+			} finally {
+				reader.close();
 			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to parse artifacts.xml", e);
 		}
-		return map;
+		return bundles;
 	}
 
 	static String calculateMavenCentralVersion(String bundleId, String bundleVersion) {
@@ -124,7 +179,92 @@ public class MavenCentralMapping {
 		return createVersionMap(release, MavenCentralMapping::groupIdArtifactId);
 	}
 
+	/** The groupId of the BOMs written by {@link #bomRepository(EclipseRelease)}. */
+	public static final String BOM_GROUP_ID = "com.diffplug.gradle.goomph";
+	/** The artifactId of the BOMs written by {@link #bomRepository(EclipseRelease)}. */
+	public static final String BOM_ARTIFACT_ID = "eclipse-release-bom";
+
+	/** Returns the `groupId:artifactId:version` of the BOM for the given release. */
+	public static String bomCoordinate(EclipseRelease release) {
+		return BOM_GROUP_ID + ":" + BOM_ARTIFACT_ID + ":" + release.version();
+	}
+
+	/**
+	 * Writes a Maven BOM with the maven central version of every artifact in the given release,
+	 * and returns the local maven repository which contains it.  The BOM is only rewritten if its
+	 * content changes, so it is safe to call this from every project of a build.
+	 *
+	 * ```groovy
+	 * repositories {
+	 *     maven { url MavenCentralMapping.bomRepository(EclipseRelease.official('4.24.0')) }
+	 * }
+	 * dependencies {
+	 *     implementation platform(MavenCentralMapping.bomCoordinate(EclipseRelease.official('4.24.0')))
+	 *     implementation 'org.eclipse.platform:org.eclipse.swt'
+	 * }
+	 * ```
+	 */
+	public static File bomRepository(EclipseRelease release) {
+		File repository = bomRepository();
+		Map<String, String> groupIdArtifactIdToVersion = groupIdArtifactIdToVersion(release);
+		Errors.rethrow().run(() -> writeBom(repository, release, groupIdArtifactIdToVersion));
+		return repository;
+	}
+
+	/** The local maven repository which holds the BOMs. */
+	static File bomRepository() {
+		return new File(GoomphCacheLocations.eclipseReleaseMetadata(), "bom");
+	}
+
+	/** Writes the BOM into the given maven repository, unless it is already there. */
+	static File writeBom(File repository, EclipseRelease release, Map<String, String> groupIdArtifactIdToVersion) throws IOException {
+		String version = release.version().toString();
+		File folder = new File(repository, BOM_GROUP_ID.replace('.', '/') + "/" + BOM_ARTIFACT_ID + "/" + version);
+		File pom = new File(folder, BOM_ARTIFACT_ID + "-" + version + ".pom");
+		byte[] content = bomContent(release, groupIdArtifactIdToVersion).getBytes(StandardCharsets.UTF_8);
+		if (pom.isFile() && Arrays.equals(content, Files.readAllBytes(pom.toPath()))) {
+			return pom;
+		}
+		FileMisc.mkdirs(folder);
+		File temp = File.createTempFile(pom.getName(), ".tmp", folder);
+		try {
+			Files.write(temp.toPath(), content);
+			Files.move(temp.toPath(), pom.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+		return pom;
+	}
+
+	/** The content of the BOM, with its dependencies sorted so that it is stable. */
+	static String bomContent(EclipseRelease release, Map<String, String> groupIdArtifactIdToVersion) {
+		return StringPrinter.buildString(printer -> {
+			printer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			printer.println("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\">");
+			printer.println("  <modelVersion>4.0.0</modelVersion>");
+			printer.println("  <groupId>" + BOM_GROUP_ID + "</groupId>");
+			printer.println("  <artifactId>" + BOM_ARTIFACT_ID + "</artifactId>");
+			printer.println("  <version>" + release.version() + "</version>");
+			printer.println("  <packaging>pom</packaging>");
+			printer.println("  <description>The maven central versions of eclipse " + release + ", generated by goomph</description>");
+			printer.println("  <dependencyManagement>");
+			printer.println("    <dependencies>");
+			new TreeMap<>(groupIdArtifactIdToVersion).forEach((groupIdArtifactId, version) -> {
+				int colon = groupIdArtifactId.indexOf(':');
+				printer.println("      <dependency>");
+				printer.println("        <groupId>" + groupIdArtifactId.substring(0, colon) + "</groupId>");
+				printer.println("        <artifactId>" + groupIdArtifactId.substring(colon + 1) + "</artifactId>");
+				printer.println("        <version>" + version + "</version>");
+				printer.println("      </dependency>");
+			});
+			printer.println("    </dependencies>");
+			printer.println("  </dependencyManagement>");
+			printer.println("</project>");
+		});
+	}
+
 	private static final String ARTIFACTS_JAR = "artifacts.jar";
+	private static final String BUNDLE_VERSIONS = "bundle-versions.bin";
 
 	private static Map<String, String> createVersionMap(EclipseRelease release, Function<String, String> keyExtractor) {
 		//  warn if the user is asking for a too-old version of eclipse, but go ahead and try anyway just in case
@@ -137,26 +277,84 @@ public class MavenCentralMapping {
 		File versionFolder = new File(GoomphCacheLocations.eclipseReleaseMetadata(), release.version().toString());
 		FileMisc.mkdirs(versionFolder);
 		File artifactsJar = new File(versionFolder, ARTIFACTS_JAR);
-		if (artifactsJar.exists() && artifactsJar.length() > 0) {
-			try {
-				return parseFromFile(artifactsJar, keyExtractor);
-			} catch (Exception e) {
-				e.printStackTrace();
-				System.err.println("Retrying download...");
-				FileMisc.forceDelete(artifactsJar);
-			}
+		String artifactsUrl = release.updateSite() + ARTIFACTS_JAR;
+		// downloads it if it's missing, and revalidates it if it's stale
+		Errors.rethrow().run(() -> MetadataCache.get(artifactsUrl, artifactsJar));
+		File bundleVersions = new File(versionFolder, BUNDLE_VERSIONS);
+		List<Map.Entry<String, String>> bundles = readBundleVersions(bundleVersions, artifactsJar);
+		if (bundles == null) {
+			bundles = Errors.rethrow().get(() -> {
+				List<Map.Entry<String, String>> parsed = parseArtifactsJar(artifactsUrl, artifactsJar);
+				writeBundleVersions(bundleVersions, artifactsJar, parsed);
+				return parsed;
+			});
 		}
-		return Errors.rethrow().get(() -> {
-			FileMisc.download(release.updateSite() + "artifacts.jar", artifactsJar);
-			return parseFromFile(artifactsJar, keyExtractor);
-		});
+		return toMap(bundles, keyExtractor);
 	}
 
-	private static Map<String, String> parseFromFile(File artifactsJar, Function<String, String> keyExtractor) throws IOException {
-		Box.Nullable<Map<String, String>> value = Box.Nullable.ofNull();
-		ZipMisc.read(artifactsJar, "artifacts.xml", input -> {
-			value.set(Errors.rethrow().get(() -> parse(input, keyExtractor)));
-		});
+	/** Parses the cached `artifacts.jar`, downloading it again if it is corrupt. */
+	private static List<Map.Entry<String, String>> parseArtifactsJar(String artifactsUrl, File artifactsJar) throws IOException {
+		try {
+			return parseFromFile(artifactsJar);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.err.println("Retrying download...");
+			FileMisc.forceDelete(artifactsJar);
+		}
+		MetadataCache.get(artifactsUrl, artifactsJar);
+		return parseFromFile(artifactsJar);
+	}
+
+	private static List<Map.Entry<String, String>> parseFromFile(File artifactsJar) throws IOException {
+		Box.Nullable<List<Map.Entry<String, String>>> value = Box.Nullable.ofNull();
+		ZipMisc.read(artifactsJar, "artifacts.xml", input -> value.set(parseBundles(input)));
 		return Objects.requireNonNull(value.get());
 	}
+
+	/** Bump whenever the format of the bundle versions file, or the version calculation, changes. */
+	private static final int FORMAT = 1;
+
+	/**
+	 * Reads the bundle versions which were parsed from the given `artifacts.jar`, returning
+	 * null if they are missing, corrupt, or were parsed from a different `artifacts.jar`.
+	 */
+	@Nullable
+	static List<Map.Entry<String, String>> readBundleVersions(File bundleVersions, File artifactsJar) {
+		if (!bundleVersions.isFile() || !artifactsJar.isFile()) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(bundleVersions)))) {
+			if (input.readInt() != FORMAT || input.readLong() != artifactsJar.length() || input.readLong() != artifactsJar.lastModified()) {
+				return null;
+			}
+			int count = input.readInt();
+			List<Map.Entry<String, String>> bundles = new ArrayList<>(count);
+			for (int i = 0; i < count; ++i) {
+				bundles.add(new AbstractMap.SimpleImmutableEntry<>(input.readUTF(), input.readUTF()));
+			}
+			return bundles;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/** Writes the bundle versions parsed from the given `artifacts.jar` to a temp file, then atomically moves it into place. */
+	static void writeBundleVersions(File bundleVersions, File artifactsJar, List<Map.Entry<String, String>> bundles) throws IOException {
+		File temp = File.createTempFile(bundleVersions.getName(), ".tmp", bundleVersions.getParentFile());
+		try {
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(FORMAT);
+				output.writeLong(artifactsJar.length());
+				output.writeLong(artifactsJar.lastModified());
+				output.writeInt(bundles.size());
+				for (Map.Entry<String, String> bundle : bundles) {
+					output.writeUTF(bundle.getKey());
+					output.writeUTF(bundle.getValue());
+				}
+			}
+			Files.move(temp.toPath(), bundleVersions.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
 }
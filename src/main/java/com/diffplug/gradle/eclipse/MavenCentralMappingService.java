@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.eclipse;
+
+import com.diffplug.gradle.pde.EclipseRelease;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Remembers the {@link MavenCentralMapping} of each release for the rest of the build,
+ * so that every project which calls `eclipseMavenCentral { release ... }` for the same
+ * release shares a single copy, rather than each reading it from disk again.
+ */
+public abstract class MavenCentralMappingService implements BuildService<BuildServiceParameters.None> {
+	private final Map<EclipseRelease, Map<String, String>> groupIdArtifactIdToVersion = new ConcurrentHashMap<>();
+
+	/** Returns the service for the build which the given project belongs to. */
+	static Provider<MavenCentralMappingService> get(Project project) {
+		// the classloader is part of the name, because projects which load goomph
+		// in different classloaders can't share an instance of this class
+		String name = "goomphMavenCentralMapping" + System.identityHashCode(MavenCentralMappingService.class.getClassLoader());
+		return project.getGradle().getSharedServices().registerIfAbsent(name, MavenCentralMappingService.class, spec -> {});
+	}
+
+	/** Same as {@link MavenCentralMapping#groupIdArtifactIdToVersion(EclipseRelease)}, but computed at most once per build. */
+	public Map<String, String> groupIdArtifactIdToVersion(EclipseRelease release) {
+		return groupIdArtifactIdToVersion.computeIfAbsent(release, unused -> {
+			Logging.getLogger(MavenCentralMappingService.class).info("Computing the maven central mapping of eclipse " + release);
+			return Collections.unmodifiableMap(MavenCentralMapping.groupIdArtifactIdToVersion(release));
+		});
+	}
+}
@@ -80,6 +80,30 @@ import org.gradle.api.plugins.JavaPlugin;
  * whichever platform-specific jar is appropriate.  This
  * works only for the SWT naming convention, `windowing.os.arch`.
  * 
+ * ## Large builds
+ * 
+ * `useNativesForRunningPlatform()` and `constrainTransitivesToThisRelease()`
+ * add a callback which inspects every dependency of every resolution.  If
+ * resolution is slow in a build with many or large configurations, these
+ * alternatives let Gradle do the same work natively:
+ * 
+ * ```
+ * eclipseMavenCentral {
+ *     release '4.7.0', {
+ *         // a dependency substitution for each native artifact of the release
+ *         substituteNativesForRunningPlatform()
+ *         // a strict dependency constraint for each artifact of the release
+ *         // (takes the same exceptions as constrainTransitivesToThisReleaseExcept)
+ *         constrainTransitivesToThisReleaseUsingConstraints()
+ *     }
+ * }
+ * ```
+ * 
+ * Or, to have Gradle align the versions with a platform, `bom 'implementation'`
+ * writes a Maven BOM for the release into goomph's cache, adds the local repository
+ * which holds it, and adds it as a `platform(...)` of the given configuration.  The
+ * BOM can also be used without this plugin, see `MavenCentralMapping.bomRepository`.
+ * 
  * ## Compatibility
  * 
  * Only works with versions from `4.6.2` onwards.
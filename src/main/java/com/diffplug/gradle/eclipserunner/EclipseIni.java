@@ -196,5 +196,16 @@ public class EclipseIni {
 		}
 	}
 
+	/** Returns the vmargs arguments, or an empty list if there are none. */
+	public List<String> getVmargs() {
+		int idx = lines.indexOf(VM_ARGS);
+		if (idx == -1) {
+			return new ArrayList<>();
+		}
+		return lines.subList(idx + 1, lines.size()).stream()
+				.map(Line::toString)
+				.collect(Collectors.toList());
+	}
+
 	private static final Line VM_ARGS = new Line(Dash.SINGLE, "vmargs");
 }
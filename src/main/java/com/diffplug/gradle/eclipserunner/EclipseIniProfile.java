@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.eclipserunner;
+
+import com.diffplug.common.base.Preconditions;
+import com.diffplug.common.base.Unhandled;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Generates the `-vmargs` section of an {@link EclipseIni} tuned for
+ * the size of the workspace and the machine it is running on.
+ *
+ * Start from one of the presets, and tweak from there:
+ *
+ * - `small` - 1g-2g of heap, JVM defaults otherwise.
+ * - `large` - 2g-8g of heap, G1 with string deduplication, skips the OSGi configuration check.
+ * - `huge`  - 4g-16g of heap, G1 with string deduplication, skips the OSGi configuration check.
+ *
+ * Within each preset, the heap grows with the number of projects in the
+ * workspace, but never beyond half of the physical memory of the machine.
+ *
+ * ```gradle
+ * oomphIde {
+ *     eclipseIniProfile('large') {
+ *         gc 'zgc'
+ *         cdsArchive file('build/eclipse.jsa')
+ *     }
+ * }
+ * ```
+ */
+public class EclipseIniProfile {
+	/** The garbage collector to use. */
+	public enum Gc {
+		/** Whatever the JVM picks. */
+		DEFAULT,
+		/** `-XX:+UseG1GC` */
+		G1,
+		/** `-XX:+UseZGC` */
+		ZGC,
+		/** `-XX:+UseParallelGC`, best throughput for indexing and builds, at the cost of longer pauses in the UI. */
+		PARALLEL;
+
+		static Gc parse(String name) {
+			return valueOf(name.toUpperCase(Locale.ROOT));
+		}
+	}
+
+	private static final int BASE_HEAP_MB = 512;
+
+	private final String name;
+	private int minHeapMb;
+	private int maxHeapMb;
+	private int heapMbPerProject;
+	@Nullable
+	private Integer heapMb;
+	private Gc gc = Gc.DEFAULT;
+	private boolean stringDeduplication;
+	private boolean skipConfigurationCheck;
+	@Nullable
+	private File cdsArchive;
+	private boolean validate = true;
+	private final List<String> extraVmargs = new ArrayList<>();
+
+	private EclipseIniProfile(String name, int minHeapMb, int maxHeapMb, int heapMbPerProject) {
+		this.name = name;
+		this.minHeapMb = minHeapMb;
+		this.maxHeapMb = maxHeapMb;
+		this.heapMbPerProject = heapMbPerProject;
+	}
+
+	/** Up to a few dozen projects. */
+	public static EclipseIniProfile small() {
+		return new EclipseIniProfile("small", 1024, 2048, 4);
+	}
+
+	/** A few hundred projects. */
+	public static EclipseIniProfile large() {
+		EclipseIniProfile profile = new EclipseIniProfile("large", 2048, 8192, 8);
+		profile.gc = Gc.G1;
+		profile.stringDeduplication = true;
+		profile.skipConfigurationCheck = true;
+		return profile;
+	}
+
+	/** Hundreds of projects with a big targetplatform. */
+	public static EclipseIniProfile huge() {
+		EclipseIniProfile profile = new EclipseIniProfile("huge", 4096, 16384, 16);
+		profile.gc = Gc.G1;
+		profile.stringDeduplication = true;
+		profile.skipConfigurationCheck = true;
+		return profile;
+	}
+
+	/** Returns the preset with the given name: `small`, `large`, or `huge`. */
+	public static EclipseIniProfile preset(String name) {
+		// @formatter:off
+		switch (name.toLowerCase(Locale.ROOT)) {
+		case "small": return small();
+		case "large": return large();
+		case "huge":  return huge();
+		default: throw new IllegalArgumentException("Unknown eclipse.ini profile '" + name + "', expected 'small', 'large', or 'huge'");
+		}
+		// @formatter:on
+	}
+
+	/** Sets the heap size in megabytes, rather than computing it from the workspace size. */
+	public void heapMb(int heapMb) {
+		Preconditions.checkArgument(heapMb > 0, "heapMb must be positive, was %s", heapMb);
+		this.heapMb = heapMb;
+	}
+
+	/** Sets the bounds within which the heap size is computed from the number of projects. */
+	public void heapMbRange(int minHeapMb, int maxHeapMb) {
+		Preconditions.checkArgument(0 < minHeapMb && minHeapMb <= maxHeapMb, "Expected 0 < min <= max, was %s and %s", minHeapMb, maxHeapMb);
+		this.minHeapMb = minHeapMb;
+		this.maxHeapMb = maxHeapMb;
+	}
+
+	/** Sets how much heap is added for each project in the workspace. */
+	public void heapMbPerProject(int heapMbPerProject) {
+		Preconditions.checkArgument(heapMbPerProject >= 0, "heapMbPerProject must not be negative, was %s", heapMbPerProject);
+		this.heapMbPerProject = heapMbPerProject;
+	}
+
+	/** Sets the garbage collector, one of `default`, `g1`, `zgc`, or `parallel`. */
+	public void gc(String gc) {
+		gc(Gc.parse(gc));
+	}
+
+	/** Sets the garbage collector. */
+	public void gc(Gc gc) {
+		this.gc = Objects.requireNonNull(gc);
+	}
+
+	/** Enables or disables `-XX:+UseStringDeduplication`. */
+	public void stringDeduplication(boolean stringDeduplication) {
+		this.stringDeduplication = stringDeduplication;
+	}
+
+	/** Enables or disables `-Dosgi.checkConfiguration=false`, which skips the bundle timestamp check on startup. */
+	public void skipConfigurationCheck(boolean skipConfigurationCheck) {
+		this.skipConfigurationCheck = skipConfigurationCheck;
+	}
+
+	/** Uses (and creates, if necessary) a class-data-sharing archive at the given location.  Requires Java 19+. */
+	public void cdsArchive(File cdsArchive) {
+		this.cdsArchive = Objects.requireNonNull(cdsArchive);
+	}
+
+	/** Adds arbitrary vmargs after the generated ones. */
+	public void vmargs(String... vmargs) {
+		extraVmargs.addAll(Arrays.asList(vmargs));
+	}
+
+	/** Determines whether the vmargs are checked against the `-vm` before they are written, defaults to true. */
+	public void validate(boolean validate) {
+		this.validate = validate;
+	}
+
+	/** Returns true if the vmargs should be validated against the `-vm`. */
+	public boolean isValidate() {
+		return validate;
+	}
+
+	/** Returns the heap size for the given number of projects and physical memory. */
+	public int heapMb(int projectCount, long physicalMemoryMb) {
+		if (heapMb != null) {
+			return heapMb;
+		}
+		long wanted = BASE_HEAP_MB + (long) heapMbPerProject * projectCount;
+		long bounded = Math.max(minHeapMb, Math.min(maxHeapMb, wanted));
+		// never take more than half the machine
+		long halfOfMachine = Math.max(BASE_HEAP_MB, physicalMemoryMb / 2);
+		return (int) Math.min(bounded, halfOfMachine);
+	}
+
+	/** Returns the vmargs for the given number of projects and physical memory. */
+	public List<String> vmargs(int projectCount, long physicalMemoryMb) {
+		List<String> vmargs = new ArrayList<>();
+		vmargs.add("-Xmx" + heapMb(projectCount, physicalMemoryMb) + "m");
+		// @formatter:off
+		switch (gc) {
+		case DEFAULT:  break;
+		case G1:       vmargs.add("-XX:+UseG1GC");       break;
+		case ZGC:      vmargs.add("-XX:+UseZGC");        break;
+		case PARALLEL: vmargs.add("-XX:+UseParallelGC"); break;
+		default: throw Unhandled.enumException(gc);
+		}
+		// @formatter:on
+		if (stringDeduplication) {
+			vmargs.add("-XX:+UseStringDeduplication");
+		}
+		if (cdsArchive != null) {
+			vmargs.add("-XX:+AutoCreateSharedArchive");
+			vmargs.add("-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath().replace('\\', '/'));
+		}
+		if (skipConfigurationCheck) {
+			vmargs.add("-Dosgi.checkConfiguration=false");
+		}
+		vmargs.addAll(extraVmargs);
+		return vmargs;
+	}
+
+	/** Sets the vmargs of the given ini for a workspace with the given number of projects on this machine. */
+	public void applyTo(EclipseIni ini, int projectCount) {
+		ini.vmargs(vmargs(projectCount, physicalMemoryMb()));
+	}
+
+	/** Returns the physical memory of this machine in megabytes, or {@link Long#MAX_VALUE} if it can't be determined. */
+	public static long physicalMemoryMb() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize() / (1024 * 1024);
+		} else {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Runs `java <vmargs> -version` using the JVM specified by the `-vm` of the given ini, and throws
+	 * an exception with the JVM's output if it refuses to start.
+	 */
+	public static void validate(EclipseIni ini) throws IOException {
+		File java = javaExecutable(new File(ini.getAfter("-vm")));
+		List<String> cmd = new ArrayList<>();
+		cmd.add(java.getAbsolutePath());
+		cmd.addAll(ini.getVmargs());
+		cmd.add("-version");
+		Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+		String output;
+		try (InputStream input = process.getInputStream()) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int numRead;
+			while ((numRead = input.read(buf)) != -1) {
+				buffer.write(buf, 0, numRead);
+			}
+			output = new String(buffer.toByteArray(), Charset.defaultCharset());
+		}
+		int exitValue;
+		try {
+			exitValue = process.waitFor();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		if (exitValue != 0) {
+			throw new IllegalArgumentException("The eclipse.ini vmargs " + ini.getVmargs() + " are not supported by " + java + ":\n" + output);
+		}
+	}
+
+	/** The `-vm` can be a java executable, a `bin` folder, or a java home. */
+	private static File javaExecutable(File vm) {
+		if (vm.isFile()) {
+			if (vm.getName().startsWith("java")) {
+				return vm;
+			}
+			// jvm.dll or libjvm.so is inside the jre, walk up to find its bin/java
+			for (File parent = vm.getParentFile(); parent != null; parent = parent.getParentFile()) {
+				File found = javaInDir(new File(parent, "bin"));
+				if (found != null) {
+					return found;
+				}
+			}
+		} else if (vm.isDirectory()) {
+			File found = javaInDir(vm);
+			if (found == null) {
+				found = javaInDir(new File(vm, "bin"));
+			}
+			if (found != null) {
+				return found;
+			}
+		}
+		throw new IllegalArgumentException("Unable to find a java executable for -vm " + vm);
+	}
+
+	@Nullable
+	private static File javaInDir(File dir) {
+		for (String name : Arrays.asList("java", "java.exe")) {
+			File candidate = new File(dir, name);
+			if (candidate.isFile()) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return name + " heapMb=" + heapMb + " range=" + minHeapMb + "-" + maxHeapMb + " perProject=" + heapMbPerProject
+				+ " gc=" + gc + " stringDeduplication=" + stringDeduplication + " skipConfigurationCheck=" + skipConfigurationCheck
+				+ " cdsArchive=" + cdsArchive + " validate=" + validate + " extraVmargs=" + extraVmargs;
+	}
+}
@@ -16,7 +16,10 @@
 package com.diffplug.gradle.oomph;
 
 
+import com.diffplug.common.base.Errors;
 import com.diffplug.common.collect.ImmutableList;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -43,8 +46,10 @@ import org.gradle.api.JavaVersion;
  *             markDefault = true // or false
  *             executionEnvironments = ['JavaSE-1.6'] // any execution environments can be specified here.
  *         }
+ *         discoverInstalledJres() // adds the JDKs from sdkman, /usr/lib/jvm, gradle toolchains, etc.
  *         compilerComplianceLevel('1.6')
  *         classpathVariable('myClasspath', '/var/lib/repo')
+ *         prewarmWorkspace() // build and index the workspace during ideSetupWorkspace
  *     }
  * }
  * ```
@@ -67,6 +72,13 @@ public class ConventionJdt extends OomphConvention {
 		installedJres.add(instance);
 	}
 
+	boolean discoverInstalledJres = false;
+
+	/** Adds every JDK found by {@link InstalledJreDiscovery}, in addition to those added by {@link #installedJre(Action)}. */
+	public void discoverInstalledJres() {
+		discoverInstalledJres = true;
+	}
+
 	/** Sets default compliance level */
 	public void compilerComplianceLevel(String compilerComplianceLevel) {
 		List<String> JDT_COMPLIANCE_PROPS = ImmutableList.of(
@@ -90,11 +102,51 @@ public class ConventionJdt extends OomphConvention {
 		});
 	}
 
+	private void addDiscoveredJres() {
+		Set<File> locations = new HashSet<>();
+		Set<String> environments = new HashSet<>();
+		for (InstalledJre jre : installedJres) {
+			locations.add(jre.getInstalledLocation());
+			if (jre.getExecutionEnvironments() != null) {
+				environments.addAll(jre.getExecutionEnvironments());
+			}
+		}
+		List<InstalledJre> discovered = Errors.rethrow().get(() -> InstalledJreDiscovery.discover());
+		for (InstalledJre jre : discovered) {
+			if (locations.contains(jre.getInstalledLocation())) {
+				continue;
+			}
+			// explicitly added jres always win the execution environment
+			List<String> unclaimed = new ArrayList<>(jre.getExecutionEnvironments());
+			unclaimed.removeAll(environments);
+			jre.setExecutionEnvironments(unclaimed);
+			installedJres.add(jre);
+		}
+	}
+
+	boolean prewarmWorkspace = false;
+
+	/**
+	 * Runs a full build and waits for the JDT index to be complete
+	 * during `ideSetupWorkspace`, so that the build state and indexes
+	 * are shipped as part of the workspace rather than being created
+	 * on the first launch of the IDE.
+	 */
+	public void prewarmWorkspace() {
+		prewarmWorkspace = true;
+	}
+
 	@Override
 	public void close() {
 		// add installed jres
+		if (discoverInstalledJres) {
+			addDiscoveredJres();
+		}
 		if (!installedJres.isEmpty()) {
 			extension.addSetupAction(new InstalledJreAdder(installedJres));
 		}
+		if (prewarmWorkspace) {
+			extension.addSetupAction(new WorkspacePrewarmer());
+		}
 	}
 }
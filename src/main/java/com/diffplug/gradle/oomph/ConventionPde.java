@@ -16,10 +16,25 @@
 package com.diffplug.gradle.oomph;
 
 
+import com.diffplug.common.base.Errors;
+import com.diffplug.gradle.ConfigMisc;
+import com.diffplug.gradle.FileMisc;
+import com.diffplug.gradle.GoomphCacheLocations;
 import com.diffplug.gradle.OrderingConstraints;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
 
 /**
@@ -74,17 +89,39 @@ public class ConventionPde extends OomphConvention {
 		}
 	}
 
-	/** Sets the target platform. */
+	/**
+	 * Sets the target platform.
+	 *
+	 * If a targetplatform with the same name and the same installation content
+	 * was already resolved by a previous `ideSetupWorkspace`, then PDE's state
+	 * is restored from {@link GoomphCacheLocations#pdeTargetPlatforms()} and
+	 * the target is reused rather than resolved from scratch.
+	 */
 	public static class TargetPlatformSetter extends SetupAction {
 		private static final long serialVersionUID = 3285583309500818867L;
 
+		/** PDE's state within the workspace. */
+		static final String PDE_STATE = ".metadata/.plugins/org.eclipse.pde.core";
+		/** PDE's preferences within the workspace. */
+		static final String PDE_PREFS = ".metadata/.plugins/org.eclipse.core.runtime/.settings/org.eclipse.pde.core.prefs";
+		/** The preference which PDE uses to store the active target. */
+		static final String PDE_PREF_WORKSPACE_TARGET = "workspace_target_handle";
+		/** Maps targetplatform name to `contentHash|handleMemento` for the targets which were created by goomph. */
+		static final String GOOMPH_TARGETS = ".metadata/.plugins/com.diffplug.goomph/targetplatforms.properties";
+		/** Marks a complete entry in the state cache. */
+		static final String CACHE_COMPLETE = "complete";
+
 		String name;
 		ArrayList<File> installations;
+		String contentHash;
+		File stateCache;
 
 		public TargetPlatformSetter(String name, ArrayList<File> installations) {
 			super("com.diffplug.gradle.oomph.ConventionPdeTargetPlatformSetter");
 			this.name = Objects.requireNonNull(name);
 			this.installations = Objects.requireNonNull(installations);
+			this.contentHash = Errors.rethrow().get(() -> contentHash(name, installations));
+			this.stateCache = new File(GoomphCacheLocations.pdeTargetPlatforms(), contentHash);
 		}
 
 		@Override
@@ -97,5 +134,56 @@ public class ConventionPde extends OomphConvention {
 		public String getDescription() {
 			return "create targetplatform";
 		}
+
+		/** Restores PDE's state from a previous resolution of this exact targetplatform, if there is one. */
+		@Override
+		public void beforeLaunch(File workspaceDir) throws IOException {
+			if (!new File(stateCache, CACHE_COMPLETE).isFile()) {
+				return;
+			}
+			FileUtils.copyDirectory(new File(stateCache, PDE_STATE), new File(workspaceDir, PDE_STATE));
+			FileUtils.copyFile(new File(stateCache, GOOMPH_TARGETS), new File(workspaceDir, GOOMPH_TARGETS));
+			// merge the active target into the prefs, which might have been set by workspaceProp
+			String entry = ConfigMisc.loadProps(new File(stateCache, GOOMPH_TARGETS)).get(name);
+			if (entry == null) {
+				return;
+			}
+			File prefsFile = new File(workspaceDir, PDE_PREFS);
+			Map<String, String> prefs;
+			if (prefsFile.exists()) {
+				prefs = ConfigMisc.loadProps(prefsFile);
+			} else {
+				prefs = new LinkedHashMap<>();
+				FileMisc.mkdirs(prefsFile.getParentFile());
+			}
+			prefs.put(PDE_PREF_WORKSPACE_TARGET, entry.substring(entry.indexOf('|') + 1));
+			ConfigMisc.writeProps(prefs, prefsFile);
+		}
+
+		/** Hashes the name, the installation paths, and the size and timestamp of everything in their `plugins` and `features` folders. */
+		static String contentHash(String name, List<File> installations) throws IOException {
+			MessageDigest digest = FileMisc.sha256();
+			Consumer<String> add = str -> digest.update((str + "\n").getBytes(StandardCharsets.UTF_8));
+			add.accept(name);
+			for (File installation : installations) {
+				add.accept(installation.getAbsolutePath());
+				File bundlesInfo = new File(installation, "configuration/org.eclipse.equinox.simpleconfigurator/bundles.info");
+				if (bundlesInfo.isFile()) {
+					digest.update(Files.readAllBytes(bundlesInfo.toPath()));
+				}
+				for (String sub : Arrays.asList("plugins", "features")) {
+					File dir = new File(installation, sub);
+					if (!dir.isDirectory()) {
+						continue;
+					}
+					List<File> children = new ArrayList<>(FileMisc.list(dir));
+					Collections.sort(children);
+					for (File child : children) {
+						add.accept(sub + "/" + child.getName() + " " + child.length() + " " + child.lastModified());
+					}
+				}
+			}
+			return FileMisc.toHex(digest.digest());
+		}
 	}
 }
@@ -16,35 +16,136 @@
 package com.diffplug.gradle.oomph;
 
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.core.target.ITargetDefinition;
+import org.eclipse.pde.core.target.ITargetHandle;
 import org.eclipse.pde.core.target.ITargetLocation;
 import org.eclipse.pde.core.target.ITargetPlatformService;
 import org.eclipse.pde.core.target.LoadTargetDefinitionJob;
 
 class ConventionPdeTargetPlatformSetter extends SetupAction.Internal<ConventionPde.TargetPlatformSetter> {
+	private static final String SEP = "|";
+
 	ConventionPdeTargetPlatformSetter(ConventionPde.TargetPlatformSetter host) {
 		super(host);
 	}
 
 	@Override
 	protected void runWithinEclipse() throws Throwable {
+		File workspaceDir = ResourcesPlugin.getWorkspace().getRoot().getLocation().toFile();
+		File goomphTargets = new File(workspaceDir, ConventionPde.TargetPlatformSetter.GOOMPH_TARGETS);
+		Properties targets = load(goomphTargets);
+		boolean[] alreadyActive = new boolean[1];
 		EclipseMisc.withService(ITargetPlatformService.class, targetPlatformService -> {
-			// create the target
-			ITargetDefinition target = targetPlatformService.newTarget();
-			ITargetLocation[] locations = new ITargetLocation[host.installations.size()];
-			for (int i = 0; i < locations.length; ++i) {
-				String configuration = null; // default config location
-				locations[i] = targetPlatformService.newProfileLocation(host.installations.get(i).getAbsolutePath(), configuration);
+			ITargetDefinition target = findIdentical(targetPlatformService, targets);
+			if (target == null) {
+				// create the target
+				target = targetPlatformService.newTarget();
+				ITargetLocation[] locations = new ITargetLocation[host.installations.size()];
+				for (int i = 0; i < locations.length; ++i) {
+					String configuration = null; // default config location
+					locations[i] = targetPlatformService.newProfileLocation(host.installations.get(i).getAbsolutePath(), configuration);
+				}
+				target.setTargetLocations(locations);
+				target.setName(host.name);
+				targetPlatformService.saveTargetDefinition(target);
+				targets.setProperty(host.name, host.contentHash + SEP + target.getHandle().getMemento());
+				store(targets, goomphTargets);
+			} else if (target.getHandle().equals(targetPlatformService.getWorkspaceTargetHandle())) {
+				// it's identical and already active, nothing to resolve
+				alreadyActive[0] = true;
+				return;
 			}
-			target.setTargetLocations(locations);
-			target.setName(host.name);
-			targetPlatformService.saveTargetDefinition(target);
 			// set it to be active
 			LoadTargetDefinitionJob.load(target);
 		});
+		if (alreadyActive[0]) {
+			return;
+		}
 		// wait for the target to load
 		EclipseMisc.waitForJobsToFinish();
 		// and save the workspace
 		SaveWorkspaceInternal.save();
+		// cache PDE's state so that the next workspace doesn't have to resolve it
+		storeInCache(workspaceDir);
+	}
+
+	/** Returns the target which goomph created for the same name and content, if it still exists. */
+	@Nullable
+	private ITargetDefinition findIdentical(ITargetPlatformService targetPlatformService, Properties targets) throws CoreException {
+		String entry = targets.getProperty(host.name);
+		if (entry == null || !entry.startsWith(host.contentHash + SEP)) {
+			return null;
+		}
+		ITargetHandle handle = targetPlatformService.getTarget(entry.substring(host.contentHash.length() + SEP.length()));
+		if (!handle.exists()) {
+			return null;
+		}
+		ITargetDefinition target = handle.getTargetDefinition();
+		ITargetLocation[] locations = target.getTargetLocations();
+		if (locations == null || locations.length != host.installations.size()) {
+			return null;
+		}
+		for (int i = 0; i < locations.length; ++i) {
+			if (!new File(locations[i].getLocation(false)).equals(host.installations.get(i).getAbsoluteFile())) {
+				return null;
+			}
+		}
+		return target;
+	}
+
+	private void storeInCache(File workspaceDir) throws IOException {
+		File complete = new File(host.stateCache, ConventionPde.TargetPlatformSetter.CACHE_COMPLETE);
+		if (complete.exists()) {
+			return;
+		}
+		copy(new File(workspaceDir, ConventionPde.TargetPlatformSetter.PDE_STATE), new File(host.stateCache, ConventionPde.TargetPlatformSetter.PDE_STATE));
+		copy(new File(workspaceDir, ConventionPde.TargetPlatformSetter.GOOMPH_TARGETS), new File(host.stateCache, ConventionPde.TargetPlatformSetter.GOOMPH_TARGETS));
+		Files.createFile(complete.toPath());
+	}
+
+	/** Recursively copies src to dst, using only nio because we're inside the OSGi runtime. */
+	private static void copy(File src, File dst) throws IOException {
+		Path srcRoot = src.toPath();
+		Path dstRoot = dst.toPath();
+		try (Stream<Path> paths = Files.walk(srcRoot)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				Path target = dstRoot.resolve(srcRoot.relativize(path).toString());
+				if (Files.isDirectory(path)) {
+					Files.createDirectories(target);
+				} else {
+					Files.createDirectories(target.getParent());
+					Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+	}
+
+	private static Properties load(File file) throws IOException {
+		Properties props = new Properties();
+		if (file.isFile()) {
+			try (InputStream input = Files.newInputStream(file.toPath())) {
+				props.load(input);
+			}
+		}
+		return props;
+	}
+
+	private static void store(Properties props, File file) throws IOException {
+		Files.createDirectories(file.toPath().getParent());
+		try (OutputStream output = Files.newOutputStream(file.toPath())) {
+			props.store(output, "");
+		}
 	}
 }
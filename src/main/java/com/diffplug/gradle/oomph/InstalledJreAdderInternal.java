@@ -18,8 +18,12 @@ package com.diffplug.gradle.oomph;
 
 import com.diffplug.gradle.oomph.SetupAction.Internal;
 import java.io.File;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -31,6 +35,7 @@ import org.eclipse.jdt.launching.VMStandin;
 import org.eclipse.jdt.launching.environments.IExecutionEnvironment;
 
 public class InstalledJreAdderInternal extends Internal<InstalledJreAdder> {
+	private static final String STANDARD_VM_TYPE = "org.eclipse.jdt.internal.debug.ui.launcher.StandardVMType";
 
 	InstalledJreAdderInternal(InstalledJreAdder host) {
 		super(host);
@@ -38,34 +43,59 @@ public class InstalledJreAdderInternal extends Internal<InstalledJreAdder> {
 
 	@Override
 	protected void runWithinEclipse() throws Throwable {
-		IVMInstallType[] types = JavaRuntime.getVMInstallTypes();
-		for (IVMInstallType type : types) {
-			if ("org.eclipse.jdt.internal.debug.ui.launcher.StandardVMType".equals(type.getId())) {
-				for (InstalledJre jreToAdd : host.installedJres) {
-					IVMInstall realVM = addInstalledJre(type, jreToAdd);
-					if (jreToAdd.isMarkDefault()) {
-						JavaRuntime.setDefaultVMInstall(realVM, new NullProgressMonitor());
-					}
-					linkWithExecutionEnvironments(realVM, jreToAdd);
-				}
+		IVMInstallType type = JavaRuntime.getVMInstallType(STANDARD_VM_TYPE);
+		if (type == null) {
+			return;
+		}
+		// index the existing installs once, rather than once per jre to add
+		Map<File, IVMInstall> installs = indexExistingInstalls();
+		List<File> toCreate = host.installedJres.stream()
+				.map(InstalledJre::getInstalledLocation)
+				.filter(location -> !installs.containsKey(location))
+				.distinct()
+				.collect(Collectors.toList());
+		// validate and detect libraries up front, so that a bad location fails before anything is added
+		Map<File, IStatus> validation = validateAndDetectLibraries(type, toCreate);
+		for (InstalledJre jreToAdd : host.installedJres) {
+			IVMInstall realVM = installs.get(jreToAdd.getInstalledLocation());
+			if (realVM == null) {
+				realVM = addInstalledJre(type, jreToAdd, validation.get(jreToAdd.getInstalledLocation()));
+				installs.put(jreToAdd.getInstalledLocation(), realVM);
+			}
+			if (jreToAdd.isMarkDefault()) {
+				JavaRuntime.setDefaultVMInstall(realVM, new NullProgressMonitor());
 			}
+			linkWithExecutionEnvironments(realVM, jreToAdd);
 		}
 	}
 
-	protected IVMInstall addInstalledJre(IVMInstallType type, InstalledJre jreToAdd) throws Exception {
-		IVMInstall retVal = findJre(jreToAdd.getVersion(), jreToAdd.getInstalledLocation());
-		if (retVal == null) {
-			IStatus validationStatus = type.validateInstallLocation(jreToAdd.getInstalledLocation());
-			if (!validationStatus.isOK()) {
-				throw new CoreException(validationStatus);
+	/**
+	 * Validates each location, and then has JDT detect its libraries so that they're already
+	 * cached by the time we convert the {@link VMStandin} into a real VM.
+	 *
+	 * This is sequential on purpose, because JDT's library detection fills static caches
+	 * which aren't documented as thread-safe.
+	 */
+	protected Map<File, IStatus> validateAndDetectLibraries(IVMInstallType type, List<File> locations) {
+		Map<File, IStatus> result = new HashMap<>();
+		for (File location : locations) {
+			IStatus status = type.validateInstallLocation(location);
+			if (status.isOK()) {
+				type.getDefaultLibraryLocations(location);
 			}
-			VMStandin vmStandin = new VMStandin(type, EcoreUtil.generateUUID());
-			vmStandin.setInstallLocation(jreToAdd.getInstalledLocation());
-			vmStandin.setName("JRE for " + jreToAdd.getVersion());
-			IVMInstall realVM = vmStandin.convertToRealVM();
-			retVal = realVM;
+			result.put(location, status);
 		}
-		return retVal;
+		return result;
+	}
+
+	protected IVMInstall addInstalledJre(IVMInstallType type, InstalledJre jreToAdd, IStatus validationStatus) throws Exception {
+		if (!validationStatus.isOK()) {
+			throw new CoreException(validationStatus);
+		}
+		VMStandin vmStandin = new VMStandin(type, EcoreUtil.generateUUID());
+		vmStandin.setInstallLocation(jreToAdd.getInstalledLocation());
+		vmStandin.setName("JRE for " + jreToAdd.getVersion());
+		return vmStandin.convertToRealVM();
 	}
 
 	protected void linkWithExecutionEnvironments(IVMInstall installedVm, InstalledJre jreToAdd) {
@@ -83,16 +113,17 @@ public class InstalledJreAdderInternal extends Internal<InstalledJreAdder> {
 		}
 	}
 
-	private IVMInstall findJre(String version, File location) throws Exception {
+	/** Returns every existing install of every VM type, keyed by its location. */
+	private static Map<File, IVMInstall> indexExistingInstalls() {
+		Map<File, IVMInstall> index = new HashMap<>();
 		for (IVMInstallType vmInstallType : JavaRuntime.getVMInstallTypes()) {
 			for (IVMInstall vmInstall : vmInstallType.getVMInstalls()) {
 				File installLocation = vmInstall.getInstallLocation();
-				if (location.equals(installLocation)) {
-					return vmInstall;
+				if (installLocation != null) {
+					index.putIfAbsent(installLocation, vmInstall);
 				}
 			}
 		}
-
-		return null;
+		return index;
 	}
 }
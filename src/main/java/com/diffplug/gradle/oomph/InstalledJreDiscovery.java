@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.oomph;
+
+import com.diffplug.common.base.StandardSystemProperty;
+import com.diffplug.gradle.ConfigMisc;
+import com.diffplug.gradle.FileMisc;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds JDKs in the places they are commonly installed:
+ *
+ * - `~/.sdkman/candidates/java`
+ * - `/usr/lib/jvm`
+ * - `/Library/Java/JavaVirtualMachines`
+ * - `~/.gradle/jdks` (gradle toolchains)
+ * - `~/.jdks` (IntelliJ)
+ *
+ * The version of each JDK is read from its `release` file, and cached in
+ * {@link GoomphCacheLocations#installedJreDiscovery()} keyed on the
+ * timestamp of that file.
+ */
+public class InstalledJreDiscovery {
+	private static final String CACHE_FILE = "cache.properties";
+	private static final String SEP = "|";
+
+	/** The folders which contain JDKs in the common locations, whether or not they exist. */
+	public static List<File> defaultSearchRoots() {
+		File userHome = new File(StandardSystemProperty.USER_HOME.value());
+		String gradleUserHome = System.getenv("GRADLE_USER_HOME");
+		return Arrays.asList(
+				new File(userHome, ".sdkman/candidates/java"),
+				new File("/usr/lib/jvm"),
+				new File("/Library/Java/JavaVirtualMachines"),
+				gradleUserHome == null ? new File(userHome, ".gradle/jdks") : new File(gradleUserHome, "jdks"),
+				new File(userHome, ".jdks"));
+	}
+
+	/** Discovers all the JDKs in the {@link #defaultSearchRoots()}. */
+	public static List<InstalledJre> discover() throws IOException {
+		return discover(defaultSearchRoots());
+	}
+
+	/**
+	 * Discovers all the JDKs which are direct children of the given roots.  Each
+	 * JDK is linked with the `JavaSE-N` execution environment for its version,
+	 * unless a newer JDK of the same major version has already claimed it.
+	 */
+	public static List<InstalledJre> discover(Collection<File> roots) throws IOException {
+		File cacheFile = new File(GoomphCacheLocations.installedJreDiscovery(), CACHE_FILE);
+		Map<String, String> cache = cacheFile.isFile() ? ConfigMisc.loadProps(cacheFile) : new LinkedHashMap<>();
+		Map<String, String> updated = new LinkedHashMap<>();
+
+		Map<File, String> versions = new LinkedHashMap<>();
+		for (File root : roots) {
+			if (!root.isDirectory()) {
+				continue;
+			}
+			for (File child : FileMisc.list(root)) {
+				Optional<File> javaHome = javaHome(child);
+				if (!javaHome.isPresent()) {
+					continue;
+				}
+				// sdkman's "current" is a symlink, so we dedupe on the canonical path
+				File home = javaHome.get().getCanonicalFile();
+				if (versions.containsKey(home)) {
+					continue;
+				}
+				File release = new File(home, "release");
+				String key = home.getAbsolutePath();
+				String cached = cache.get(key);
+				String version;
+				String timestamp = Long.toString(release.lastModified());
+				if (cached != null && cached.startsWith(timestamp + SEP)) {
+					version = cached.substring(timestamp.length() + SEP.length());
+				} else {
+					version = parseReleaseVersion(release).orElse(null);
+				}
+				if (version != null) {
+					updated.put(key, timestamp + SEP + version);
+					versions.put(home, version);
+				}
+			}
+		}
+		if (!updated.equals(cache)) {
+			FileMisc.mkdirs(cacheFile.getParentFile());
+			ConfigMisc.writeProps(updated, cacheFile);
+		}
+
+		// newest first, so that the newest JDK for each major version gets the execution environment
+		List<Map.Entry<File, String>> sorted = new ArrayList<>(versions.entrySet());
+		sorted.sort(Comparator.comparing(Map.Entry<File, String>::getValue, InstalledJreDiscovery::compareVersions).reversed());
+		Set<String> claimedEnvironments = new HashSet<>();
+		List<InstalledJre> result = new ArrayList<>(sorted.size());
+		for (Map.Entry<File, String> entry : sorted) {
+			InstalledJre jre = new InstalledJre();
+			jre.setVersion(entry.getValue());
+			jre.setInstalledLocation(entry.getKey());
+			String environment = executionEnvironment(entry.getValue());
+			if (claimedEnvironments.add(environment)) {
+				jre.setExecutionEnvironments(Collections.singletonList(environment));
+			} else {
+				jre.setExecutionEnvironments(Collections.emptyList());
+			}
+			result.add(jre);
+		}
+		return result;
+	}
+
+	/** Returns the java home within the given folder, if there is one. */
+	private static Optional<File> javaHome(File dir) {
+		for (File candidate : Arrays.asList(dir, new File(dir, "Contents/Home"))) {
+			if (new File(candidate, "release").isFile() && new File(candidate, "bin").isDirectory()) {
+				return Optional.of(candidate);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static final Pattern JAVA_VERSION = Pattern.compile("^JAVA_VERSION=\"?([^\"]+)\"?$");
+
+	/** Parses `JAVA_VERSION` from a JDK's `release` file. */
+	static Optional<String> parseReleaseVersion(File release) throws IOException {
+		for (String line : Files.readAllLines(release.toPath(), StandardCharsets.ISO_8859_1)) {
+			Matcher matcher = JAVA_VERSION.matcher(line.trim());
+			if (matcher.matches()) {
+				return Optional.of(matcher.group(1));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/** Returns the major version, e.g. `8` for `1.8.0_392` and `17` for `17.0.9`. */
+	static int majorVersion(String version) {
+		int[] parts = parseVersion(version);
+		if (parts.length > 1 && parts[0] == 1) {
+			return parts[1];
+		} else {
+			return parts.length == 0 ? 0 : parts[0];
+		}
+	}
+
+	/** Returns the JDT execution environment id for the given version, e.g. `JavaSE-1.8` or `JavaSE-17`. */
+	static String executionEnvironment(String version) {
+		int major = majorVersion(version);
+		if (major <= 5) {
+			return "J2SE-1." + major;
+		} else if (major <= 8) {
+			return "JavaSE-1." + major;
+		} else {
+			return "JavaSE-" + major;
+		}
+	}
+
+	private static int compareVersions(String a, String b) {
+		int[] partsA = parseVersion(a);
+		int[] partsB = parseVersion(b);
+		for (int i = 0; i < Math.min(partsA.length, partsB.length); ++i) {
+			int cmp = Integer.compare(partsA[i], partsB[i]);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(partsA.length, partsB.length);
+	}
+
+	private static int[] parseVersion(String version) {
+		return Arrays.stream(version.split("[^0-9]+"))
+				.filter(part -> !part.isEmpty())
+				.mapToInt(Integer::parseInt)
+				.toArray();
+	}
+}
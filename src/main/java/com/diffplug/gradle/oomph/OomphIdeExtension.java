@@ -30,6 +30,7 @@ import com.diffplug.gradle.Lazyable;
 import com.diffplug.gradle.StateBuilder;
 import com.diffplug.gradle.eclipse.EquoMigration;
 import com.diffplug.gradle.eclipserunner.EclipseIni;
+import com.diffplug.gradle.eclipserunner.EclipseIniProfile;
 import com.diffplug.gradle.eclipserunner.EclipseIniLauncher;
 import com.diffplug.gradle.oomph.thirdparty.ConventionThirdParty;
 import com.diffplug.gradle.p2.P2Declarative;
@@ -94,6 +95,8 @@ public class OomphIdeExtension implements P2Declarative {
 
 	Action<EclipseIni> eclipseIni;
 
+	EclipseIniProfile eclipseIniProfile;
+
 	Object icon, splash;
 
 	public OomphIdeExtension(Project project) throws IOException {
@@ -156,6 +159,19 @@ public class OomphIdeExtension implements P2Declarative {
 		this.eclipseIni = eclipseIni;
 	}
 
+	/** Generates the `eclipse.ini` vmargs from the given {@link EclipseIniProfile} preset (`small`, `large`, or `huge`), rather than `-Xmx1g`. */
+	public void eclipseIniProfile(String preset) {
+		eclipseIniProfile(preset, Actions.doNothing());
+	}
+
+	/** Generates the `eclipse.ini` vmargs from the given {@link EclipseIniProfile} preset, with some modifications. */
+	public void eclipseIniProfile(String preset, Action<EclipseIniProfile> action) {
+		Preconditions.checkArgument(this.eclipseIniProfile == null, "Can only set eclipseIniProfile once");
+		EclipseIniProfile profile = EclipseIniProfile.preset(preset);
+		action.execute(profile);
+		this.eclipseIniProfile = profile;
+	}
+
 	/** Sets the folder where the ide will be built. */
 	public void ideDir(Object ideDir) {
 		this.ideDir = Objects.requireNonNull(ideDir);
@@ -351,6 +367,7 @@ public class OomphIdeExtension implements P2Declarative {
 		state.addFile("splash", splash);
 		state.add("name", name);
 		state.add("perspective", perspective);
+		state.add("eclipseIniProfile", eclipseIniProfile);
 		return state.toString();
 	}
 
@@ -450,7 +467,11 @@ public class OomphIdeExtension implements P2Declarative {
 		File splashFile = new File(ideDir, FileMisc.macContentsEclipse() + "dropins/com.diffplug.goomph.branding/splash.bmp");
 		ini.set("-showsplash", splashFile);
 		// wipe out defaults, because they mess up mac icons (and other stuff)
-		ini.vmargs("-Xmx1g");
+		if (eclipseIniProfile == null) {
+			ini.vmargs("-Xmx1g");
+		} else {
+			eclipseIniProfile.applyTo(ini, projectFiles.size());
+		}
 		// specify the VM now that we've got multiple versions floating around
 		File javaHome = new File(StandardSystemProperty.JAVA_HOME.value());
 		boolean containsJava = Arrays.stream(javaHome.listFiles()).anyMatch(f -> {
@@ -469,6 +490,10 @@ public class OomphIdeExtension implements P2Declarative {
 		if (eclipseIni != null) {
 			eclipseIni.execute(ini);
 		}
+		// make sure the -vm will actually start with the generated flags
+		if (eclipseIniProfile != null && eclipseIniProfile.isValidate()) {
+			EclipseIniProfile.validate(ini);
+		}
 		ini.writeTo(iniFile);
 	}
 
@@ -542,6 +567,11 @@ public class OomphIdeExtension implements P2Declarative {
 		List<SetupAction> ordered = SetupAction.order(list);
 		// save the workspace as the last step
 		ordered.add(new SaveWorkspace());
+		// give the actions a chance to prepare the workspace
+		File workspaceDir = getWorkspaceDir();
+		for (SetupAction action : ordered) {
+			action.beforeLaunch(workspaceDir);
+		}
 
 		SetupWithinEclipse internal = new SetupWithinEclipse(ideDir, ordered);
 		JavaExecable.exec(project, internal, execSpec -> {
@@ -18,6 +18,8 @@ package com.diffplug.gradle.oomph;
 
 import com.diffplug.gradle.OrderingConstraints;
 import com.diffplug.gradle.osgi.OsgiExecable;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -43,6 +45,9 @@ public abstract class SetupAction extends OsgiExecable.ReflectionHost {
 	/** Populates the ordering constraints. */
 	protected void populateOrdering(OrderingConstraints<Class<? extends SetupAction>> ordering) {}
 
+	/** Called from gradle, just before the eclipse instance which will run this action is launched on the given workspace. */
+	public void beforeLaunch(File workspaceDir) throws IOException {}
+
 	@Override
 	public final String toString() {
 		return getDescription();
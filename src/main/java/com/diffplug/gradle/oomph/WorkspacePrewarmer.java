@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.oomph;
+
+import com.diffplug.gradle.OrderingConstraints;
+
+/**
+ * Runs a full build of the workspace and waits for the
+ * JDT indexer to finish, so that the first launch of the
+ * IDE doesn't have to.
+ */
+public class WorkspacePrewarmer extends SetupAction {
+	private static final long serialVersionUID = -2417096383536519372L;
+
+	public WorkspacePrewarmer() {
+		super("com.diffplug.gradle.oomph.WorkspacePrewarmerInternal");
+	}
+
+	@Override
+	protected void populateOrdering(OrderingConstraints<Class<? extends SetupAction>> ordering) {
+		// we can only build projects once they have been imported
+		ordering.after(ProjectImporter.class);
+		// and once their JRE and targetplatform are in place
+		ordering.afterIfPresent(InstalledJreAdder.class);
+		ordering.afterIfPresent(ConventionPde.TargetPlatformSetter.class);
+	}
+
+	@Override
+	public String getDescription() {
+		return "prewarm workspace build and index";
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.oomph;
+
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameRequestor;
+
+/** @see WorkspacePrewarmer */
+class WorkspacePrewarmerInternal extends SetupAction.Internal<WorkspacePrewarmer> {
+	/** A type name which can't exist, so the search does nothing except wait for the index. */
+	private static final char[] NO_SUCH_TYPE = "!@$#!@".toCharArray();
+
+	WorkspacePrewarmerInternal(WorkspacePrewarmer host) {
+		super(host);
+	}
+
+	@Override
+	protected void runWithinEclipse() throws Throwable {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		// full build of every project
+		workspace.build(IncrementalProjectBuilder.FULL_BUILD, new NullProgressMonitor());
+		// the build can trigger an autobuild, which must finish before the index can settle
+		Job.getJobManager().join(ResourcesPlugin.FAMILY_AUTO_BUILD, new NullProgressMonitor());
+		// JDT has no public "wait for index" api, but a search which waits until it is
+		// ready to search will block until the IndexManager has processed every job
+		new SearchEngine().searchAllTypeNames(
+				null,
+				SearchPattern.R_EXACT_MATCH,
+				NO_SUCH_TYPE,
+				SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE,
+				IJavaSearchConstants.TYPE,
+				SearchEngine.createWorkspaceScope(),
+				new TypeNameRequestor() {},
+				IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+				new NullProgressMonitor());
+	}
+}
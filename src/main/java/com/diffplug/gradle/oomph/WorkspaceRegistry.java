@@ -17,16 +17,26 @@ package com.diffplug.gradle.oomph;
 
 
 import com.diffplug.common.base.Errors;
+import com.diffplug.gradle.ConfigMisc;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.GoomphCacheLocations;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.Project;
+import org.gradle.api.logging.Logging;
 
 /**
  * Maintains a registry of goomph workspaces.
@@ -62,9 +72,18 @@ import org.gradle.api.Project;
  * The registry lives in {@link GoomphCacheLocations#workspaces()}.  It names the workspace folders as such:
  * 
  * ```
- *     gradle root project's name-hashcode of ide directory absolute path/
- *     gradle root project's name-hashcode of ide directory absolute path-owner   [file containing absolute path of ide folder]
+ *     gradle root project's name-first 16 hex digits of the SHA-256 of ide directory absolute path/
+ *     gradle root project's name-first 16 hex digits of the SHA-256 of ide directory absolute path-owner   [file containing absolute path of ide folder]
+ *     index.properties   [maps each workspace folder name to the absolute path of its ide folder]
+ *     index.lock         [held while reading or writing the index, so that concurrent gradle daemons are safe]
  * ```
+ *
+ * The index is always replaced atomically.  Stale workspaces are moved into a `.trash` folder
+ * while the lock is held, and deleted from there in the background.
+ *
+ * This folder is shared with older versions of goomph, which delete every workspace that
+ * doesn't have an `-owner` token, and which don't know about the index.  So every workspace
+ * keeps its token, and workspaces which only have a token are added to the index.
  */
 public class WorkspaceRegistry {
 	public static WorkspaceRegistry instance() throws IOException {
@@ -73,24 +92,18 @@ public class WorkspaceRegistry {
 
 	final File root;
 	/** Map from the ide directory to a workspace directory. */
-	final Map<File, File> ownerToWorkspace = new HashMap<>();
+	final Map<File, File> ownerToWorkspace = new LinkedHashMap<>();
 
+	static final String INDEX = "index.properties";
+	static final String LOCK = "index.lock";
+	static final String TRASH = ".trash";
+	/** Token files which older versions of goomph read instead of the index. */
 	static final String OWNER_PATH = "-owner";
 
 	WorkspaceRegistry(File root) throws IOException {
 		this.root = Objects.requireNonNull(root);
 		FileMisc.mkdirs(root);
-		for (File workspace : FileMisc.list(root)) {
-			if (workspace.isDirectory()) {
-				Optional<String> ownerPath = FileMisc.readToken(root, workspace.getName() + OWNER_PATH);
-				if (!ownerPath.isPresent()) {
-					// if there's no token, delete it
-					deleteWorkspace(workspace, "missing token " + OWNER_PATH + ".");
-				} else {
-					ownerToWorkspace.put(new File(ownerPath.get()), workspace);
-				}
-			}
-		}
+		withLock(index -> null);
 	}
 
 	/** Returns the workspace directory appropriate for the given project and ide folder. */
@@ -100,39 +113,157 @@ public class WorkspaceRegistry {
 
 	/** Returns the workspace directory appropriate for the given name and file. */
 	public File workspaceDir(String name, File ideDir) {
-		return ownerToWorkspace.computeIfAbsent(ideDir, owner -> {
-			File workspace = new File(root, name + "-" + owner.getAbsolutePath().hashCode());
+		File known = ownerToWorkspace.get(ideDir);
+		if (known != null && known.isDirectory()) {
+			return known;
+		}
+		return Errors.rethrow().get(() -> withLock(index -> {
+			File workspace = ownerToWorkspace.get(ideDir);
+			if (workspace == null) {
+				workspace = new File(root, name + "-" + FileMisc.shortHash(ideDir.getAbsolutePath()));
+				index.put(workspace.getName(), ideDir.getAbsolutePath());
+				ownerToWorkspace.put(ideDir, workspace);
+			}
+			// the token comes first, so that an older goomph never sees the workspace without it
+			File token = new File(root, workspace.getName() + OWNER_PATH);
+			if (!token.isFile()) {
+				Errors.rethrow().run(() -> FileMisc.writeToken(root, token.getName(), ideDir.getAbsolutePath()));
+			}
 			FileMisc.mkdirs(workspace);
-			Errors.rethrow().run(() -> {
-				FileMisc.writeToken(root, workspace.getName() + OWNER_PATH, ideDir.getAbsolutePath());
-			});
 			return workspace;
-		});
+		}));
 	}
 
-	/** Removes all workspace directories for which their owning workspace is no longer present. */
+	/** Removes all workspace directories for which their owning workspace is no longer present, in a background thread. */
 	public void clean() {
-		Iterator<Map.Entry<File, File>> iter = ownerToWorkspace.entrySet().iterator();
-		while (iter.hasNext()) {
-			Map.Entry<File, File> entry = iter.next();
-			File ownerDir = entry.getKey();
-			File workspaceDir = entry.getValue();
-			if (!ownerDir.exists()) {
-				deleteWorkspace(workspaceDir, "owner " + ownerDir + " no longer exists.");
-				iter.remove();
+		List<File> trash = Errors.rethrow().get(this::moveStaleToTrash);
+		Thread thread = new Thread(() -> emptyTrash(trash), "goomph-workspace-clean");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Removes all workspace directories for which their owning workspace is no longer present, and returns the number of bytes reclaimed. */
+	public long cleanAndWait() throws IOException {
+		return emptyTrash(moveStaleToTrash());
+	}
+
+	/** Removes stale workspaces from the index and moves them into the trash, returns the contents of the trash. */
+	private List<File> moveStaleToTrash() throws IOException {
+		return withLock(index -> {
+			File trashDir = new File(root, TRASH);
+			List<Map.Entry<File, File>> stale = new ArrayList<>();
+			for (Map.Entry<File, File> entry : ownerToWorkspace.entrySet()) {
+				if (!entry.getKey().exists()) {
+					stale.add(entry);
+				}
+			}
+			for (Map.Entry<File, File> entry : stale) {
+				File workspace = entry.getValue();
+				index.remove(workspace.getName());
+				ownerToWorkspace.remove(entry.getKey());
+				try {
+					Files.deleteIfExists(new File(root, workspace.getName() + OWNER_PATH).toPath());
+				} catch (IOException e) {
+					warnCouldNotDelete(workspace, "owner " + entry.getKey() + " no longer exists.", e);
+				}
+				if (workspace.exists()) {
+					FileMisc.mkdirs(trashDir);
+					File dest = new File(trashDir, workspace.getName() + "-" + System.nanoTime());
+					try {
+						Files.move(workspace.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					} catch (IOException e) {
+						warnCouldNotDelete(workspace, "owner " + entry.getKey() + " no longer exists.", e);
+					}
+				}
 			}
+			// includes anything left over by a previous clean which didn't finish
+			return trashDir.isDirectory() ? FileMisc.list(trashDir) : new ArrayList<File>();
+		});
+	}
+
+	/** Deletes the given workspaces, and returns the number of bytes reclaimed.  No reason to break a build over spilled diskspace. */
+	private long emptyTrash(List<File> trash) {
+		long reclaimed = 0;
+		int deleted = 0;
+		for (File workspace : trash) {
+			try {
+				long size = FileUtils.sizeOf(workspace);
+				FileMisc.forceDelete(workspace);
+				reclaimed += size;
+				++deleted;
+			} catch (Exception e) {
+				warnCouldNotDelete(workspace, "it was stale.", e);
+			}
+		}
+		if (deleted > 0) {
+			Logging.getLogger(WorkspaceRegistry.class).info("Deleted " + deleted + " stale goomph workspace(s) from " + root + ", reclaimed " + FileUtils.byteCountToDisplaySize(reclaimed) + ".");
 		}
+		return reclaimed;
 	}
 
-	/** Tries to delete folder.  If it fails, it prints a warning but keeps going.  No reason to break a build over spilled diskspace. */
-	private void deleteWorkspace(File workspace, String reason) {
-		try {
-			FileMisc.forceDelete(workspace);
-			File token = new File(root, workspace.getName() + OWNER_PATH);
-			FileMisc.forceDelete(token);
-		} catch (Exception e) {
-			System.err.println("Tried to delete workspace " + workspace.getAbsolutePath() + " because " + reason);
-			e.printStackTrace();
+	/**
+	 * Holds the lock (both within this JVM and across processes), reads the index into {@link #ownerToWorkspace},
+	 * and passes it to the given function.  If the function modifies the index, it is atomically replaced.
+	 */
+	private <T> T withLock(Function<Map<String, String>, T> function) throws IOException {
+		synchronized (WorkspaceRegistry.class) {
+			try (FileChannel channel = FileChannel.open(new File(root, LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				File indexFile = new File(root, INDEX);
+				Map<String, String> index;
+				boolean dirty;
+				if (indexFile.isFile()) {
+					index = ConfigMisc.loadProps(indexFile);
+					dirty = false;
+				} else {
+					index = new LinkedHashMap<>();
+					dirty = true;
+				}
+				dirty |= indexLegacyWorkspaces(index);
+				ownerToWorkspace.clear();
+				index.forEach((workspace, owner) -> ownerToWorkspace.put(new File(owner), new File(root, workspace)));
+
+				Map<String, String> before = new LinkedHashMap<>(index);
+				T result = function.apply(index);
+				if (dirty || !before.equals(index)) {
+					File temp = new File(root, INDEX + ".tmp");
+					ConfigMisc.writeProps(index, temp);
+					Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				}
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Adds the workspaces which older versions of goomph created (which only have an `-owner` token)
+	 * to the index, and deletes workspaces which have neither, the same as older versions do.
+	 * Returns true if the index changed.
+	 */
+	private boolean indexLegacyWorkspaces(Map<String, String> index) throws IOException {
+		boolean changed = false;
+		for (File workspace : FileMisc.list(root)) {
+			if (!workspace.isDirectory() || workspace.getName().equals(TRASH) || index.containsKey(workspace.getName())) {
+				continue;
+			}
+			Optional<String> ownerPath = FileMisc.readToken(root, workspace.getName() + OWNER_PATH);
+			if (ownerPath.isPresent()) {
+				index.put(workspace.getName(), ownerPath.get());
+				changed = true;
+			} else {
+				// if there's no token, delete it
+				try {
+					FileMisc.forceDelete(workspace);
+				} catch (Exception e) {
+					warnCouldNotDelete(workspace, "missing token " + OWNER_PATH + ".", e);
+				}
+			}
 		}
+		return changed;
+	}
+
+	private static void warnCouldNotDelete(File workspace, String reason, Exception e) {
+		System.err.println("Tried to delete workspace " + workspace.getAbsolutePath() + " because " + reason);
+		e.printStackTrace();
 	}
 }
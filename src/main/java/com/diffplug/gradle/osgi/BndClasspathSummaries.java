@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.osgi;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.EmbeddedResource;
+import aQute.bnd.osgi.Jar;
+import com.diffplug.common.collect.ImmutableSet;
+import com.diffplug.common.io.ByteStreams;
+import com.diffplug.gradle.FileMisc;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers what bnd needs from each jar on the classpath, so that a miss in
+ * {@link BndManifestCache} doesn't have to open every dependency jar again.
+ * Only used with `osgiBndManifest { summarizeClasspath true }`.
+ *
+ * To compute the imports, bnd reads the `Export-Package` of a dependency's
+ * manifest, and learns the packages of a plain jar from its folders, along
+ * with their versions from `packageinfo` and `package-info.class`.  It also
+ * loads the annotation types of the classpath, to follow meta-annotations such
+ * as the `@RequireServiceComponentRuntime` on DS's `@Component`.  A summary
+ * holds exactly that, keyed by the jar's path, size, and timestamp, and bnd gets
+ * it as a small in-memory jar.  A few instructions make bnd copy classes out of
+ * the classpath, or read other classes from it, and for those it gets the real jars.
+ */
+class BndClasspathSummaries {
+	/** Bump whenever the format of the cache file changes. */
+	private static final int FORMAT = 2;
+	private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+	/** The files which bnd reads from a classpath jar, besides its manifest and annotation types. */
+	private static final Set<String> VERSION_FILES = ImmutableSet.of("packageinfo", "package-info.class");
+	/** Stands in for the content of a folder which has no version files, so that bnd still sees the package. */
+	static final String PLACEHOLDER = "goomph-summary";
+	/** Instructions which make bnd copy classes out of the classpath, or read them. */
+	private static final Set<String> READS_CLASSPATH_CONTENT = ImmutableSet.of(
+			"Export-Package", "Private-Package", "-privatepackage", "-includepackage",
+			"Conditional-Package", "-conditionalpackage",
+			"-dsannotations-options", "-metatypeannotations-options");
+
+	private final File cacheFile;
+
+	BndClasspathSummaries(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Adds the given classpath to the analyzer, with a summary in place of every jar,
+	 * unless the instructions need the content of the classpath.
+	 */
+	void addClasspath(Analyzer analyzer, Map<String, String> instructions, Collection<File> classpath) throws IOException {
+		if (instructions.keySet().stream().anyMatch(READS_CLASSPATH_CONTENT::contains)) {
+			analyzer.addClasspath(classpath);
+			return;
+		}
+		Map<String, Summary> cached = read();
+		Map<String, Summary> used = new LinkedHashMap<>();
+		boolean changed = false;
+		for (File entry : classpath) {
+			if (!entry.isFile()) {
+				// directories are read lazily anyway, and bnd reports missing entries
+				analyzer.addClasspath(Collections.singletonList(entry));
+				continue;
+			}
+			String path = entry.getAbsolutePath();
+			Summary summary = cached.get(path);
+			if (summary == null || summary.size != entry.length() || summary.lastModified != entry.lastModified()) {
+				try {
+					summary = Summary.read(entry);
+				} catch (IOException e) {
+					// not a jar we can read, so bnd can deal with it
+					analyzer.addClasspath(Collections.singletonList(entry));
+					continue;
+				}
+				changed = true;
+			}
+			used.put(path, summary);
+			analyzer.addClasspath(summary.toJar(entry.getName()));
+		}
+		if (changed || used.size() != cached.size()) {
+			write(used);
+		}
+	}
+
+	/** What bnd needs from a single jar. */
+	static class Summary {
+		final long size;
+		final long lastModified;
+		/** Every folder which contains a file, mapped to the content of its version files and manifest. */
+		final Map<String, Map<String, byte[]>> folders;
+
+		Summary(long size, long lastModified, Map<String, Map<String, byte[]>> folders) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.folders = folders;
+		}
+
+		static Summary read(File jar) throws IOException {
+			Map<String, Map<String, byte[]>> folders = new TreeMap<>();
+			try (ZipFile zip = new ZipFile(jar)) {
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (entry.isDirectory()) {
+						// bnd only sees the folders which contain files
+						continue;
+					}
+					String name = entry.getName();
+					int lastSlash = name.lastIndexOf('/');
+					Map<String, byte[]> files = folders.computeIfAbsent(lastSlash == -1 ? "" : name.substring(0, lastSlash), unused -> new TreeMap<>());
+					String fileName = name.substring(lastSlash + 1);
+					if (VERSION_FILES.contains(fileName) || name.equals(MANIFEST_PATH)) {
+						try (InputStream input = zip.getInputStream(entry)) {
+							files.put(fileName, ByteStreams.toByteArray(input));
+						}
+					} else if (fileName.endsWith(".class")) {
+						byte[] content;
+						try (InputStream input = zip.getInputStream(entry)) {
+							content = ByteStreams.toByteArray(input);
+						}
+						if (isAnnotation(content)) {
+							files.put(fileName, content);
+						}
+					}
+				}
+			}
+			return new Summary(jar.length(), jar.lastModified(), folders);
+		}
+
+		/** Returns an in-memory jar with the manifest, version files, annotation types, and packages of the original. */
+		Jar toJar(String name) {
+			Jar jar = new Jar(name);
+			folders.forEach((folder, files) -> {
+				if (files.isEmpty()) {
+					jar.putResource(path(folder, PLACEHOLDER), new EmbeddedResource(new byte[0], lastModified));
+				} else {
+					files.forEach((fileName, content) -> {
+						jar.putResource(path(folder, fileName), new EmbeddedResource(content, lastModified));
+					});
+				}
+			});
+			return jar;
+		}
+
+		private static String path(String folder, String fileName) {
+			return folder.isEmpty() ? fileName : folder + "/" + fileName;
+		}
+	}
+
+	private static final int ACC_ANNOTATION = 0x2000;
+
+	/** Returns true if the given class file declares an annotation type, and false if it isn't a class file bnd could read. */
+	static boolean isAnnotation(byte[] classFile) {
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(classFile))) {
+			if (input.readInt() != 0xCAFEBABE) {
+				return false;
+			}
+			// minor and major version
+			input.skipBytes(4);
+			// the access flags come right after the constant pool
+			int poolCount = input.readUnsignedShort();
+			for (int i = 1; i < poolCount; ++i) {
+				int tag = input.readUnsignedByte();
+				switch (tag) {
+				case 1: // Utf8
+					input.skipBytes(input.readUnsignedShort());
+					break;
+				case 5: // Long
+				case 6: // Double
+					input.skipBytes(8);
+					// takes up two entries
+					++i;
+					break;
+				case 3: // Integer
+				case 4: // Float
+				case 9: // Fieldref
+				case 10: // Methodref
+				case 11: // InterfaceMethodref
+				case 12: // NameAndType
+				case 17: // Dynamic
+				case 18: // InvokeDynamic
+					input.skipBytes(4);
+					break;
+				case 15: // MethodHandle
+					input.skipBytes(3);
+					break;
+				case 7: // Class
+				case 8: // String
+				case 16: // MethodType
+				case 19: // Module
+				case 20: // Package
+					input.skipBytes(2);
+					break;
+				default:
+					return false;
+				}
+			}
+			return (input.readUnsignedShort() & ACC_ANNOTATION) != 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private Map<String, Summary> read() {
+		Map<String, Summary> summaries = new HashMap<>();
+		if (!cacheFile.isFile()) {
+			return summaries;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (input.readInt() != FORMAT) {
+				return summaries;
+			}
+			int numJars = input.readInt();
+			for (int i = 0; i < numJars; ++i) {
+				String path = input.readUTF();
+				long size = input.readLong();
+				long lastModified = input.readLong();
+				Map<String, Map<String, byte[]>> folders = new TreeMap<>();
+				int numFolders = input.readInt();
+				for (int j = 0; j < numFolders; ++j) {
+					Map<String, byte[]> files = new TreeMap<>();
+					folders.put(input.readUTF(), files);
+					int numFiles = input.readInt();
+					for (int k = 0; k < numFiles; ++k) {
+						String fileName = input.readUTF();
+						byte[] content = new byte[input.readInt()];
+						input.readFully(content);
+						files.put(fileName, content);
+					}
+				}
+				summaries.put(path, new Summary(size, lastModified, folders));
+			}
+			return summaries;
+		} catch (IOException e) {
+			// a corrupt cache just gets recomputed
+			return new HashMap<>();
+		}
+	}
+
+	private void write(Map<String, Summary> summaries) throws IOException {
+		FileMisc.mkdirs(cacheFile.getParentFile());
+		File temp = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+		try {
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(FORMAT);
+				output.writeInt(summaries.size());
+				for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+					Summary summary = entry.getValue();
+					output.writeUTF(entry.getKey());
+					output.writeLong(summary.size);
+					output.writeLong(summary.lastModified);
+					output.writeInt(summary.folders.size());
+					for (Map.Entry<String, Map<String, byte[]>> folder : summary.folders.entrySet()) {
+						output.writeUTF(folder.getKey());
+						output.writeInt(folder.getValue().size());
+						for (Map.Entry<String, byte[]> file : folder.getValue().entrySet()) {
+							output.writeUTF(file.getKey());
+							output.writeInt(file.getValue().length);
+							output.write(file.getValue());
+						}
+					}
+				}
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
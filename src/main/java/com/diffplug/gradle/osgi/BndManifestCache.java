@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.osgi;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.Constants;
+import com.diffplug.gradle.FileMisc;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the last manifest which bnd computed for a jar task, so that
+ * {@link BndManifestPlugin} can skip the bnd analysis when nothing it reads
+ * has changed.
+ *
+ * The fingerprint covers the bnd instructions, the content of every file or
+ * directory which they name relative to the project dir, the path and content
+ * of every class and resource, and every entry of the classpath: directories by
+ * their content, and jars by their path, size, and timestamp, so that big
+ * dependency jars are never read just to find out that they haven't changed.
+ * The jars of bnd and goomph are part of it too, so that an upgrade of either
+ * recomputes the manifest.
+ *
+ * The `Bundle-Version` isn't part of the fingerprint, because a `-SNAPSHOT`
+ * version gets a new timestamp every minute.  Instead, a cached manifest whose
+ * `Bundle-Version` came from the project version is re-stamped with the new one,
+ * while one which was set explicitly is left alone.
+ * Instructions which use macros or `-include` might depend on anything, so they
+ * aren't cached.
+ */
+class BndManifestCache {
+	/** Bump whenever the format of the cache file changes. */
+	private static final int FORMAT = 1;
+
+	private final File cacheFile;
+
+	BndManifestCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	private static final Pattern MACRO = Pattern.compile("\\$[{(\\[<]");
+
+	/** Returns true if any of the instructions use a bnd macro, e.g. `${tstamp}`. */
+	static boolean hasMacros(Map<String, String> instructions) {
+		return instructions.values().stream().anyMatch(value -> MACRO.matcher(value).find());
+	}
+
+	/** Returns true if the result of the given instructions can be cached. */
+	static boolean isCacheable(Map<String, String> instructions) {
+		return !hasMacros(instructions) && !instructions.containsKey(Constants.INCLUDE);
+	}
+
+	private static final Pattern SEPARATOR = Pattern.compile("[,;]");
+	/** Whitespace, quotes, and the markers of `-includeresource` such as `{preprocess}`, `@unroll`, and `-optional`. */
+	private static final Pattern PATH_DECORATION = Pattern.compile("^[\\s\"'{@-]+|[\\s\"'}]+$");
+
+	/** Returns a fingerprint of everything which the bnd analysis reads, where `base` is the folder which bnd resolves paths against. */
+	static String fingerprint(Map<String, String> instructions, boolean mergeWithExisting, File base, List<File> contentDirs, Collection<File> classpath) throws IOException {
+		MessageDigest digest = FileMisc.sha256();
+		update(digest, "mergeWithExisting", Boolean.toString(mergeWithExisting));
+		update(digest, "bnd", jarOf(Analyzer.class));
+		update(digest, "goomph", jarOf(BndManifestCache.class));
+		for (Map.Entry<String, String> instruction : new TreeMap<>(instructions).entrySet()) {
+			update(digest, "instruction", instruction.getKey(), instruction.getValue());
+			// any part of the value might be a path, e.g. `-includeresource: {OSGI-INF/extra.txt=src/extra.txt}`
+			for (String part : SEPARATOR.split(instruction.getValue())) {
+				String path = PATH_DECORATION.matcher(part.substring(part.indexOf('=') + 1)).replaceAll("");
+				if (path.isEmpty()) {
+					continue;
+				}
+				File file = new File(path).isAbsolute() ? new File(path) : new File(base, path);
+				if (file.isFile()) {
+					update(digest, "file", path);
+					updateWithContent(digest, file.toPath());
+				} else if (file.isDirectory() && !containsAny(file, contentDirs)) {
+					// the project dir (e.g. `Bundle-ClassPath: .`) holds the build outputs, which are covered below
+					update(digest, "dir", path);
+					updateWithContent(digest, file);
+				}
+			}
+		}
+		for (File dir : contentDirs) {
+			update(digest, "contents", dir.getAbsolutePath());
+			updateWithContent(digest, dir);
+		}
+		for (File entry : classpath) {
+			if (entry.isDirectory()) {
+				update(digest, "classpathDir", entry.getAbsolutePath());
+				updateWithContent(digest, entry);
+			} else {
+				update(digest, "classpathFile", entry.getAbsolutePath(), Long.toString(entry.length()), Long.toString(entry.lastModified()));
+			}
+		}
+		return FileMisc.toHex(digest.digest());
+	}
+
+	/** Returns the path, size, and timestamp of the jar or folder which the given class was loaded from. */
+	private static String jarOf(Class<?> clazz) {
+		CodeSource source = clazz.getProtectionDomain().getCodeSource();
+		if (source == null) {
+			return "unknown";
+		}
+		File file;
+		try {
+			file = new File(source.getLocation().toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return source.getLocation().toString();
+		}
+		return file.getAbsolutePath() + ";" + file.length() + ";" + file.lastModified();
+	}
+
+	/** Returns true if the given folder is, or contains, any of the given files. */
+	private static boolean containsAny(File dir, List<File> files) {
+		Path root = dir.toPath().toAbsolutePath().normalize();
+		return files.stream().anyMatch(file -> file.toPath().toAbsolutePath().normalize().startsWith(root));
+	}
+
+	/** Adds the relative path and content of every file in the given directory, in a stable order. */
+	private static void updateWithContent(MessageDigest digest, File dir) throws IOException {
+		if (!dir.isDirectory()) {
+			return;
+		}
+		Path root = dir.toPath();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(root)) {
+			files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		for (Path file : files) {
+			update(digest, root.relativize(file).toString().replace('\\', '/'));
+			updateWithContent(digest, file);
+		}
+	}
+
+	/** Adds the size and content of the given file. */
+	private static void updateWithContent(MessageDigest digest, Path file) throws IOException {
+		update(digest, Long.toString(Files.size(file)));
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream input = Files.newInputStream(file)) {
+			int numRead;
+			while ((numRead = input.read(buffer)) != -1) {
+				digest.update(buffer, 0, numRead);
+			}
+		}
+	}
+
+	private static void update(MessageDigest digest, String... parts) {
+		for (String part : parts) {
+			digest.update(part.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+	}
+
+	/**
+	 * Returns the cached manifest if it was computed for the given fingerprint, and
+	 * with a `Bundle-Version` which either matches or can be re-stamped, else null.
+	 * If the instructions set the `Bundle-Version` explicitly, then the project
+	 * version doesn't matter, and the manifest is never re-stamped.
+	 */
+	@Nullable
+	byte[] get(String fingerprint, String bundleVersion, boolean explicitVersion) {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		String cachedVersion;
+		byte[] manifest;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (input.readInt() != FORMAT || !input.readUTF().equals(fingerprint)) {
+				return null;
+			}
+			cachedVersion = input.readUTF();
+			manifest = new byte[input.readInt()];
+			input.readFully(manifest);
+		} catch (IOException e) {
+			// a corrupt cache is just a miss
+			return null;
+		}
+		if (explicitVersion || cachedVersion.equals(bundleVersion)) {
+			return manifest;
+		}
+		try {
+			// if bnd changed the version, then we can't re-stamp it
+			return BndManifestPlugin.restamp(manifest, cachedVersion::equals, bundleVersion);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/** Saves the given manifest, which bnd computed for the given fingerprint and project version. */
+	void put(String fingerprint, String bundleVersion, byte[] manifest) throws IOException {
+		FileMisc.mkdirs(cacheFile.getParentFile());
+		File temp = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+		try {
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(FORMAT);
+				output.writeUTF(fingerprint);
+				output.writeUTF(bundleVersion);
+				output.writeInt(manifest.length);
+				output.write(manifest);
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
@@ -40,6 +40,18 @@ public class BndManifestExtension {
 		this.mergeWithExisting = mergeWithExisting;
 	}
 
+	public boolean computeBeforeJar = false;
+
+	public void computeBeforeJar(boolean computeBeforeJar) {
+		this.computeBeforeJar = computeBeforeJar;
+	}
+
+	public boolean summarizeClasspath = false;
+
+	public void summarizeClasspath(boolean summarizeClasspath) {
+		this.summarizeClasspath = summarizeClasspath;
+	}
+
 	public Set<Object> includeTasks = new HashSet<>(Collections.singletonList(JavaPlugin.JAR_TASK_NAME));
 
 	public void includeTask(Object task) {
@@ -15,6 +15,7 @@
  */
 package com.diffplug.gradle.osgi;
 
+import aQute.bnd.osgi.Analyzer;
 import aQute.bnd.osgi.Builder;
 import aQute.bnd.osgi.Constants;
 import com.diffplug.common.base.*;
@@ -23,6 +24,8 @@ import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.LegacyPlugin;
 import com.diffplug.gradle.ProjectPlugin;
 import com.diffplug.gradle.ZipMisc;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -32,10 +35,13 @@ import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.jar.Manifest;
+import javax.annotation.Nullable;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
-import org.gradle.api.java.archives.Attributes;
+import org.gradle.api.logging.Logger;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.tasks.SourceSet;
@@ -71,6 +77,19 @@ import org.gradle.api.tasks.bundling.Jar;
  *     // The line below will cause the existing manifest's fields
  *     // to be merged with the fields set by bnd.
  *     mergeWithExisting true
+
+ *     // By default, bnd builds a copy of the jar after the jar task
+ *     // runs, and the jar is rewritten with bnd's manifest.  The line
+ *     // below instead computes the manifest beforehand in a cacheable
+ *     // `<jarTask>BndManifest` task, which analyzes the classes in place,
+ *     // and the jar is written with that manifest in the first place.
+ *     computeBeforeJar true
+
+ *     // By default, bnd opens every jar on the classpath whenever it
+ *     // runs.  The line below instead gives it a cached summary of
+ *     // each jar: its manifest, packages, version files, and
+ *     // annotation types, which is all that most manifests need.
+ *     summarizeClasspath true
  * }
  * ```
  *
@@ -111,31 +130,40 @@ public class BndManifestPlugin extends ProjectPlugin {
 
 			extension.includeTasks.forEach(name -> {
 				Jar jarTask = getAsJar(project, (String) name);
+				if (extension.computeBeforeJar) {
+					BndManifestTask manifestTask = project.getTasks().create(jarTask.getName() + "BndManifest", BndManifestTask.class);
+					manifestTask.jarTask = jarTask;
+					manifestTask.mergeWithExisting = extension.mergeWithExisting;
+					manifestTask.summarizeClasspath = extension.summarizeClasspath;
+					manifestTask.manifest = new File(project.getBuildDir(), "bndManifest/" + jarTask.getName() + "/MANIFEST.MF");
+					jarTask.dependsOn(manifestTask);
+					jarTask.getInputs().file(manifestTask.getManifest());
+					File stampedManifest = new File(jarTask.getTemporaryDir(), "MANIFEST.MF");
+					// the instructions have been used by now, so the jar gets exactly what bnd computed
+					jarTask.doFirst("Use OSGi manifest", task -> {
+						Errors.rethrow().run(() -> {
+							Files.write(stampedManifest.toPath(), manifestTask.stampedManifest());
+						});
+						jarTask.getManifest().getAttributes().clear();
+						jarTask.getManifest().from(stampedManifest);
+					});
+					jarTask.doLast("Copy OSGi manifest", task -> {
+						Errors.rethrow().run(() -> {
+							writeCopies(jarTask, extension, copyFromTask, Files.readAllBytes(stampedManifest.toPath()));
+						});
+					});
+					return;
+				}
 				// at the end of the jar, modify the manifest
 				jarTask.doLast("Set OSGi manifest", new Action<Task>() {
 					@Override
 					public void execute(Task unused) {
 						Errors.rethrow().run(() -> {
-							byte[] manifest = getManifestContent(jarTask, extension).getBytes(StandardCharsets.UTF_8);
+							byte[] manifest = getManifestContent(jarTask, extension);
 							// modify the jar
 							Map<String, Function<byte[], byte[]>> toModify = ImmutableMap.of("META-INF/MANIFEST.MF", in -> manifest);
 							ZipMisc.modify(jarTask.getArchiveFile().get().getAsFile(), toModify, Predicates.alwaysFalse());
-							// write manifest to the output resources directory
-							Throwing.Consumer<Path> writeManifest = path -> {
-								if (Files.exists(path)) {
-									if (Arrays.equals(Files.readAllBytes(path), manifest)) {
-										return;
-									}
-								}
-								Files.createDirectories(path.getParent());
-								Files.write(path, manifest);
-							};
-							writeManifest.accept(outputManifest(jarTask));
-
-							// and maybe write it to `osgiBndManifest { copyTo }`.
-							if (extension.copyTo != null && jarTask.equals(copyFromTask)) {
-								writeManifest.accept(jarTask.getProject().file(extension.copyTo).toPath());
-							}
+							writeCopies(jarTask, extension, copyFromTask, manifest);
 						});
 					}
 				});
@@ -148,19 +176,62 @@ public class BndManifestPlugin extends ProjectPlugin {
 		});
 	}
 
+	/** Writes the manifest to the output resources directory, and maybe to `osgiBndManifest { copyTo }`. */
+	private static void writeCopies(Jar jarTask, BndManifestExtension extension, Jar copyFromTask, byte[] manifest) throws IOException {
+		Throwing.Specific.Consumer<Path, IOException> writeManifest = path -> {
+			if (Files.exists(path)) {
+				if (Arrays.equals(Files.readAllBytes(path), manifest)) {
+					return;
+				}
+			}
+			Files.createDirectories(path.getParent());
+			Files.write(path, manifest);
+		};
+		writeManifest.accept(outputManifest(jarTask));
+
+		if (extension.copyTo != null && jarTask.equals(copyFromTask)) {
+			writeManifest.accept(jarTask.getProject().file(extension.copyTo).toPath());
+		}
+	}
+
 	private static Path outputManifest(Jar jarTask) {
 		JavaPluginExtension javaExtension = jarTask.getProject().getExtensions().getByType(JavaPluginExtension.class);
 		SourceSet main = javaExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
 		return main.getOutput().getResourcesDir().toPath().resolve("META-INF/MANIFEST.MF");
 	}
 
-	private static String getManifestContent(Jar jarTask, BndManifestExtension extension) throws Throwable {
+	private static byte[] getManifestContent(Jar jarTask, BndManifestExtension extension) throws Throwable {
 		// if we don't want to merge, then delete the existing manifest so that bnd doesn't merge with it
 		if (!extension.mergeWithExisting) {
 			Files.deleteIfExists(outputManifest(jarTask));
 		}
+		Project project = jarTask.getProject();
+		Map<String, String> instructions = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> entry : jarTask.getManifest().getEffectiveManifest().getAttributes().entrySet()) {
+			instructions.put(entry.getKey(), entry.getValue().toString());
+		}
+		Set<File> classpath = project.getConfigurations().getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME).getFiles();
+		List<File> contentDirs = contentDirs(project);
+		// delete empty folders so that bnd doesn't make Export-Package entries for them
+		for (File dir : contentDirs) {
+			deleteEmptyFoldersIfExists(dir);
+		}
+		String version = bundleVersion(project.getVersion().toString());
+
+		// skip bnd entirely if nothing that it reads has changed
+		BndManifestCache cache = null;
+		String fingerprint = null;
+		if (BndManifestCache.isCacheable(instructions)) {
+			cache = new BndManifestCache(new File(jarTask.getTemporaryDir(), "bndManifest.cache"));
+			fingerprint = BndManifestCache.fingerprint(instructions, extension.mergeWithExisting, project.getProjectDir(), contentDirs, classpath);
+			byte[] cached = cache.get(fingerprint, version, instructions.containsKey(Constants.BUNDLE_VERSION));
+			if (cached != null) {
+				return cached;
+			}
+		}
 		// take the bnd action
-		return BndManifestPlugin.takeBndAction(jarTask.getProject(), jarTask, jar -> {
+		BndClasspathSummaries summaries = extension.summarizeClasspath ? new BndClasspathSummaries(new File(jarTask.getTemporaryDir(), "bndClasspath.cache")) : null;
+		byte[] manifest = BndManifestPlugin.takeBndAction(project, instructions, summaries, classpath, contentDirs, version, jar -> {
 			return StringPrinter.buildString(printer -> {
 				try (OutputStream output = printer.toOutputStream(StandardCharsets.UTF_8)) {
 					aQute.bnd.osgi.Jar.writeManifest(jar.getManifest(), printer.toOutputStream(StandardCharsets.UTF_8));
@@ -168,63 +239,97 @@ public class BndManifestPlugin extends ProjectPlugin {
 					throw Errors.asRuntime(e);
 				}
 			});
-		});
+		}).getBytes(StandardCharsets.UTF_8);
+		if (cache != null) {
+			cache.put(fingerprint, version, manifest);
+		}
+		return manifest;
+	}
+
+	/** The resources and classes dirs of the `main` source set. */
+	private static List<File> contentDirs(Project project) {
+		JavaPluginExtension javaExtension = project.getExtensions().getByType(JavaPluginExtension.class);
+		SourceSetOutput main = javaExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput();
+		List<File> contentDirs = new ArrayList<>();
+		contentDirs.add(main.getResourcesDir());
+		contentDirs.addAll(main.getClassesDirs().getFiles());
+		return contentDirs;
+	}
+
+	static void deleteEmptyFoldersIfExists(File root) throws IOException {
+		if (root.exists()) {
+			FileMisc.deleteEmptyFolders(root);
+		}
 	}
 
-	/** Takes an action on a Bnd jar. */
-	private static String takeBndAction(Project project, Jar jarTask, Throwing.Function<aQute.bnd.osgi.Jar, String> onBuilder) throws Exception, Throwable {
+	/** Takes an action on a Bnd jar, summarizing the classpath jars if `summaries` isn't null. */
+	private static String takeBndAction(Project project, Map<String, String> instructions, @Nullable BndClasspathSummaries summaries, Set<File> classpath, List<File> contentDirs, String version, Throwing.Function<aQute.bnd.osgi.Jar, String> onBuilder) throws Exception, Throwable {
 		try (Builder builder = new Builder()) {
 			// set the base folder
 			builder.setBase(project.getProjectDir());
 			// copy all properties from jar.manifest.attributes into the bnd Builder
-			Attributes attr = jarTask.getManifest().getEffectiveManifest().getAttributes();
-			for (Map.Entry<String, Object> entry : attr.entrySet()) {
-				builder.set(entry.getKey(), entry.getValue().toString());
-			}
+			instructions.forEach(builder::set);
 
 			// set the classpath for manifest calculation
-			Set<File> runtimeConfig = project.getConfigurations().getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME).getFiles();
-			builder.addClasspath(runtimeConfig);
+			if (summaries != null) {
+				summaries.addClasspath(builder, instructions, classpath);
+			} else {
+				builder.addClasspath(classpath);
+			}
 
 			// put the class files and resources into the jar
-			JavaPluginExtension javaExtension = project.getExtensions().getByType(JavaPluginExtension.class);
-			SourceSetOutput main = javaExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput();
-			// delete empty folders so that bnd doesn't make Export-Package entries for them
 			Set<String> includeresource = new LinkedHashSet<>();
-			deleteEmptyFoldersIfExists(main.getResourcesDir());
-			includeresource.add(fix(main.getResourcesDir()));
-			for (File file : main.getClassesDirs()) {
-				deleteEmptyFoldersIfExists(file);
-				includeresource.add(fix(file));
+			for (File dir : contentDirs) {
+				includeresource.add(fix(dir));
 			}
 			builder.set(Constants.INCLUDERESOURCE, String.join(",", includeresource));
 
 			// set the version
-			if (builder.getBundleVersion() == null) {
-				try {
-					String version = project.getVersion().toString();
-					if (version.endsWith("-SNAPSHOT")) {
-						version = version.replace("-SNAPSHOT", ".I" + dateQualifier());
-					}
-					builder.setBundleVersion(version);
-				} catch (Exception e) {
-					project.getLogger().warn(e.getMessage() + "  Must be 'major.minor.micro.qualifier'");
-					builder.setBundleVersion("0.0.0.ERRORSETVERSION");
-				}
-			}
+			setBundleVersion(project.getLogger(), builder, version);
 			// take an action with the builder
 			return onBuilder.apply(builder.build());
 		}
 	}
 
-	private static String fix(File file) {
-		return file.getAbsolutePath().replace('\\', '/');
+	/** Replaces `-SNAPSHOT` in the given version with `.IyyyyMMddkkmm`. */
+	static String bundleVersion(String version) {
+		if (version.endsWith("-SNAPSHOT")) {
+			version = version.replace("-SNAPSHOT", ".I" + dateQualifier());
+		}
+		return version;
 	}
 
-	private static void deleteEmptyFoldersIfExists(File root) throws IOException {
-		if (root.exists()) {
-			FileMisc.deleteEmptyFolders(root);
+	/**
+	 * Returns the given manifest with its `Bundle-Version` replaced by the given one,
+	 * or null if its current `Bundle-Version` can't be re-stamped.
+	 */
+	@Nullable
+	static byte[] restamp(byte[] manifest, Predicate<String> canRestamp, String bundleVersion) throws IOException {
+		Manifest parsed = new Manifest(new ByteArrayInputStream(manifest));
+		String current = parsed.getMainAttributes().getValue(Constants.BUNDLE_VERSION);
+		if (current == null || !canRestamp.test(current)) {
+			return null;
 		}
+		parsed.getMainAttributes().putValue(Constants.BUNDLE_VERSION, bundleVersion);
+		ByteArrayOutputStream restamped = new ByteArrayOutputStream(manifest.length);
+		aQute.bnd.osgi.Jar.writeManifest(parsed, restamped);
+		return restamped.toByteArray();
+	}
+
+	/** Sets the given version as the `Bundle-Version`, unless it has been set explicitly. */
+	static void setBundleVersion(Logger logger, Analyzer analyzer, String version) {
+		if (analyzer.getBundleVersion() == null) {
+			try {
+				analyzer.setBundleVersion(version);
+			} catch (Exception e) {
+				logger.warn(e.getMessage() + "  Must be 'major.minor.micro.qualifier'");
+				analyzer.setBundleVersion("0.0.0.ERRORSETVERSION");
+			}
+		}
+	}
+
+	private static String fix(File file) {
+		return file.getAbsolutePath().replace('\\', '/');
 	}
 
 	private static String dateQualifier() {
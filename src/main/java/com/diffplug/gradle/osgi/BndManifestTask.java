@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.osgi;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.FileResource;
+import aQute.bnd.osgi.Jar;
+import com.diffplug.gradle.FileMisc;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetOutput;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Computes the OSGi manifest of a jar with bnd, before the jar is built.
+ *
+ * Created by {@link BndManifestPlugin} for each of its jar tasks when
+ * `osgiBndManifest { computeBeforeJar true }`.  Rather than having bnd build
+ * a second copy of the jar just to throw it away, bnd analyzes the classes and
+ * resources right where they are in the `main` source set's output, and the
+ * jar task then uses the result as its manifest.  The instructions are taken
+ * from the jar task's `manifest.attributes`, as usual.
+ *
+ * Since bnd only analyzes the jar here, rather than building it, instructions
+ * which change the content of the jar (`-includeresource` and `Include-Resource`)
+ * are rejected, and resources which bnd generates, such as the component XML of
+ * `-dsannotations`, don't end up in the jar.  Those need `computeBeforeJar false`.
+ */
+@CacheableTask
+public class BndManifestTask extends DefaultTask {
+	static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+
+	org.gradle.api.tasks.bundling.Jar jarTask;
+
+	boolean mergeWithExisting;
+
+	boolean summarizeClasspath;
+
+	File manifest;
+
+	/** Instructions which only bnd's Builder applies, so they would be silently ignored here. */
+	private static final List<String> BUILDER_ONLY = Arrays.asList(Constants.INCLUDERESOURCE, Constants.INCLUDE_RESOURCE);
+
+	@TaskAction
+	public void computeManifest() throws Exception {
+		Map<String, String> instructions = getInstructions();
+		for (String instruction : BUILDER_ONLY) {
+			if (instructions.containsKey(instruction)) {
+				throw new GradleException(instruction + " changes the content of the jar, which bnd doesn't build with 'osgiBndManifest { computeBeforeJar true }'.  Add the resources to the '" + jarTask.getName() + "' task instead, or set computeBeforeJar to false.");
+			}
+		}
+		try (Analyzer analyzer = new Analyzer()) {
+			analyzer.setBase(getProject().getProjectDir());
+			instructions.forEach(analyzer::set);
+			if (summarizeClasspath) {
+				new BndClasspathSummaries(new File(getTemporaryDir(), "bndClasspath.cache")).addClasspath(analyzer, instructions, getClasspath().getFiles());
+			} else {
+				analyzer.addClasspath(getClasspath().getFiles());
+			}
+			// the classes and resources are read lazily, straight from their directories, and only
+			// the folders which contain files become packages, so empty ones aren't exported
+			Jar dot = new Jar("dot");
+			analyzer.addClose(dot);
+			for (File dir : contentDirs()) {
+				if (dir.isDirectory()) {
+					Path root = dir.toPath();
+					try (Stream<Path> walk = Files.walk(root)) {
+						for (Path file : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+							dot.putResource(root.relativize(file).toString().replace('\\', '/'), new FileResource(file.toFile()));
+						}
+					}
+				}
+			}
+			if (!mergeWithExisting) {
+				dot.remove(MANIFEST_PATH);
+			}
+			analyzer.setJar(dot);
+			BndManifestPlugin.setBundleVersion(getLogger(), analyzer, BndManifestPlugin.bundleVersion(getProjectVersion()));
+			Manifest result = analyzer.calcManifest();
+			FileMisc.mkdirs(manifest.getParentFile());
+			try (OutputStream output = Files.newOutputStream(manifest.toPath())) {
+				Jar.writeManifest(result, output);
+			}
+		}
+	}
+
+	/**
+	 * Returns the computed manifest, with a fresh timestamp if its `Bundle-Version`
+	 * came from a `-SNAPSHOT` project version.  The timestamp isn't an input of this
+	 * task, or it would be out-of-date every minute, so the jar task stamps it instead.
+	 */
+	byte[] stampedManifest() throws IOException {
+		byte[] content = Files.readAllBytes(manifest.toPath());
+		String projectVersion = getProjectVersion();
+		if (!projectVersion.endsWith(SNAPSHOT) || getInstructions().containsKey(Constants.BUNDLE_VERSION)) {
+			return content;
+		}
+		String prefix = projectVersion.substring(0, projectVersion.length() - SNAPSHOT.length()) + ".I";
+		Pattern fromProjectVersion = Pattern.compile(Pattern.quote(prefix) + "\\d{12}");
+		byte[] stamped = BndManifestPlugin.restamp(content, version -> fromProjectVersion.matcher(version).matches(), BndManifestPlugin.bundleVersion(projectVersion));
+		return stamped == null ? content : stamped;
+	}
+
+	private static final String SNAPSHOT = "-SNAPSHOT";
+
+	private List<File> contentDirs() {
+		List<File> contentDirs = new ArrayList<>(mainOutput().getClassesDirs().getFiles());
+		contentDirs.add(mainOutput().getResourcesDir());
+		return contentDirs;
+	}
+
+	private SourceSetOutput mainOutput() {
+		JavaPluginExtension javaExtension = getProject().getExtensions().getByType(JavaPluginExtension.class);
+		return javaExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput();
+	}
+
+	/** The jar task whose manifest this computes. */
+	@Internal
+	public org.gradle.api.tasks.bundling.Jar getJarTask() {
+		return jarTask;
+	}
+
+	/** The headers and bnd instructions from the jar task's `manifest.attributes`. */
+	@Input
+	public Map<String, String> getInstructions() {
+		Map<String, String> instructions = new TreeMap<>();
+		jarTask.getManifest().getEffectiveManifest().getAttributes()
+				.forEach((key, value) -> instructions.put(key, value.toString()));
+		return instructions;
+	}
+
+	/** The project version, which is used if `Bundle-Version` isn't set explicitly. */
+	@Input
+	public String getProjectVersion() {
+		return getProject().getVersion().toString();
+	}
+
+	@Input
+	public boolean getMergeWithExisting() {
+		return mergeWithExisting;
+	}
+
+	/** Whether bnd gets a cached summary of each classpath jar, see {@link BndClasspathSummaries}. */
+	@Input
+	public boolean getSummarizeClasspath() {
+		return summarizeClasspath;
+	}
+
+	/** The classpath which bnd uses to version the imported packages. */
+	@Classpath
+	public FileCollection getClasspath() {
+		return getProject().getConfigurations().getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME);
+	}
+
+	/** The classes and resources of the `main` source set, without any existing manifest unless it is being merged. */
+	@InputFiles
+	@PathSensitive(PathSensitivity.RELATIVE)
+	public FileCollection getContents() {
+		return mainOutput().getAsFileTree().matching(pattern -> {
+			if (!mergeWithExisting) {
+				pattern.exclude(MANIFEST_PATH);
+			}
+		});
+	}
+
+	@OutputFile
+	public File getManifest() {
+		return manifest;
+	}
+}
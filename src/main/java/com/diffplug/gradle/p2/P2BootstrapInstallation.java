@@ -20,7 +20,8 @@ import com.diffplug.common.base.Preconditions;
 import com.diffplug.common.collect.ImmutableSet;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.GoomphCacheLocations;
-import com.diffplug.gradle.ZipMisc;
+import com.diffplug.gradle.MetadataCache;
+import com.diffplug.gradle.ZipExtractor;
 import com.diffplug.gradle.eclipserunner.EclipseRunner;
 import com.diffplug.gradle.eclipserunner.JarFolderRunner;
 import com.diffplug.gradle.eclipserunner.JarFolderRunnerExternalJvm;
@@ -83,6 +84,7 @@ class P2BootstrapInstallation {
 
 	/** Installs the bootstrap installation. */
 	private void install() throws IOException {
+		MetadataCache.checkOnline("the p2 bootstrap " + release, GoomphCacheLocations.p2bootstrapUrl().orElse(DOWNLOAD_ROOT), getRootFolder());
 		System.out.print("Installing p2 bootstrap " + release + "... ");
 		// clean the install folder
 		FileMisc.cleanDir(getRootFolder());
@@ -96,7 +98,7 @@ class P2BootstrapInstallation {
 			FileMisc.download(GoomphCacheLocations.p2bootstrapUrl().orElse(DOWNLOAD_ROOT) + release.version() + String.format(VERSIONED_DOWNLOAD_FILE, release.version()), target);
 		}
 		// unzip it
-		ZipMisc.unzip(target, target.getParentFile());
+		ZipExtractor.unzip(target, target.getParentFile());
 		// delete the zip
 		FileMisc.forceDelete(target);
 		FileMisc.writeToken(getRootFolder(), TOKEN);
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.collect.Interner;
+import com.diffplug.common.collect.Interners;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.jar.Attributes;
+import javax.annotation.Nullable;
+import org.eclipse.osgi.util.ManifestElement;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * The headers of a plugin's manifest which {@link BundleResolver} needs,
+ * parsed once when the plugin is cataloged and then cached alongside it
+ * by {@link PluginCatalogCache}.
+ *
+ * Every name is interned, because the same handful of package and bundle
+ * names are repeated across thousands of plugins.
+ */
+class BundleHeaders {
+	/** A `Require-Bundle`, `Import-Package`, or `Fragment-Host` clause. */
+	static class Requirement {
+		final String name;
+		/** The version range, or null for any version. */
+		@Nullable
+		final String range;
+		final boolean optional;
+
+		Requirement(String name, @Nullable String range, boolean optional) {
+			this.name = Objects.requireNonNull(name);
+			this.range = range;
+			this.optional = optional;
+		}
+
+		@Override
+		public String toString() {
+			return range == null ? name : name + " " + range;
+		}
+	}
+
+	/** An `Export-Package` clause. */
+	static class Export {
+		final String name;
+		final String version;
+
+		Export(String name, String version) {
+			this.name = Objects.requireNonNull(name);
+			this.version = Objects.requireNonNull(version);
+		}
+	}
+
+	final List<Requirement> requireBundles;
+	final List<Requirement> importPackages;
+	final List<Export> exportPackages;
+	@Nullable
+	final Requirement fragmentHost;
+	final List<String> executionEnvironments;
+	/** If the headers couldn't be parsed, a description of what went wrong. */
+	@Nullable
+	final String malformed;
+
+	private BundleHeaders(List<Requirement> requireBundles, List<Requirement> importPackages, List<Export> exportPackages,
+			@Nullable Requirement fragmentHost, List<String> executionEnvironments, @Nullable String malformed) {
+		this.requireBundles = requireBundles;
+		this.importPackages = importPackages;
+		this.exportPackages = exportPackages;
+		this.fragmentHost = fragmentHost;
+		this.executionEnvironments = executionEnvironments;
+		this.malformed = malformed;
+	}
+
+	private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+	private static String intern(String value) {
+		return INTERNER.intern(value);
+	}
+
+	@Nullable
+	private static String internNullable(@Nullable String value) {
+		return value == null ? null : INTERNER.intern(value);
+	}
+
+	/**
+	 * Parses the headers out of the main attributes of a manifest.  A malformed
+	 * header doesn't throw, because most plugins are never resolved, but the
+	 * problem is kept so that it can be reported if this plugin is.
+	 */
+	static BundleHeaders parse(Attributes attributes) {
+		try {
+			List<Requirement> requireBundles = new ArrayList<>();
+			for (ManifestElement element : parseHeader(attributes, Constants.REQUIRE_BUNDLE)) {
+				requireBundles.add(requirement(element, element.getValue(), Constants.BUNDLE_VERSION_ATTRIBUTE));
+			}
+			List<Requirement> importPackages = new ArrayList<>();
+			for (ManifestElement element : parseHeader(attributes, Constants.IMPORT_PACKAGE)) {
+				for (String name : element.getValueComponents()) {
+					importPackages.add(requirement(element, name, Constants.VERSION_ATTRIBUTE));
+				}
+			}
+			List<Export> exportPackages = new ArrayList<>();
+			for (ManifestElement element : parseHeader(attributes, Constants.EXPORT_PACKAGE)) {
+				String version = element.getAttribute(Constants.VERSION_ATTRIBUTE);
+				if (version == null) {
+					version = element.getAttribute(Constants.PACKAGE_SPECIFICATION_VERSION);
+				}
+				for (String name : element.getValueComponents()) {
+					exportPackages.add(new Export(intern(name), intern(version == null ? "0.0.0" : version)));
+				}
+			}
+			ManifestElement[] host = parseHeader(attributes, Constants.FRAGMENT_HOST);
+			Requirement fragmentHost = host.length == 0 ? null : requirement(host[0], host[0].getValue(), Constants.BUNDLE_VERSION_ATTRIBUTE);
+			List<String> executionEnvironments = new ArrayList<>();
+			for (ManifestElement element : parseHeader(attributes, Constants.BUNDLE_REQUIREDEXECUTIONENVIRONMENT)) {
+				executionEnvironments.add(intern(element.getValue()));
+			}
+			return new BundleHeaders(requireBundles, importPackages, exportPackages, fragmentHost, executionEnvironments, null);
+		} catch (BundleException e) {
+			return new BundleHeaders(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null, Collections.emptyList(), e.getMessage());
+		}
+	}
+
+	private static ManifestElement[] parseHeader(Attributes attributes, String header) throws BundleException {
+		ManifestElement[] elements = ManifestElement.parseHeader(header, attributes.getValue(header));
+		return elements == null ? new ManifestElement[0] : elements;
+	}
+
+	private static Requirement requirement(ManifestElement element, String name, String versionAttribute) {
+		boolean optional = Constants.RESOLUTION_OPTIONAL.equals(element.getDirective(Constants.RESOLUTION_DIRECTIVE));
+		return new Requirement(intern(name), internNullable(element.getAttribute(versionAttribute)), optional);
+	}
+
+	/** Writes these headers in the format read by {@link #read(DataInput)}. */
+	void write(DataOutput output) throws IOException {
+		writeRequirements(output, requireBundles);
+		writeRequirements(output, importPackages);
+		output.writeInt(exportPackages.size());
+		for (Export export : exportPackages) {
+			output.writeUTF(export.name);
+			output.writeUTF(export.version);
+		}
+		output.writeBoolean(fragmentHost != null);
+		if (fragmentHost != null) {
+			writeRequirement(output, fragmentHost);
+		}
+		output.writeInt(executionEnvironments.size());
+		for (String executionEnvironment : executionEnvironments) {
+			output.writeUTF(executionEnvironment);
+		}
+		writeNullable(output, malformed);
+	}
+
+	/** Reads headers which were written by {@link #write(DataOutput)}. */
+	static BundleHeaders read(DataInput input) throws IOException {
+		List<Requirement> requireBundles = readRequirements(input);
+		List<Requirement> importPackages = readRequirements(input);
+		int exportCount = input.readInt();
+		List<Export> exportPackages = new ArrayList<>(exportCount);
+		for (int i = 0; i < exportCount; ++i) {
+			exportPackages.add(new Export(intern(input.readUTF()), intern(input.readUTF())));
+		}
+		Requirement fragmentHost = input.readBoolean() ? readRequirement(input) : null;
+		int executionEnvironmentCount = input.readInt();
+		List<String> executionEnvironments = new ArrayList<>(executionEnvironmentCount);
+		for (int i = 0; i < executionEnvironmentCount; ++i) {
+			executionEnvironments.add(intern(input.readUTF()));
+		}
+		String malformed = readNullable(input);
+		return new BundleHeaders(requireBundles, importPackages, exportPackages, fragmentHost, executionEnvironments, malformed);
+	}
+
+	private static void writeRequirements(DataOutput output, List<Requirement> requirements) throws IOException {
+		output.writeInt(requirements.size());
+		for (Requirement requirement : requirements) {
+			writeRequirement(output, requirement);
+		}
+	}
+
+	private static void writeRequirement(DataOutput output, Requirement requirement) throws IOException {
+		output.writeUTF(requirement.name);
+		writeNullable(output, requirement.range);
+		output.writeBoolean(requirement.optional);
+	}
+
+	private static List<Requirement> readRequirements(DataInput input) throws IOException {
+		int count = input.readInt();
+		List<Requirement> requirements = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			requirements.add(readRequirement(input));
+		}
+		return requirements;
+	}
+
+	private static Requirement readRequirement(DataInput input) throws IOException {
+		return new Requirement(intern(input.readUTF()), internNullable(readNullable(input)), input.readBoolean());
+	}
+
+	private static void writeNullable(DataOutput output, @Nullable String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	@Nullable
+	private static String readNullable(DataInput input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.collect.LinkedHashMultimap;
+import com.diffplug.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+/**
+ * Computes the plugins which a set of root plugins needs in order to resolve,
+ * straight from the `Require-Bundle`, `Import-Package`, `Export-Package`,
+ * `Fragment-Host`, and `Bundle-RequiredExecutionEnvironment` headers which
+ * {@link PluginCatalog} has already cached, without starting a PDE build.
+ *
+ * Every plugin in the catalog is numbered once, and each bundle name and
+ * package name maps to an `int[]` of the plugins which provide it, newest first.
+ * The closure is then a breadth-first walk over those indices, so it stays
+ * fast for catalogs with tens of thousands of plugins.
+ *
+ * Each requirement is satisfied by a provider which is already in the closure
+ * if there is one, else by the newest provider which matches, and optional
+ * requirements are not followed, so the closure is minimal.  The fragments of
+ * a plugin are only pulled in if they have an `Eclipse-PlatformFilter`, since
+ * those are the native implementations which their host can't work without.
+ *
+ * Imports of `java.*` are always satisfied, and imports of other packages which
+ * ship with the JRE (`javax.*`, `org.w3c.dom`, etc.) are satisfied if no plugin
+ * exports them.
+ */
+class BundleResolver {
+	/** The plugins which provide a bundle or package, sorted newest first. */
+	private static class Providers {
+		int[] plugins = new int[2];
+		Version[] versions = new Version[2];
+		int size;
+
+		void add(int plugin, Version version) {
+			if (size == plugins.length) {
+				plugins = Arrays.copyOf(plugins, size * 2);
+				versions = Arrays.copyOf(versions, size * 2);
+			}
+			plugins[size] = plugin;
+			versions[size] = version;
+			++size;
+		}
+
+		void sort() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; ++i) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> versions[b].compareTo(versions[a]));
+			int[] sortedPlugins = new int[size];
+			Version[] sortedVersions = new Version[size];
+			for (int i = 0; i < size; ++i) {
+				sortedPlugins[i] = plugins[order[i]];
+				sortedVersions[i] = versions[order[i]];
+			}
+			plugins = sortedPlugins;
+			versions = sortedVersions;
+		}
+	}
+
+	/** The bundle which `Require-Bundle: system.bundle` refers to. */
+	private static final String SYSTEM_BUNDLE = "system.bundle";
+	private static final String SYSTEM_BUNDLE_IMPLEMENTATION = "org.eclipse.osgi";
+	/** Packages which the JRE provides, if no plugin does. */
+	private static final List<String> JRE_PACKAGE_PREFIXES = Arrays.asList(
+			"javax.", "org.ietf.jgss", "org.omg.", "org.w3c.dom", "org.xml.sax", "com.sun.", "sun.", "jdk.");
+
+	private final PluginCatalog catalog;
+	private final String[] names;
+	private final Version[] versions;
+	private final BundleHeaders[] headers;
+	private final Map<String, Providers> bundles = new HashMap<>();
+	private final Map<String, Providers> packages = new HashMap<>();
+	/** From host name to the platform-specific fragments which might attach to it. */
+	private final Map<String, Providers> fragments = new HashMap<>();
+	/** The same ranges are repeated over and over, so we only parse each once. */
+	private final Map<String, VersionRange> ranges = new HashMap<>();
+	private int executionEnvironment = Integer.MAX_VALUE;
+
+	BundleResolver(PluginCatalog catalog) {
+		this.catalog = catalog;
+		Collection<PluginCatalogCache.Entry> entries = catalog.getEntries();
+		names = new String[entries.size()];
+		versions = new Version[entries.size()];
+		headers = new BundleHeaders[entries.size()];
+		int i = 0;
+		for (PluginCatalogCache.Entry entry : entries) {
+			names[i] = entry.name;
+			versions[i] = Version.parseVersion(entry.version);
+			headers[i] = entry.headers;
+			providers(bundles, entry.name).add(i, versions[i]);
+			for (BundleHeaders.Export export : entry.headers.exportPackages) {
+				providers(packages, export.name).add(i, parseVersion(export.version));
+			}
+			if (entry.headers.fragmentHost != null && entry.platformFilter != null) {
+				providers(fragments, entry.headers.fragmentHost.name).add(i, versions[i]);
+			}
+			++i;
+		}
+		bundles.values().forEach(Providers::sort);
+		packages.values().forEach(Providers::sort);
+	}
+
+	private static Providers providers(Map<String, Providers> map, String name) {
+		return map.computeIfAbsent(name, unused -> new Providers());
+	}
+
+	/**
+	 * Reports every plugin in the closure whose `Bundle-RequiredExecutionEnvironment`
+	 * needs a newer JRE than the given one, e.g. `JavaSE-11`.
+	 */
+	BundleResolver executionEnvironment(String executionEnvironment) {
+		this.executionEnvironment = javaVersion(executionEnvironment);
+		return this;
+	}
+
+	/** The result of {@link BundleResolver#resolve(Collection)}. */
+	static class Result {
+		/** Every plugin in the closure, including the roots, in the order they were found. */
+		final SetMultimap<String, Version> plugins = LinkedHashMultimap.create();
+		/** A description of each requirement which couldn't be satisfied. */
+		final List<String> unresolved = new ArrayList<>();
+	}
+
+	/** The plugins in the closure so far, and the queue of those whose requirements haven't been walked yet. */
+	private static class Walk {
+		final boolean[] included;
+		final int[] queue;
+		int head, tail;
+
+		Walk(int size) {
+			included = new boolean[size];
+			queue = new int[size];
+		}
+
+		void include(int plugin) {
+			if (plugin != -1 && !included[plugin]) {
+				included[plugin] = true;
+				queue[tail++] = plugin;
+			}
+		}
+	}
+
+	/**
+	 * Returns the closure of the given plugins.  Each root uses the versions chosen by
+	 * the catalog's {@link ExplicitVersionPolicy}, and roots which are specific to an
+	 * unsupported platform are skipped.
+	 */
+	Result resolve(Collection<String> roots) {
+		Result result = new Result();
+		Walk walk = new Walk(names.length);
+		for (String root : roots) {
+			if (!catalog.isSupportedPlatform(root)) {
+				continue;
+			}
+			Providers providers = bundles.get(root);
+			if (providers == null) {
+				result.unresolved.add("No such plugin: " + root);
+				continue;
+			}
+			Set<Version> rootVersions = catalog.getVersionsFor(root);
+			for (int i = 0; i < providers.size; ++i) {
+				if (rootVersions.contains(providers.versions[i])) {
+					walk.include(providers.plugins[i]);
+				}
+			}
+		}
+		while (walk.head < walk.tail) {
+			int plugin = walk.queue[walk.head++];
+			result.plugins.put(names[plugin], versions[plugin]);
+			walkRequirements(plugin, walk, result.unresolved);
+		}
+		return result;
+	}
+
+	/** Adds the providers of every requirement of the given plugin to the walk, and describes any that are missing. */
+	private void walkRequirements(int plugin, Walk walk, List<String> unresolved) {
+		BundleHeaders headers = this.headers[plugin];
+		String description = names[plugin] + " " + versions[plugin];
+		if (headers.malformed != null) {
+			unresolved.add(description + " has a malformed manifest: " + headers.malformed);
+		}
+		if (!headers.executionEnvironments.isEmpty() && headers.executionEnvironments.stream().noneMatch(ee -> javaVersion(ee) <= executionEnvironment)) {
+			unresolved.add(description + " requires Bundle-RequiredExecutionEnvironment " + headers.executionEnvironments);
+		}
+		if (headers.fragmentHost != null) {
+			int host = choose(bundles.get(headers.fragmentHost.name), headers.fragmentHost.range, walk);
+			if (host == -1) {
+				unresolved.add(description + " is missing Fragment-Host " + headers.fragmentHost);
+			}
+			walk.include(host);
+		}
+		for (BundleHeaders.Requirement require : headers.requireBundles) {
+			if (require.optional) {
+				continue;
+			}
+			String name = require.name.equals(SYSTEM_BUNDLE) ? SYSTEM_BUNDLE_IMPLEMENTATION : require.name;
+			int provider = choose(bundles.get(name), require.range, walk);
+			if (provider == -1) {
+				unresolved.add(description + " is missing Require-Bundle " + require);
+			}
+			walk.include(provider);
+		}
+		for (BundleHeaders.Requirement imported : headers.importPackages) {
+			if (imported.optional || imported.name.startsWith("java.") || exports(headers, imported.name)) {
+				continue;
+			}
+			int provider = choose(packages.get(imported.name), imported.range, walk);
+			if (provider == -1 && !isJrePackage(imported.name)) {
+				unresolved.add(description + " is missing Import-Package " + imported);
+			}
+			walk.include(provider);
+		}
+		Providers pluginFragments = fragments.get(names[plugin]);
+		if (pluginFragments != null) {
+			for (int i = 0; i < pluginFragments.size; ++i) {
+				int fragment = pluginFragments.plugins[i];
+				if (range(this.headers[fragment].fragmentHost.range).includes(versions[plugin])) {
+					walk.include(fragment);
+				}
+			}
+		}
+	}
+
+	/** Returns the provider which is already included if there is one, else the newest one in range, else -1. */
+	private int choose(@Nullable Providers providers, @Nullable String rawRange, Walk walk) {
+		if (providers == null) {
+			return -1;
+		}
+		VersionRange range = range(rawRange);
+		int newest = -1;
+		for (int i = 0; i < providers.size; ++i) {
+			if (range.includes(providers.versions[i])) {
+				if (walk.included[providers.plugins[i]]) {
+					return providers.plugins[i];
+				} else if (newest == -1) {
+					newest = providers.plugins[i];
+				}
+			}
+		}
+		return newest;
+	}
+
+	private static final VersionRange ANY = new VersionRange(VersionRange.LEFT_CLOSED, Version.emptyVersion, null, VersionRange.RIGHT_OPEN);
+
+	private VersionRange range(@Nullable String raw) {
+		if (raw == null) {
+			return ANY;
+		}
+		return ranges.computeIfAbsent(raw, unused -> {
+			try {
+				return VersionRange.valueOf(raw);
+			} catch (IllegalArgumentException e) {
+				// a malformed range shouldn't keep the rest of the closure from resolving
+				return ANY;
+			}
+		});
+	}
+
+	private static Version parseVersion(String raw) {
+		try {
+			return Version.parseVersion(raw);
+		} catch (IllegalArgumentException e) {
+			return Version.emptyVersion;
+		}
+	}
+
+	private static boolean exports(BundleHeaders headers, String packageName) {
+		for (BundleHeaders.Export export : headers.exportPackages) {
+			if (export.name.equals(packageName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isJrePackage(String packageName) {
+		for (String prefix : JRE_PACKAGE_PREFIXES) {
+			if (packageName.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the Java version of an execution environment, e.g. 8 for `JavaSE-1.8`,
+	 * 17 for `JavaSE-17`, and 0 for environments like `OSGi/Minimum-1.2` which every
+	 * JRE satisfies.
+	 */
+	static int javaVersion(String executionEnvironment) {
+		if (!executionEnvironment.startsWith("JavaSE") && !executionEnvironment.startsWith("J2SE") && !executionEnvironment.startsWith("JRE")) {
+			return 0;
+		}
+		String version = executionEnvironment.substring(executionEnvironment.lastIndexOf('-') + 1);
+		if (version.startsWith("1.")) {
+			version = version.substring(2);
+		}
+		try {
+			return Integer.parseInt(version);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -16,17 +16,18 @@
 package com.diffplug.gradle.pde;
 
 
-import com.diffplug.common.base.Errors;
 import com.diffplug.common.base.Preconditions;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.Lazyable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import org.apache.commons.io.FileUtils;
@@ -42,6 +43,10 @@ import org.osgi.framework.Version;
  * {@link ExplicitVersionPolicy} to decide which jars to copy.
  * Useful for passing jars to analysis tools.
  *
+ * If the product is based on features, the plugins of those features
+ * (and the features they include) are found in the `features` folder
+ * of each `from` installation.
+ *
  * ```groovy
  * task copyJars(type: CopyJarsUsingProductFile) {
  *     // uses jars from the given folders / installations
@@ -51,8 +56,14 @@ import org.osgi.framework.Version;
  *     productFile rootProject.file('com.diffplug.rcpdemo/rcpdemo.product')
  *     // adds plugins which aren't included by the productFile
  *     extra('org.jsr-305')
+ *     // adds every plugin from a feature (and the features it includes) which isn't included by the productFile
+ *     extraFeature('org.eclipse.egit')
  *     // destination for the copied jars
  *     into COPY_PRODUCT_JARS
+ *     // only add and remove the jars which changed since the last run, using hard links where possible
+ *     sync true
+ *     // also copies every plugin needed to resolve the ones above, and fails if any are missing
+ *     resolveDependencies true
  *     // determines which version to use when multiple versions are available
  *     explicitVersionPolicy {
  *         resolve('com.jcraft.jsch', '0.1.53.autowrapped', '0.1.53.v201508180515').withFirst()
@@ -100,38 +111,141 @@ public class CopyJarsUsingProductFile extends DefaultTask {
 		extras.add(extra);
 	}
 
+	List<String> extraFeatures = new ArrayList<>();
+
+	/** Adds the plugins of a feature (and the features it includes) which aren't included by the productFile. */
+	public void extraFeature(String extraFeature) {
+		extraFeatures.add(extraFeature);
+	}
+
+	private boolean sync = false;
+
+	/**
+	 * If true, the destination is updated in place: plugins which are no longer
+	 * needed are deleted, new plugins are hard linked (or copied, if the destination
+	 * is on a different filesystem), and unchanged plugins are left alone.  Because
+	 * the jars may be hard links, they must not be modified in the destination.
+	 *
+	 * Defaults to false, which wipes the destination and copies every plugin.
+	 */
+	public void sync(boolean sync) {
+		this.sync = sync;
+		getInputs().property("sync", sync);
+	}
+
+	private boolean resolveDependencies = false;
+
+	private String executionEnvironment;
+
+	/**
+	 * If true, the `Require-Bundle`, `Import-Package`, and `Fragment-Host` headers
+	 * of the copied plugins are followed, and every plugin they need is copied too.
+	 * If anything can't be resolved, the task fails with a list of what's missing.
+	 *
+	 * Defaults to false, which copies only the plugins that were asked for.
+	 */
+	public void resolveDependencies(boolean resolveDependencies) {
+		this.resolveDependencies = resolveDependencies;
+		getInputs().property("resolveDependencies", resolveDependencies);
+	}
+
+	/** When resolving dependencies, fails if any plugin needs a newer JRE than the given one, e.g. `JavaSE-11`. */
+	public void executionEnvironment(String executionEnvironment) {
+		this.executionEnvironment = executionEnvironment;
+		getInputs().property("executionEnvironment", executionEnvironment);
+	}
+
 	@TaskAction
 	public void action() throws IOException {
 		Objects.requireNonNull(explicitVersionPolicy, "Set explicitVersionPolicy");
 		Objects.requireNonNull(destination, "Set destination");
 		Preconditions.checkArgument(!inputFolders.isEmpty(), "Input folders should not be empty");
 
-		FileMisc.cleanDir(destination);
-
 		PluginCatalog catalog = new PluginCatalog(explicitVersionPolicy.getResult(), SwtPlatform.getAll(), inputFolders);
-		String inputStr = new String(Files.readAllBytes(productFile.toPath()), StandardCharsets.UTF_8);
-		String[] lines = FileMisc.toUnixNewline(inputStr).split("\n");
-		for (String line : lines) {
-			ProductFileUtil.parsePlugin(line).ifPresent(plugin -> copyVersionsOfPlugin(catalog, plugin));
+		ProductFile product = ProductFile.parse(productFile);
+		Set<String> roots = new LinkedHashSet<>(product.plugins());
+		if (product.isFeatureBased()) {
+			roots.addAll(catalog.getPluginsForFeatures(product.features()));
+		}
+		roots.addAll(extras);
+		roots.addAll(catalog.getPluginsForFeatures(extraFeatures));
+
+		Map<String, File> plugins = new LinkedHashMap<>();
+		roots.forEach(plugin -> addVersionsOfPlugin(catalog, plugin, plugins));
+		if (resolveDependencies) {
+			BundleResolver resolver = new BundleResolver(catalog);
+			if (executionEnvironment != null) {
+				resolver.executionEnvironment(executionEnvironment);
+			}
+			BundleResolver.Result result = resolver.resolve(roots);
+			if (!result.unresolved.isEmpty()) {
+				throw new IllegalStateException("Unable to resolve the plugins of " + productFile + ":\n    " + String.join("\n    ", result.unresolved));
+			}
+			result.plugins.forEach((plugin, version) -> {
+				File source = catalog.getFile(plugin, version);
+				plugins.putIfAbsent(source.getName(), source);
+			});
+		}
+
+		if (sync) {
+			sync(plugins, destination);
+		} else {
+			FileMisc.cleanDir(destination);
+			for (Map.Entry<String, File> plugin : plugins.entrySet()) {
+				File source = plugin.getValue();
+				File dest = new File(destination, plugin.getKey());
+				if (source.isFile()) {
+					FileUtils.copyFile(source, dest);
+				} else {
+					FileUtils.copyDirectory(source, dest);
+				}
+			}
 		}
-		extras.forEach(plugin -> copyVersionsOfPlugin(catalog, plugin));
 	}
 
-	private void copyVersionsOfPlugin(PluginCatalog catalog, String plugin) {
+	/** Adds the file for every version of the given plugin to the map, keyed by its name in the destination. */
+	private void addVersionsOfPlugin(PluginCatalog catalog, String plugin, Map<String, File> plugins) {
 		if (!catalog.isSupportedPlatform(plugin)) {
 			return;
 		}
 		Set<Version> versions = catalog.getVersionsFor(plugin);
 		for (Version version : versions) {
 			File source = catalog.getFile(plugin, version);
-			File dest = new File(destination, source.getName());
-			Errors.rethrow().run(() -> {
-				if (source.isFile()) {
-					FileUtils.copyFile(source, dest);
-				} else {
-					FileUtils.copyDirectory(source, dest);
+			plugins.put(source.getName(), source);
+		}
+	}
+
+	/** Makes `dir` contain exactly the given files, touching only the ones which have changed. */
+	private static void sync(Map<String, File> children, File dir) throws IOException {
+		FileMisc.mkdirs(dir);
+		for (File existing : FileMisc.list(dir)) {
+			File source = children.get(existing.getName());
+			if (source == null || source.isDirectory() != existing.isDirectory()) {
+				FileMisc.forceDelete(existing);
+			}
+		}
+		for (Map.Entry<String, File> child : children.entrySet()) {
+			File source = child.getValue();
+			File dest = new File(dir, child.getKey());
+			if (source.isDirectory()) {
+				// folder-style plugins are synced file-by-file
+				Map<String, File> grandchildren = new LinkedHashMap<>();
+				for (File grandchild : FileMisc.list(source)) {
+					grandchildren.put(grandchild.getName(), grandchild);
 				}
-			});
+				sync(grandchildren, dest);
+			} else if (!isUpToDate(source, dest)) {
+				FileMisc.linkOrCopy(source, dest);
+			}
+		}
+	}
+
+	/** Returns true if `dest` is a link to `source`, or a copy with the same size and timestamp. */
+	private static boolean isUpToDate(File source, File dest) throws IOException {
+		if (!dest.isFile()) {
+			return false;
 		}
+		return Files.isSameFile(source.toPath(), dest.toPath())
+				|| (source.length() == dest.length() && source.lastModified() == dest.lastModified());
 	}
 }
@@ -24,6 +24,7 @@ import com.diffplug.gradle.Lazyable;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import javax.annotation.CheckReturnValue;
 import org.osgi.framework.Version;
 
@@ -108,6 +109,15 @@ public class ExplicitVersionPolicy {
 		}
 	}
 
+	/** Describes every resolution, sorted by plugin, so that it can be used as a task input. */
+	@Override
+	public String toString() {
+		return resolvable.entrySet().stream()
+				.sorted(Map.Entry.comparingByKey())
+				.map(entry -> entry.getKey() + "=" + entry.getValue().accepts + "->" + entry.getValue().takes)
+				.collect(Collectors.joining("\n"));
+	}
+
 	/** Creates a Lazyable ExplicitVersionPolicy. */
 	static Lazyable<ExplicitVersionPolicy> createLazyable() {
 		return new Lazyable<>(new ExplicitVersionPolicy(), ExplicitVersionPolicy::copy);
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** The parts of a `feature.xml` which {@link PluginCatalog} needs to expand a feature into its plugins. */
+class FeatureXml {
+	static final String FEATURE_XML = "feature.xml";
+
+	/** A platform filter, as expressed by the `os`, `ws`, and `arch` attributes of a feature. */
+	static class PlatformFilter {
+		@Nullable
+		final String os;
+		@Nullable
+		final String ws;
+		@Nullable
+		final String arch;
+
+		PlatformFilter(Function<String, String> attributes) {
+			this.os = attributes.apply("os");
+			this.ws = attributes.apply("ws");
+			this.arch = attributes.apply("arch");
+		}
+
+		/** Returns true if any of the given platforms matches this filter. */
+		boolean matchesAny(List<SwtPlatform> platforms) {
+			if (os == null && ws == null && arch == null) {
+				return true;
+			}
+			return platforms.stream().anyMatch(platform -> matches(os, platform.getOs())
+					&& matches(ws, platform.getWs())
+					&& matches(arch, platform.getArch()));
+		}
+
+		/** The filter is a comma-separated list, or null to match everything. */
+		private static boolean matches(@Nullable String filter, String value) {
+			return filter == null || Arrays.stream(filter.split(",")).anyMatch(option -> option.trim().equals(value));
+		}
+	}
+
+	/** An `<includes>` or `<plugin>` within a feature. */
+	static class Ref {
+		final String id;
+		final String version;
+		final boolean optional;
+		final PlatformFilter filter;
+
+		Ref(String id, String version, boolean optional, PlatformFilter filter) {
+			this.id = Objects.requireNonNull(id);
+			this.version = Objects.requireNonNull(version);
+			this.optional = optional;
+			this.filter = Objects.requireNonNull(filter);
+		}
+	}
+
+	final String id;
+	final String version;
+	final PlatformFilter filter;
+	final List<Ref> includes;
+	final List<Ref> plugins;
+
+	private FeatureXml(String id, String version, PlatformFilter filter, List<Ref> includes, List<Ref> plugins) {
+		this.id = Objects.requireNonNull(id);
+		this.version = Objects.requireNonNull(version);
+		this.filter = Objects.requireNonNull(filter);
+		this.includes = Collections.unmodifiableList(includes);
+		this.plugins = Collections.unmodifiableList(plugins);
+	}
+
+	/** Reads the `feature.xml` of a feature jar or folder, returning null if it doesn't have one. */
+	@Nullable
+	static FeatureXml read(File feature) throws IOException {
+		if (feature.isDirectory()) {
+			File featureXml = new File(feature, FEATURE_XML);
+			if (featureXml.isFile()) {
+				try (InputStream input = new BufferedInputStream(new FileInputStream(featureXml))) {
+					return parse(input, feature);
+				}
+			}
+		} else if (feature.getName().endsWith(".jar")) {
+			try (ZipFile zip = new ZipFile(feature)) {
+				// plenty of jars in a features folder aren't features, so a missing entry isn't an error
+				ZipEntry entry = zip.getEntry(FEATURE_XML);
+				if (entry != null) {
+					try (InputStream input = zip.getInputStream(entry)) {
+						return parse(input, feature);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/** Parses a `feature.xml`, `source` is only for error messages. */
+	static FeatureXml parse(InputStream input, Object source) throws IOException {
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+			String id = null;
+			String version = null;
+			PlatformFilter filter = null;
+			List<Ref> includes = new ArrayList<>();
+			List<Ref> plugins = new ArrayList<>();
+			int depth = 0;
+			while (reader.hasNext()) {
+				int eventType = reader.next();
+				if (eventType == XMLStreamConstants.START_ELEMENT) {
+					++depth;
+					String name = reader.getLocalName();
+					Function<String, String> attributes = attribute -> reader.getAttributeValue(null, attribute);
+					if (depth == 1 && name.equals("feature")) {
+						id = attributes.apply("id");
+						version = attributes.apply("version");
+						filter = new PlatformFilter(attributes);
+					} else if (depth == 2 && name.equals("includes")) {
+						includes.add(ref(attributes, source));
+					} else if (depth == 2 && name.equals("plugin")) {
+						plugins.add(ref(attributes, source));
+					}
+				} else if (eventType == XMLStreamConstants.END_ELEMENT) {
+					--depth;
+				}
+			}
+			if (id == null || filter == null) {
+				throw new IllegalArgumentException("No <feature id=...> in " + source);
+			}
+			return new FeatureXml(id, version == null ? "0.0.0" : version, filter, includes, plugins);
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to parse feature.xml in " + source, e);
+		}
+	}
+
+	private static Ref ref(Function<String, String> attributes, Object source) {
+		String id = attributes.apply("id");
+		if (id == null) {
+			throw new IllegalArgumentException("<includes> or <plugin> without an id in " + source);
+		}
+		String version = attributes.apply("version");
+		return new Ref(id, version == null ? "0.0.0" : version, "true".equals(attributes.apply("optional")), new PlatformFilter(attributes));
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * Reads `META-INF/MANIFEST.MF` from a jar.
+ *
+ * The `jar` tool, bnd, and PDE all write the manifest as one of the first
+ * entries, so we first look for it in the local headers at the start of
+ * the file.  Only if it isn't there (or the entries are in a form we
+ * don't handle, e.g. zip64 or encrypted) do we fall back to {@link ZipFile},
+ * which has to read the whole central directory at the end of the file.
+ */
+class JarManifestReader {
+	/** How much of the start of the jar we read looking for the manifest. */
+	private static final int LEADING_BYTES = 64 * 1024;
+	/** How many entries we look through before giving up, e.g. `META-INF/` and `META-INF/MANIFEST.MF`. */
+	private static final int LEADING_ENTRIES = 4;
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int DATA_DESCRIPTOR = 0x08074b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int FLAG_ENCRYPTED = 0x1;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+	/** Returns the manifest of the given jar, or null if it doesn't have one. */
+	@Nullable
+	static Manifest read(File jar) throws IOException {
+		byte[] leading = readLeading(jar);
+		if (leading != null) {
+			return new Manifest(new ByteArrayInputStream(leading));
+		}
+		return readCentralDirectory(jar);
+	}
+
+	/** Reads the manifest the slow way, returning null if it doesn't have one. */
+	@Nullable
+	static Manifest readCentralDirectory(File jar) throws IOException {
+		try (ZipFile zip = new ZipFile(jar)) {
+			ZipEntry entry = zip.getEntry(PluginCatalogCache.MANIFEST_PATH);
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream input = zip.getInputStream(entry)) {
+				return new Manifest(input);
+			}
+		}
+	}
+
+	/** Returns the content of the manifest if it is one of the leading entries, else null. */
+	@Nullable
+	static byte[] readLeading(File jar) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.READ)) {
+			buffer = ByteBuffer.allocate((int) Math.min(channel.size(), LEADING_BYTES));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+		}
+		buffer.flip();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			for (int i = 0; i < LEADING_ENTRIES; ++i) {
+				int start = buffer.position();
+				if (buffer.remaining() < LOCAL_HEADER_SIZE || buffer.getInt(start) != LOCAL_HEADER) {
+					return null;
+				}
+				int flags = Short.toUnsignedInt(buffer.getShort(start + 6));
+				int method = Short.toUnsignedInt(buffer.getShort(start + 8));
+				long crc = Integer.toUnsignedLong(buffer.getInt(start + 14));
+				long compressedSize = Integer.toUnsignedLong(buffer.getInt(start + 18));
+				long size = Integer.toUnsignedLong(buffer.getInt(start + 22));
+				int nameLength = Short.toUnsignedInt(buffer.getShort(start + 26));
+				int extraLength = Short.toUnsignedInt(buffer.getShort(start + 28));
+				int dataStart = start + LOCAL_HEADER_SIZE + nameLength + extraLength;
+				if ((flags & FLAG_ENCRYPTED) != 0 || compressedSize == ZIP64_MARKER || size == ZIP64_MARKER || dataStart > buffer.limit()) {
+					return null;
+				}
+				String name = new String(buffer.array(), start + LOCAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+				boolean sizesKnown = (flags & FLAG_DATA_DESCRIPTOR) == 0;
+				buffer.position(dataStart);
+
+				byte[] content;
+				if (method == STORED && sizesKnown) {
+					if (compressedSize > buffer.remaining()) {
+						return null;
+					}
+					content = new byte[(int) compressedSize];
+					buffer.get(content);
+				} else if (method == DEFLATED) {
+					// even if we're skipping it, we have to inflate an entry with a data descriptor to find its end
+					content = inflate(buffer, sizesKnown ? compressedSize : -1);
+					if (content == null) {
+						return null;
+					}
+				} else {
+					return null;
+				}
+				if (!sizesKnown) {
+					// skip the data descriptor, whose signature is optional
+					int descriptorStart = buffer.position();
+					int crcOffset = buffer.remaining() >= 4 && buffer.getInt(descriptorStart) == DATA_DESCRIPTOR ? 4 : 0;
+					if (buffer.remaining() < crcOffset + 12) {
+						return null;
+					}
+					crc = Integer.toUnsignedLong(buffer.getInt(descriptorStart + crcOffset));
+					size = Integer.toUnsignedLong(buffer.getInt(descriptorStart + crcOffset + 8));
+					buffer.position(descriptorStart + crcOffset + 12);
+				}
+				if (name.equals(PluginCatalogCache.MANIFEST_PATH)) {
+					CRC32 actual = new CRC32();
+					actual.update(content);
+					return content.length == size && actual.getValue() == crc ? content : null;
+				}
+			}
+			return null;
+		} catch (IndexOutOfBoundsException e) {
+			// a truncated or unusual jar, the central directory will sort it out
+			return null;
+		}
+	}
+
+	/** Inflates the entry at the buffer's position, leaving the buffer just past it, or returns null if it runs past the buffer. */
+	@Nullable
+	private static byte[] inflate(ByteBuffer buffer, long compressedSize) {
+		int available = compressedSize < 0 ? buffer.remaining() : (int) Math.min(compressedSize, buffer.remaining());
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(buffer.array(), buffer.position(), available);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8 * 1024];
+			while (!inflater.finished()) {
+				int numInflated = inflater.inflate(chunk);
+				if (numInflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					return null;
+				}
+				output.write(chunk, 0, numInflated);
+			}
+			int consumed = available - inflater.getRemaining();
+			if (compressedSize >= 0 && consumed != compressedSize) {
+				return null;
+			}
+			buffer.position(buffer.position() + consumed);
+			return output.toByteArray();
+		} catch (DataFormatException e) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -16,21 +16,45 @@
 package com.diffplug.gradle.pde;
 
 
+import com.diffplug.common.base.Preconditions;
 import com.diffplug.common.collect.Maps;
-import com.diffplug.common.io.Files;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.eclipserunner.EclipseApp;
+import com.diffplug.gradle.eclipserunner.EclipseRunner;
+import com.diffplug.gradle.p2.P2Model;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.internal.Actions;
 
@@ -41,6 +65,11 @@ import org.gradle.internal.Actions;
  * {@link PdeInstallation#fromProject(org.gradle.api.Project)}
  * for details.
  *
+ * The task is up-to-date (and can be restored from the build cache)
+ * unless the base, plugin paths, product files, JDK, configs, or
+ * properties have changed.  Only the `destination` is tracked as
+ * an output, so properties like `p2.build.repo` should point within it.
+ *
  * ```groovy
  * import com.diffplug.gradle.pde.*
  * import com.diffplug.gradle.ZipMisc
@@ -69,6 +98,9 @@ import org.gradle.internal.Actions;
  *     props['runPackager'] = 'false'
  *     props['groupConfigurations'] = 'true'
  *
+ *     // build the configs in up to 3 PDE processes at once
+ *     parallelConfigs 3
+ *
  *     app {
  *         it.consolelog()
  *         it.addArgs('-debug')
@@ -87,6 +119,7 @@ import org.gradle.internal.Actions;
  * }
  * ```
  */
+@CacheableTask
 public class PdeBuildTask extends DefaultTask {
 	private Object destination;
 
@@ -156,6 +189,156 @@ public class PdeBuildTask extends DefaultTask {
 		this.productConfig = productConfig;
 	}
 
+	//////////////////////
+	// INPUTS / OUTPUTS //
+	//////////////////////
+	/** The directory which will contain the built product or repository. */
+	@OutputDirectory
+	public File getDestination() {
+		return getProject().file(Objects.requireNonNull(destination, "destination must not be null!"));
+	}
+
+	@InputDirectory
+	@PathSensitive(PathSensitivity.RELATIVE)
+	public File getBase() {
+		return getProject().file(Objects.requireNonNull(base, "base must not be null!"));
+	}
+
+	@InputFiles
+	@PathSensitive(PathSensitivity.RELATIVE)
+	public List<File> getPluginPaths() {
+		return FileMisc.parseListFile(getProject(), pluginPath);
+	}
+
+	/** The JDK libraries which the build compiles against. */
+	@InputFiles
+	@PathSensitive(PathSensitivity.NONE)
+	public List<File> getJdkLibs() {
+		return config.getJdkLibs();
+	}
+
+	/** The parts of the JDK config which end up in `build.properties`, other than its libraries. */
+	@Input
+	public List<String> getJdkProperties() {
+		return Arrays.asList(config.name, config.source, config.target);
+	}
+
+	/** The configs to build, as `os,ws,arch`. */
+	@Input
+	public List<String> getConfigs() {
+		return platforms.stream()
+				.map(platform -> platform.getOs() + "," + platform.getWs() + "," + platform.getArch())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * The extra properties, with the destination and root project paths replaced by
+	 * placeholders, so that the build cache can be shared between checkouts in different
+	 * locations.
+	 */
+	@Input
+	public Map<String, String> getNormalizedProps() {
+		String destinationPath = getDestination().getAbsolutePath();
+		String rootPath = getProject().getRootDir().getAbsolutePath();
+		Map<String, String> normalized = new TreeMap<>();
+		buildProperties.forEach((key, value) -> normalized.put(key, value
+				.replace(destinationPath, "${destination}")
+				.replace(rootPath, "${rootDir}")));
+		return normalized;
+	}
+
+	/** The PDE release which runs the build. */
+	@Input
+	public String getPdeRelease() {
+		return PdeInstallation.fromProject(getProject()).release.toString();
+	}
+
+	/** The arguments which {@link #app(Action)} adds to the PDE build command. */
+	@Input
+	public String getAppState() {
+		EclipseApp app = new EclipseApp(EclipseApp.AntRunner.ID);
+		appModifier.execute(app);
+		return app.completeState();
+	}
+
+	/** The id, version, product file path, and version policy of the product, or empty if this isn't a product build. */
+	@Input
+	public Map<String, String> getProductProperties() {
+		Map<String, String> properties = new TreeMap<>();
+		if (productConfig != null) {
+			PdeProductBuildConfig product = new PdeProductBuildConfig(getProject());
+			productConfig.execute(product);
+			properties.put("id", String.valueOf(product.id));
+			properties.put("version", String.valueOf(product.version));
+			properties.put("productFileWithinPlugin", String.valueOf(product.productFileWithinPlugin));
+			properties.put("explicitVersionPolicy", product.explicitVersionPolicy.getResult().toString());
+		}
+		return properties;
+	}
+
+	/** The product file and the icons which are copied into the build, or empty if this isn't a product build. */
+	@InputFiles
+	@PathSensitive(PathSensitivity.RELATIVE)
+	public FileCollection getProductFiles() {
+		if (productConfig == null) {
+			return getProject().files();
+		}
+		PdeProductBuildConfig product = new PdeProductBuildConfig(getProject());
+		productConfig.execute(product);
+		return getProject().fileTree(Objects.requireNonNull(product.productPluginDir, "Must set `productPluginDir`"), tree -> {
+			tree.include(Objects.requireNonNull(product.productFileWithinPlugin, "Must set `productFileWithinPlugin`"));
+			PdeProductBuildConfig.POSSIBLE_ICON_SUFFIXES.forEach(suffix -> tree.include("**/*" + suffix));
+		});
+	}
+
+	private int parallelConfigs = 1;
+
+	/**
+	 * Builds the configs in up to this many PDE processes at once, rather than
+	 * building every config one after the other in a single process.
+	 *
+	 * The configs are split into shards, each of which is built in its own build
+	 * directory and workspace.  The first shard is built alone, and its build
+	 * directory seeds the others, so that the bundles which aren't platform-specific
+	 * have already been compiled, and ant's javac skips them.  The outputs of the
+	 * shards are then merged into the destination.  Any p2 repository in the output
+	 * is merged with p2's mirror task, and for everything else, files which more than
+	 * one shard produced are taken from the first shard.
+	 *
+	 * Any property which contains the destination path is pointed at each shard's
+	 * build directory instead, so every output should be within the destination.
+	 */
+	public void parallelConfigs(int processes) {
+		Preconditions.checkArgument(processes >= 1, "processes must be at least 1, was %s", processes);
+		this.parallelConfigs = processes;
+	}
+
+	private boolean reuseWorkspace = true;
+
+	/**
+	 * If true, each build reuses the Eclipse workspace of the previous build of this
+	 * task (one per shard, see {@link #parallelConfigs(int)}), kept in the task's
+	 * temporary directory.  A workspace is wiped when the PDE release changes, or if
+	 * it hasn't been used in 30 days, and `gradle clean` removes them all.
+	 *
+	 * Defaults to true.  If false, every run uses a fresh workspace which is deleted afterwards.
+	 */
+	public void reuseWorkspace(boolean reuseWorkspace) {
+		this.reuseWorkspace = reuseWorkspace;
+	}
+
+	/** Whether the workspace is reused, which doesn't affect the output. */
+	@Internal
+	public boolean getReuseWorkspace() {
+		return reuseWorkspace;
+	}
+
+	/** The number of PDE processes which {@link #parallelConfigs(int)} may use, which doesn't affect the output. */
+	@Internal
+	public int getParallelConfigs() {
+		return parallelConfigs;
+	}
+
 	@TaskAction
 	public void build() throws Exception {
 		Objects.requireNonNull(destination, "destination must not be null!");
@@ -166,16 +349,93 @@ public class PdeBuildTask extends DefaultTask {
 		FileMisc.cleanDir(destination);
 
 		File base = getProject().file(this.base);
+		List<File> pluginPaths = getPluginPaths();
+		PdeInstallation installation = PdeInstallation.fromProject(getProject());
+
+		List<List<SwtPlatform>> shards = shard(platforms, parallelConfigs);
+		if (shards.size() == 1) {
+			build(installation, runner(installation, 0), destination, destination, platforms, base, pluginPaths);
+			return;
+		}
+
+		File shardRoot = new File(getTemporaryDir(), "shards");
+		FileMisc.cleanDir(shardRoot);
+		List<File> buildDirs = new ArrayList<>();
+		for (int i = 0; i < shards.size(); ++i) {
+			buildDirs.add(new File(shardRoot, "build" + i));
+		}
+		// the first shard compiles everything, and seeds the build directory of the others
+		build(installation, runner(installation, 0), destination, buildDirs.get(0), shards.get(0), base, pluginPaths);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelConfigs, shards.size() - 1));
+		try {
+			List<Future<?>> builds = new ArrayList<>();
+			for (int i = 1; i < shards.size(); ++i) {
+				int shard = i;
+				builds.add(executor.submit(() -> {
+					FileUtils.copyDirectory(buildDirs.get(0), buildDirs.get(shard));
+					build(installation, runner(installation, shard), destination, buildDirs.get(shard), shards.get(shard), base, pluginPaths);
+					return null;
+				}));
+			}
+			Exception failure = null;
+			for (Future<?> build : builds) {
+				try {
+					build.get();
+				} catch (ExecutionException e) {
+					Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					if (failure == null) {
+						failure = cause;
+					} else {
+						failure.addSuppressed(cause);
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		merge(runner(installation, 0), buildDirs, destination);
+		FileMisc.forceDelete(shardRoot);
+	}
+
+	/** Returns the runner for the given shard, which reuses that shard's workspace from the last build if {@link #reuseWorkspace(boolean)}. */
+	private EclipseRunner runner(PdeInstallation installation, int shard) {
+		if (reuseWorkspace) {
+			return installation.withWorkspace(new File(getTemporaryDir(), "workspace" + shard));
+		} else {
+			return installation;
+		}
+	}
+
+	/** Splits the platforms round-robin into at most the given number of shards. */
+	static List<List<SwtPlatform>> shard(List<SwtPlatform> platforms, int maxShards) {
+		int count = Math.max(1, Math.min(maxShards, platforms.size()));
+		List<List<SwtPlatform>> shards = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			shards.add(new ArrayList<>());
+		}
+		for (int i = 0; i < platforms.size(); ++i) {
+			shards.get(i % count).add(platforms.get(i));
+		}
+		return shards;
+	}
+
+	/** Runs PDE build for the given configs in the given build directory, which is the destination unless we're sharding. */
+	private void build(PdeInstallation installation, EclipseRunner runner, File destination, File buildDir, List<SwtPlatform> configs, File base, List<File> pluginPaths) throws Exception {
+		FileMisc.mkdirs(buildDir);
+		// outputs which the user pointed at the destination go to this build's directory instead
+		String destinationPath = destination.getAbsolutePath();
+		Function<String, String> relocate = value -> buildDir.equals(destination) ? value : value.replace(destinationPath, buildDir.getAbsolutePath());
 
 		// setup build.properties
 		PdeBuildProperties properties = new PdeBuildProperties();
 		properties.setBasePlatform(SwtPlatform.getRunning());
-		properties.setBuildDirectory(destination);
+		properties.setBuildDirectory(buildDir);
 		properties.setProp("base", base.getAbsolutePath());
-		properties.setConfigs(platforms); // for all configs
+		properties.setConfigs(configs); // for all configs
 		properties.setJDK(config);
-
-		List<File> pluginPaths = FileMisc.parseListFile(getProject(), pluginPath);
 		properties.setPluginPaths(pluginPaths);
 
 		// now that we've set the base values, give the product part a wack at it (if there is one)
@@ -184,21 +444,59 @@ public class PdeBuildTask extends DefaultTask {
 			productConfig.execute(product);
 			List<File> roots = new ArrayList<>();
 			roots.addAll(pluginPaths);
-			product.setup(destination, properties, platforms, roots);
+			product.setup(buildDir, properties, configs, roots);
 		}
 
 		// set all the properties we'd like to set
 		for (Map.Entry<String, String> entry : buildProperties.entrySet()) {
-			properties.setProp(entry.getKey(), entry.getValue());
+			properties.setProp(entry.getKey(), relocate.apply(entry.getValue()));
 		}
 		// write build.properties to the appropriate directory
-		File buildDirProperties = new File(destination, "build.properties");
-		Files.write(properties.getContent(), buildDirProperties, StandardCharsets.UTF_8);
+		File buildDirProperties = new File(buildDir, "build.properties");
+		Files.write(buildDirProperties.toPath(), properties.getContent().getBytes(StandardCharsets.UTF_8));
 
 		// generate and execute the PDE build command
-		PdeInstallation installation = PdeInstallation.fromProject(getProject());
-		EclipseApp app = installation.productBuildCmd(destination);
+		EclipseApp app = installation.productBuildCmd(buildDir);
 		appModifier.execute(app);
-		app.runUsing(installation);
+		app.runUsing(runner);
+	}
+
+	private static final List<String> P2_METADATA = Arrays.asList("artifacts.xml", "artifacts.jar", "content.xml", "content.jar");
+
+	/** Merges the build directory of each shard into the destination. */
+	private static void merge(EclipseRunner runner, List<File> buildDirs, File destination) throws Exception {
+		// find the p2 repositories, by the relative path of the folder which holds their metadata
+		Set<Path> repositories = new LinkedHashSet<>();
+		for (File buildDir : buildDirs) {
+			try (Stream<Path> files = Files.walk(buildDir.toPath())) {
+				files.filter(file -> P2_METADATA.contains(file.getFileName().toString()))
+						.forEach(file -> repositories.add(buildDir.toPath().relativize(file.getParent())));
+			}
+		}
+		// copy everything else, keeping whichever shard got there first
+		for (File buildDir : buildDirs) {
+			try (Stream<Path> files = Files.walk(buildDir.toPath())) {
+				for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+					Path relative = buildDir.toPath().relativize(file);
+					boolean inRepository = repositories.stream().anyMatch(relative::startsWith);
+					Path target = destination.toPath().resolve(relative);
+					if (!inRepository && !Files.exists(target)) {
+						FileMisc.mkdirs(target.getParent().toFile());
+						Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+					}
+				}
+			}
+		}
+		// and let p2 merge the repositories
+		for (Path repository : repositories) {
+			P2Model model = new P2Model();
+			for (File buildDir : buildDirs) {
+				File shardRepository = buildDir.toPath().resolve(repository).toFile();
+				if (shardRepository.isDirectory()) {
+					model.addRepo(shardRepository);
+				}
+			}
+			model.mirrorApp(destination.toPath().resolve(repository).toFile()).runUsing(runner);
+		}
 	}
 }
@@ -23,15 +23,19 @@ import com.diffplug.common.swt.os.OS;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.FileMisc;
 import com.diffplug.gradle.GoomphCacheLocations;
-import com.diffplug.gradle.ZipMisc;
+import com.diffplug.gradle.MetadataCache;
+import com.diffplug.gradle.ZipExtractor;
 import com.diffplug.gradle.eclipserunner.EclipseApp;
 import com.diffplug.gradle.eclipserunner.EclipseRunner;
 import com.diffplug.gradle.eclipserunner.NativeRunner;
 import com.diffplug.gradle.p2.P2Model;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -156,7 +160,7 @@ public class PdeInstallation implements EclipseRunner {
 	static final String TOKEN = "installed";
 
 	/** Makes sure that the installation is prepared. */
-	private void ensureInstalled() throws Exception {
+	private synchronized void ensureInstalled() throws Exception {
 		if (!isInstalled()) {
 			install();
 		}
@@ -171,9 +175,9 @@ public class PdeInstallation implements EclipseRunner {
 
 	/** Installs the bootstrap installation. */
 	private void install() throws Exception {
-
 		if (GoomphCacheLocations.pdeBootstrapUrl().isPresent()) {
 			String url = GoomphCacheLocations.pdeBootstrapUrl().get();
+			MetadataCache.checkOnline("the pde bootstrap " + release, url, getRootFolder());
 			System.out.print("Installing pde " + release + " from " + url + "... ");
 			File target = new File(getRootFolder(), DOWNLOAD_FILE);
 			try {
@@ -183,10 +187,11 @@ public class PdeInstallation implements EclipseRunner {
 				FileMisc.download(url + release.version() + String.format(VERSIONED_DOWNLOAD_FILE, release.version()), target);
 			}
 			// unzip it
-			ZipMisc.unzip(target, target.getParentFile());
+			ZipExtractor.unzip(target, target.getParentFile());
 			// delete the zip
 			FileMisc.forceDelete(target);
 		} else {
+			MetadataCache.checkOnline("the pde bootstrap " + release, getRootFolder());
 			System.out.print("Installing pde " + release + "... ");
 			obtainBootstrap(release);
 		}
@@ -194,14 +199,32 @@ public class PdeInstallation implements EclipseRunner {
 		// parse out the pde.build version
 		File bundleInfo = new File(getContentsEclipse(), "configuration/org.eclipse.equinox.simpleconfigurator/bundles.info");
 		Preconditions.checkArgument(bundleInfo.isFile(), "Needed to find the pde.build folder: %s", bundleInfo);
-		String pdeBuildLine = Files.readAllLines(bundleInfo.toPath()).stream().filter(line -> line.startsWith("org.eclipse.pde.build,")).findFirst().get();
-		String pdeBuildVersion = pdeBuildLine.split(",")[1];
+		String pdeBuildVersion = pdeBuildVersion(bundleInfo);
 		// find the plugins folder
 		pdeBuildFolder = new File(GoomphCacheLocations.bundlePool(), "plugins/org.eclipse.pde.build_" + pdeBuildVersion);
 		FileMisc.writeToken(getRootFolder(), TOKEN, pdeBuildFolder.getAbsolutePath());
 		System.out.println("Success.");
 	}
 
+	private static final String PDE_BUILD_PREFIX = "org.eclipse.pde.build,";
+
+	/**
+	 * Returns the version of `org.eclipse.pde.build` in the given `bundles.info`,
+	 * reading only as far as its line rather than the whole file.
+	 */
+	static String pdeBuildVersion(File bundleInfo) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(bundleInfo.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(PDE_BUILD_PREFIX)) {
+					int end = line.indexOf(',', PDE_BUILD_PREFIX.length());
+					return line.substring(PDE_BUILD_PREFIX.length(), end == -1 ? line.length() : end);
+				}
+			}
+		}
+		throw new IllegalArgumentException("No org.eclipse.pde.build in " + bundleInfo);
+	}
+
 	/** Obtain PDE Installation from remote p2 repository */
 	private void obtainBootstrap(EclipseRelease release) throws Exception {
 		P2Model.DirectorApp directorApp = p2model().directorApp(getRootFolder(), "goomph-pde-bootstrap-" + release);
@@ -243,22 +266,55 @@ public class PdeInstallation implements EclipseRunner {
 				"eclipse");
 	}
 
+	/** Workspaces passed to {@link #withWorkspace(File)} which haven't been used for this long are wiped before their next use. */
+	static final Duration WORKSPACE_MAX_AGE = Duration.ofDays(30);
+	private static final String WORKSPACE_TOKEN = "goomph-pde-release";
+
+	/** Runs in a fresh workspace which is deleted afterwards, so that concurrent runs of this installation don't collide. */
 	@Override
 	public void run(List<String> args) throws Exception {
+		File workspace = Files.createTempDirectory("goomph-pde-workspace").toFile();
+		try {
+			run(args, workspace);
+		} finally {
+			FileUtils.deleteDirectory(workspace);
+		}
+	}
+
+	/**
+	 * Returns a runner which uses the given workspace, and keeps it between runs, so
+	 * that Eclipse doesn't have to initialize its metadata from scratch every time.
+	 * Each workspace should only be used by one build at a time, e.g. one per task.
+	 *
+	 * The workspace is wiped if it was last used by a different release, or hasn't
+	 * been used in {@link #WORKSPACE_MAX_AGE}.
+	 */
+	EclipseRunner withWorkspace(File workspace) {
+		return args -> {
+			prepareWorkspace(workspace);
+			run(args, workspace);
+		};
+	}
+
+	/** Applies the cleanup policy of {@link #withWorkspace(File)}, and marks the workspace as used by this release. */
+	private void prepareWorkspace(File workspace) throws IOException {
+		File token = new File(workspace, WORKSPACE_TOKEN);
+		boolean sameRelease = FileMisc.hasTokenFile(token, release.toString());
+		boolean recentlyUsed = System.currentTimeMillis() - token.lastModified() < WORKSPACE_MAX_AGE.toMillis();
+		if (!sameRelease || !recentlyUsed) {
+			FileMisc.cleanDir(workspace);
+		}
+		FileMisc.writeTokenFile(token, release.toString());
+	}
+
+	private void run(List<String> args, File workspace) throws Exception {
 		ensureInstalled();
-		// set a clean workspace
 		List<String> actualArgs = new ArrayList<>();
 		actualArgs.add("-data");
-		File workspace = new File(getRootFolder(), FileMisc.macContentsEclipse() + "workspace");
 		actualArgs.add(workspace.getAbsolutePath());
 		// add the user's args
 		actualArgs.addAll(args);
 		// run the code
-		try {
-			new NativeRunner(new File(getRootFolder(), getEclipseConsoleExecutable())).run(actualArgs);
-		} finally {
-			// clean the workspace directory
-			FileUtils.deleteDirectory(workspace);
-		}
+		new NativeRunner(new File(getRootFolder(), getEclipseConsoleExecutable())).run(actualArgs);
 	}
 }
@@ -16,15 +16,12 @@
 package com.diffplug.gradle.pde;
 
 
-import com.diffplug.common.base.StringPrinter;
 import com.diffplug.common.collect.ImmutableList;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.Lazyable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.List;
 import java.util.Objects;
 import org.apache.commons.io.FileUtils;
@@ -43,7 +40,6 @@ public class PdeProductBuildConfig {
 	Object productPluginDir;
 	String productFileWithinPlugin;
 	String version;
-	private String[] productFileLines;
 	final Lazyable<ExplicitVersionPolicy> explicitVersionPolicy = ExplicitVersionPolicy.createLazyable();
 
 	public void id(String id) {
@@ -86,13 +82,11 @@ public class PdeProductBuildConfig {
 		// copy all images from original to the sanitized
 		copyImages(productPluginDir, tempProductDir);
 
-		// now create the sanitized product file
+		// now create the sanitized product file, reading its properties in the same pass
 		File productFile = productPluginDir.toPath().resolve(productFileWithinPlugin).toFile();
-		productFileLines = ProductFileUtil.readLines(productFile);
-		ProductFileUtil.extractProperties(productFileLines).forEach(props::setProp);
-
 		File tempProductFile = tempProductDir.toPath().resolve(productFileWithinPlugin).toFile();
-		transformProductFile(tempProductFile, catalog, version);
+		ProductFile parsed = ProductFileUtil.transformProductFile(productFile, tempProductFile, catalog, version);
+		ProductFileUtil.extractProperties(parsed).forEach(props::setProp);
 
 		// finally setup the PdeBuildProperties to our temp product stuff
 		props.setProp("topLevelElementType", "product");
@@ -111,13 +105,4 @@ public class PdeProductBuildConfig {
 	}
 
 	static final ImmutableList<String> POSSIBLE_ICON_SUFFIXES = ImmutableList.of(".xpm", ".icns", ".ico");
-
-	void transformProductFile(File output, PluginCatalog catalog, String version) throws IOException {
-		String result = StringPrinter.buildString(printer -> {
-			for (String line : productFileLines) {
-				ProductFileUtil.transformProductFile(printer, line, catalog, version);
-			}
-		});
-		Files.write(output.toPath(), result.getBytes(StandardCharsets.UTF_8));
-	}
 }
@@ -16,7 +16,6 @@
 package com.diffplug.gradle.pde;
 
 
-import aQute.lib.filter.Filter;
 import com.diffplug.common.base.Errors;
 import com.diffplug.common.base.Preconditions;
 import com.diffplug.common.collect.HashBasedTable;
@@ -26,39 +25,50 @@ import com.diffplug.common.collect.Sets;
 import com.diffplug.common.collect.Table;
 import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.FileMisc;
-import com.diffplug.gradle.ZipMisc;
 import java.io.File;
-import java.io.FileInputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.osgi.framework.Version;
 
-/** Catalogs all of the plugins and their versions in the given paths. */
+/** Catalogs all of the plugins and features, and their versions, in the given paths. */
 class PluginCatalog {
 	/** A map from plugin name to a set of available versions. */
 	private final SetMultimap<String, Version> availableVersions = HashMultimap.create();
 	private final Table<String, Version, File> toFile = HashBasedTable.create();
+	/** The cached manifest of each plugin, for {@link BundleResolver}. */
+	private final Table<String, Version, PluginCatalogCache.Entry> toEntry = HashBasedTable.create();
 	/** A version mapping policy. */
 	private final ExplicitVersionPolicy versionPolicy;
 	/** A set containing plugins which are specific to platforms which we don't support. */
 	private final Set<String> unsupportedPlatform = Sets.newHashSet();
-
-	private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
-	private static final String BUNDLE_NAME = "Bundle-SymbolicName";
-	private static final String BUNDLE_VERSION = "Bundle-Version";
-	private static final String ECLIPSE_PLATFORM_FILTER = "Eclipse-PlatformFilter";
+	/** The platforms we support. */
+	private final List<SwtPlatform> supported;
+	/** The features in the `features` folder of each root. */
+	private final Table<String, Version, FeatureXml> features = HashBasedTable.create();
+	/** The plugins of each feature which has been expanded so far, including those of its included features. */
+	private final Map<FeatureXml, Set<String>> featureToPlugins = new HashMap<>();
 
 	/**
 	 * Catalogs all of the plugins in the given roots.  If a plugin
 	 * exists with two versions, an exception is thrown, unless it is
 	 * handled by the MultipleVersionPolicy.
+	 *
+	 * The manifests of each root are cached by {@link PluginCatalogCache},
+	 * so only the plugins which have changed since the last build are opened.
+	 * If a root has a `features` folder, its features are cataloged too.
 	 */
 	public PluginCatalog(ExplicitVersionPolicy versionPolicy, List<SwtPlatform> supported, List<File> roots) {
 		this.versionPolicy = Objects.requireNonNull(versionPolicy);
+		this.supported = Objects.requireNonNull(supported);
 		for (File root : roots) {
 			Preconditions.checkArgument(root.exists(), "Root '%s' does not exist.", root);
 			File pluginRoot = root;
@@ -69,49 +79,34 @@ class PluginCatalog {
 
 			List<File> files = FileMisc.list(pluginRoot);
 			Preconditions.checkArgument(files.size() > 0, "No plugins found in " + root);
-			// look for plugin.jar
-			files.stream().filter(file -> file.isFile() && file.getName().endsWith(".jar"))
-					.forEach(Errors.rethrow().wrap(file -> {
-						ZipMisc.read(file, MANIFEST_PATH, input -> addManifest(supported, new Manifest(input), file));
-					}));
-			// look for folder-style plugins (especially org.eclipse.core.runtime.compatibility.registry)
-			files.stream().filter(file -> file.isDirectory()).forEach(Errors.rethrow().wrap(folder -> {
-				File manifestFile = new File(folder, MANIFEST_PATH);
-				if (manifestFile.exists()) {
-					try (FileInputStream input = new FileInputStream(new File(folder, MANIFEST_PATH))) {
-						addManifest(supported, new Manifest(input), folder);
+			PluginCatalogCache cache = new PluginCatalogCache(pluginRoot, supported);
+			for (PluginCatalogCache.Entry entry : Errors.rethrow().get(() -> cache.entries(files))) {
+				add(entry, new File(pluginRoot, entry.fileName));
+			}
+
+			File featureRoot = new File(root, "features");
+			if (featureRoot.isDirectory()) {
+				for (File file : FileMisc.list(featureRoot)) {
+					FeatureXml feature = Errors.rethrow().get(() -> FeatureXml.read(file));
+					if (feature != null) {
+						features.put(feature.id, Version.parseVersion(feature.version), feature);
 					}
 				}
-			}));
+			}
 		}
 	}
 
-	/** Adds a manifest to the catalog. */
-	private void addManifest(List<SwtPlatform> supported, Manifest parsed, File plugin) {
-		// parse out the name (looking out for the ";singleton=true" names
-		String name = parsed.getMainAttributes().getValue(BUNDLE_NAME);
-		int splitIdx = name.indexOf(';');
-		if (splitIdx > 0) {
-			name = name.substring(0, splitIdx);
-		}
-
-		// parse out the platform filter (if any)
+	/** Adds a plugin to the catalog. */
+	private void add(PluginCatalogCache.Entry entry, File plugin) {
 		// if it doesn't match an OS that we support, throw it out
-		String platformFilter = parsed.getMainAttributes().getValue(ECLIPSE_PLATFORM_FILTER);
-		if (platformFilter != null) {
-			Filter filter = new Filter(platformFilter.replace(" ", ""));
-			boolean isSupportedOS = supported.stream().anyMatch(Errors.rethrow().wrapPredicate(platform -> filter.matchMap(platform.platformProperties())));
-			if (!isSupportedOS) {
-				unsupportedPlatform.add(name);
-				return;
-			}
+		if (!entry.isSupportedPlatform) {
+			unsupportedPlatform.add(entry.name);
+			return;
 		}
-
-		// parse out the version
-		String versionRaw = parsed.getMainAttributes().getValue(BUNDLE_VERSION);
-		Version version = Version.parseVersion(versionRaw);
-		availableVersions.put(name, version);
-		toFile.put(name, version, plugin);
+		Version version = Version.parseVersion(entry.version);
+		availableVersions.put(entry.name, version);
+		toFile.put(entry.name, version, plugin);
+		toEntry.put(entry.name, version, entry);
 	}
 
 	/** Returns true if the given plugin is for a supported platform. */
@@ -130,6 +125,73 @@ class PluginCatalog {
 		return toFile.get(plugin, version);
 	}
 
+	/** Returns the cached manifest of every plugin for a supported platform, regardless of the version policy. */
+	Collection<PluginCatalogCache.Entry> getEntries() {
+		return Collections.unmodifiableCollection(toEntry.values());
+	}
+
+	/**
+	 * Returns every plugin in the given features and the features they include,
+	 * skipping any which don't match the supported platforms.  Each feature is
+	 * only expanded once, no matter how many features include it.
+	 */
+	Set<String> getPluginsForFeatures(Collection<String> featureIds) {
+		Set<String> plugins = new LinkedHashSet<>();
+		for (String featureId : featureIds) {
+			FeatureXml feature = getFeature(featureId, "0.0.0");
+			if (feature == null) {
+				throw new IllegalArgumentException("No such feature: " + featureId);
+			}
+			plugins.addAll(pluginsOf(feature, new HashSet<>()));
+		}
+		return plugins;
+	}
+
+	/** Returns the given version of the feature if we have it, else its highest version, or null if we don't have it at all. */
+	@Nullable
+	private FeatureXml getFeature(String id, String version) {
+		Map<Version, FeatureXml> versions = features.row(id);
+		if (versions.isEmpty()) {
+			return null;
+		}
+		FeatureXml exact = versions.get(Version.parseVersion(version));
+		if (exact != null) {
+			return exact;
+		}
+		// "0.0.0" means any version, and "1.0.0.qualifier" won't match the built version, so we take the newest
+		return versions.get(Collections.max(versions.keySet()));
+	}
+
+	private Set<String> pluginsOf(FeatureXml feature, Set<FeatureXml> inProgress) {
+		Set<String> memoized = featureToPlugins.get(feature);
+		if (memoized != null) {
+			return memoized;
+		}
+		Preconditions.checkArgument(inProgress.add(feature), "Feature %s includes itself", feature.id);
+		Set<String> plugins = new LinkedHashSet<>();
+		if (feature.filter.matchesAny(supported)) {
+			for (FeatureXml.Ref include : feature.includes) {
+				if (!include.filter.matchesAny(supported)) {
+					continue;
+				}
+				FeatureXml included = getFeature(include.id, include.version);
+				if (included != null) {
+					plugins.addAll(pluginsOf(included, inProgress));
+				} else if (!include.optional) {
+					throw new IllegalArgumentException("Feature " + feature.id + " includes " + include.id + ", which is missing");
+				}
+			}
+			for (FeatureXml.Ref plugin : feature.plugins) {
+				if (plugin.filter.matchesAny(supported) && isSupportedPlatform(plugin.id)) {
+					plugins.add(plugin.id);
+				}
+			}
+		}
+		inProgress.remove(feature);
+		featureToPlugins.put(feature, plugins);
+		return plugins;
+	}
+
 	@Override
 	public String toString() {
 		return availableVersions.entries().stream().map(entry -> entry.toString()).collect(Collectors.joining("\n"));
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import aQute.lib.filter.Filter;
+import com.diffplug.common.base.Errors;
+import com.diffplug.common.base.Preconditions;
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.FileMisc;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+
+/**
+ * An index of the manifests in a single plugin folder, persisted
+ * in {@link GoomphCacheLocations#pluginCatalog()}.  There is a separate
+ * index for each set of supported platforms, so that builds which need
+ * different platforms from the same folder (e.g. the shards of a
+ * {@link PdeBuildTask}) don't keep overwriting each other's index.
+ *
+ * Each plugin is keyed by its file name, size, and timestamp (for
+ * folder-style plugins, the size and timestamp of the manifest),
+ * so only new or changed plugins are opened.  The whole index is
+ * loaded with a single sequential read, and is only rewritten if
+ * something changed.
+ *
+ * The manifests of the plugins which did change are read in parallel,
+ * using {@link JarManifestReader} to avoid reading the central directory
+ * of each jar.
+ */
+class PluginCatalogCache {
+	/** Reading manifests is mostly waiting on the disk, so more threads than this doesn't help. */
+	static final int DEFAULT_PARALLELISM = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+	/** Bump whenever the format of {@link Entry} changes. */
+	private static final int FORMAT = 3;
+
+	static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+	private static final String BUNDLE_NAME = "Bundle-SymbolicName";
+	private static final String BUNDLE_VERSION = "Bundle-Version";
+	private static final String ECLIPSE_PLATFORM_FILTER = "Eclipse-PlatformFilter";
+
+	/** The parts of a plugin's manifest which {@link PluginCatalog} needs. */
+	static class Entry {
+		final String fileName;
+		final long size;
+		final long lastModified;
+		/** False for a jar without a manifest, which is only cached so that it isn't opened again until it changes. */
+		final boolean isPlugin;
+		final String name;
+		final String version;
+		@Nullable
+		final String platformFilter;
+		final boolean isSupportedPlatform;
+		final BundleHeaders headers;
+
+		Entry(String fileName, long size, long lastModified, String name, String version, @Nullable String platformFilter, boolean isSupportedPlatform, BundleHeaders headers) {
+			this.fileName = Objects.requireNonNull(fileName);
+			this.size = size;
+			this.lastModified = lastModified;
+			this.isPlugin = true;
+			this.name = Objects.requireNonNull(name);
+			this.version = Objects.requireNonNull(version);
+			this.platformFilter = platformFilter;
+			this.isSupportedPlatform = isSupportedPlatform;
+			this.headers = Objects.requireNonNull(headers);
+		}
+
+		/** Returns an entry for a jar which doesn't have a manifest. */
+		static Entry notAPlugin(String fileName, long size, long lastModified) {
+			return new Entry(fileName, size, lastModified);
+		}
+
+		private Entry(String fileName, long size, long lastModified) {
+			this.fileName = Objects.requireNonNull(fileName);
+			this.size = size;
+			this.lastModified = lastModified;
+			this.isPlugin = false;
+			this.name = "";
+			this.version = "";
+			this.platformFilter = null;
+			this.isSupportedPlatform = false;
+			this.headers = BundleHeaders.parse(new Attributes());
+		}
+
+		private boolean isUpToDate(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+		}
+	}
+
+	private final File pluginRoot;
+	private final List<SwtPlatform> supported;
+	private final String supportedKey;
+	private final File cacheFile;
+	private final int parallelism;
+	private final boolean leadingEntries;
+	/** Platform filters are shared by many plugins, so we only evaluate each one once. */
+	private final Map<String, Boolean> filterResults = new ConcurrentHashMap<>();
+	/** True if the cache on disk needs to be rewritten, regardless of whether any plugins changed. */
+	private boolean stale;
+
+	/** Reads the manifests of changed plugins in parallel, on at most {@link #DEFAULT_PARALLELISM} threads. */
+	PluginCatalogCache(File pluginRoot, List<SwtPlatform> supported) {
+		this(pluginRoot, supported, DEFAULT_PARALLELISM, true);
+	}
+
+	/**
+	 * @param parallelism		the maximum number of threads which read manifests, 1 reads them all on the calling thread
+	 * @param leadingEntries	true to look for the manifest at the start of each jar before reading its central directory
+	 */
+	PluginCatalogCache(File pluginRoot, List<SwtPlatform> supported, int parallelism, boolean leadingEntries) {
+		Preconditions.checkArgument(parallelism >= 1, "parallelism must be at least 1, was %s", parallelism);
+		this.pluginRoot = Objects.requireNonNull(pluginRoot);
+		this.supported = Objects.requireNonNull(supported);
+		this.parallelism = parallelism;
+		this.leadingEntries = leadingEntries;
+		this.supportedKey = supported.stream().map(SwtPlatform::toString).sorted().collect(Collectors.joining(","));
+		this.cacheFile = new File(GoomphCacheLocations.pluginCatalog(), FileMisc.shortHash(pluginRoot.getAbsolutePath() + "\n" + supportedKey) + ".bin");
+	}
+
+	/** Returns the plugins among the given files, reusing the cached entries for any that haven't changed. */
+	List<Entry> entries(List<File> files) throws IOException {
+		Map<String, Entry> cached = read();
+		boolean dirty = stale;
+		List<Entry> entries = new ArrayList<>(files.size());
+		List<Changed> changed = new ArrayList<>();
+		for (File file : files) {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			boolean isJar;
+			if (attributes.isRegularFile() && file.getName().endsWith(".jar")) {
+				// look for plugin.jar
+				isJar = true;
+			} else if (attributes.isDirectory()) {
+				// look for folder-style plugins (especially org.eclipse.core.runtime.compatibility.registry)
+				isJar = false;
+				try {
+					attributes = Files.readAttributes(new File(file, MANIFEST_PATH).toPath(), BasicFileAttributes.class);
+				} catch (NoSuchFileException e) {
+					continue;
+				}
+			} else {
+				continue;
+			}
+			Entry entry = cached.remove(file.getName());
+			if (entry == null || !entry.isUpToDate(attributes)) {
+				changed.add(new Changed(file, isJar, attributes, entries.size()));
+				dirty = true;
+			}
+			entries.add(entry);
+		}
+		parse(changed, entries);
+		// anything left over has been removed
+		dirty |= !cached.isEmpty();
+		if (dirty) {
+			write(entries);
+		}
+		// jars without a manifest aren't plugins
+		entries.removeIf(entry -> !entry.isPlugin);
+		return entries;
+	}
+
+	/** A plugin which needs to have its manifest read, and where its entry goes. */
+	private static class Changed {
+		final File plugin;
+		final boolean isJar;
+		final BasicFileAttributes attributes;
+		final int index;
+
+		Changed(File plugin, boolean isJar, BasicFileAttributes attributes, int index) {
+			this.plugin = plugin;
+			this.isJar = isJar;
+			this.attributes = attributes;
+			this.index = index;
+		}
+	}
+
+	/** Below this many changed plugins, it's faster to read them on the calling thread. */
+	private static final int PARALLEL_THRESHOLD = 16;
+
+	/** Reads the manifests of the changed plugins into their slots in `entries`, in parallel if there are enough of them. */
+	private void parse(List<Changed> changed, List<Entry> entries) throws IOException {
+		if (parallelism <= 1 || changed.size() < PARALLEL_THRESHOLD) {
+			for (Changed plugin : changed) {
+				entries.set(plugin.index, parse(plugin));
+			}
+			return;
+		}
+		// each task writes to its own slot, so the results don't need any synchronization
+		Entry[] parsed = new Entry[changed.size()];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, parsed.length).parallel().forEach(i -> {
+				try {
+					parsed[i] = parse(changed.get(i));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading manifests in " + pluginRoot);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			} else {
+				throw Errors.asRuntime(e.getCause());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		for (int i = 0; i < parsed.length; ++i) {
+			entries.set(changed.get(i).index, parsed[i]);
+		}
+	}
+
+	/** Reads the manifest of the given plugin, returning {@link Entry#notAPlugin} if it doesn't have one. */
+	private Entry parse(Changed changed) throws IOException {
+		Manifest manifest;
+		if (!changed.isJar) {
+			try (FileInputStream input = new FileInputStream(new File(changed.plugin, MANIFEST_PATH))) {
+				manifest = new Manifest(input);
+			}
+		} else if (leadingEntries) {
+			manifest = JarManifestReader.read(changed.plugin);
+		} else {
+			manifest = JarManifestReader.readCentralDirectory(changed.plugin);
+		}
+		if (manifest == null) {
+			return Entry.notAPlugin(changed.plugin.getName(), changed.attributes.size(), changed.attributes.lastModifiedTime().toMillis());
+		}
+		// parse out the name (looking out for the ";singleton=true" names
+		String name = manifest.getMainAttributes().getValue(BUNDLE_NAME);
+		int splitIdx = name.indexOf(';');
+		if (splitIdx > 0) {
+			name = name.substring(0, splitIdx);
+		}
+		String version = manifest.getMainAttributes().getValue(BUNDLE_VERSION);
+		String platformFilter = manifest.getMainAttributes().getValue(ECLIPSE_PLATFORM_FILTER);
+		return new Entry(changed.plugin.getName(), changed.attributes.size(), changed.attributes.lastModifiedTime().toMillis(),
+				name, version == null ? "0.0.0" : version, platformFilter, isSupportedPlatform(platformFilter),
+				BundleHeaders.parse(manifest.getMainAttributes()));
+	}
+
+	/** Returns true if the given filter (if any) matches one of the supported platforms. */
+	private boolean isSupportedPlatform(@Nullable String platformFilter) {
+		if (platformFilter == null) {
+			return true;
+		}
+		return filterResults.computeIfAbsent(platformFilter, raw -> {
+			Filter filter = new Filter(raw.replace(" ", ""));
+			return supported.stream().anyMatch(Errors.rethrow().wrapPredicate(platform -> filter.matchMap(platform.platformProperties())));
+		});
+	}
+
+	/** Reads the cache, returning an empty map if it is missing, corrupt, or from an older version of goomph. */
+	private Map<String, Entry> read() {
+		Map<String, Entry> cached = new LinkedHashMap<>();
+		if (!cacheFile.isFile()) {
+			stale = true;
+			return cached;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (input.readInt() != FORMAT || !input.readUTF().equals(pluginRoot.getAbsolutePath())) {
+				stale = true;
+				return cached;
+			}
+			// if the supported platforms have changed, we still trust the manifests, but we recompute the filters
+			boolean sameSupported = input.readUTF().equals(supportedKey);
+			int count = input.readInt();
+			for (int i = 0; i < count; ++i) {
+				String fileName = input.readUTF();
+				long size = input.readLong();
+				long lastModified = input.readLong();
+				if (!input.readBoolean()) {
+					cached.put(fileName, Entry.notAPlugin(fileName, size, lastModified));
+					continue;
+				}
+				String name = input.readUTF();
+				String version = input.readUTF();
+				String platformFilter = input.readBoolean() ? input.readUTF() : null;
+				boolean isSupportedPlatform = input.readBoolean();
+				BundleHeaders headers = BundleHeaders.read(input);
+				if (!sameSupported) {
+					isSupportedPlatform = isSupportedPlatform(platformFilter);
+				}
+				cached.put(fileName, new Entry(fileName, size, lastModified, name, version, platformFilter, isSupportedPlatform, headers));
+			}
+			// make sure that the recomputed filters get written
+			stale = !sameSupported;
+			return cached;
+		} catch (IOException e) {
+			stale = true;
+			cached.clear();
+			return cached;
+		}
+	}
+
+	/** Writes the cache to a temp file, then atomically moves it into place. */
+	private void write(List<Entry> entries) throws IOException {
+		FileMisc.mkdirs(cacheFile.getParentFile());
+		File temp = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+		try {
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(FORMAT);
+				output.writeUTF(pluginRoot.getAbsolutePath());
+				output.writeUTF(supportedKey);
+				output.writeInt(entries.size());
+				for (Entry entry : entries) {
+					output.writeUTF(entry.fileName);
+					output.writeLong(entry.size);
+					output.writeLong(entry.lastModified);
+					output.writeBoolean(entry.isPlugin);
+					if (!entry.isPlugin) {
+						continue;
+					}
+					output.writeUTF(entry.name);
+					output.writeUTF(entry.version);
+					output.writeBoolean(entry.platformFilter != null);
+					if (entry.platformFilter != null) {
+						output.writeUTF(entry.platformFilter);
+					}
+					output.writeBoolean(entry.isSupportedPlatform);
+					entry.headers.write(output);
+				}
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
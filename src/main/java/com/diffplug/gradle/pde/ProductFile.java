@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.osgi.framework.Version;
+
+/**
+ * A `.product` file, read (and optionally rewritten) in a single pass
+ * with a streaming XML parser.
+ *
+ * ```xml
+ * <product id="..." version="1.0.0" useFeatures="false" includeLaunchers="true">
+ *    <launcherArgs>
+ *       <programArgs>-consoleLog</programArgs>
+ *       <vmArgsMac>-XstartOnFirstThread</vmArgsMac>
+ *    </launcherArgs>
+ *    <plugins>
+ *       <plugin id="org.eclipse.core.runtime"/>
+ *       <plugin id="org.eclipse.swt.win32.win32.x86_64" fragment="true"/>
+ *    </plugins>
+ *    <features>
+ *       <feature id="org.eclipse.platform"/>
+ *    </features>
+ *    <configurations>
+ *       <plugin id="org.eclipse.core.runtime" autoStart="true" startLevel="0" />
+ *       <property name="osgi.instance.area.default" value="@user.home/workspace" />
+ *    </configurations>
+ * </product>
+ * ```
+ */
+class ProductFile {
+	private static final String PRODUCT = "product";
+	private static final String PLUGINS = "plugins";
+	private static final String PLUGIN = "plugin";
+	private static final String FEATURES = "features";
+	private static final String FEATURE = "feature";
+	private static final String CONFIGURATIONS = "configurations";
+	private static final String PROPERTY = "property";
+	private static final String LAUNCHER_ARGS = "launcherArgs";
+	private static final String ID = "id";
+	private static final String VERSION = "version";
+
+	private final Map<String, String> productAttributes = new LinkedHashMap<>();
+	private final List<String> plugins = new ArrayList<>();
+	private final List<String> features = new ArrayList<>();
+	private final Map<String, Map<String, String>> pluginConfigurations = new LinkedHashMap<>();
+	private final Map<String, String> configurationProperties = new LinkedHashMap<>();
+	private final Map<String, String> launcherArgs = new LinkedHashMap<>();
+
+	private ProductFile() {}
+
+	/** The attributes of the `<product>` element, e.g. `id`, `version`, `useFeatures`, `includeLaunchers`. */
+	Map<String, String> productAttributes() {
+		return Collections.unmodifiableMap(productAttributes);
+	}
+
+	/** The ids of the `<plugins><plugin>` elements, in order. */
+	List<String> plugins() {
+		return Collections.unmodifiableList(plugins);
+	}
+
+	/** True if the product's content is defined by its features, either `useFeatures="true"` or `type="features"`/`type="mixed"`. */
+	boolean isFeatureBased() {
+		String type = productAttributes.get("type");
+		if (type != null) {
+			return type.equals("features") || type.equals("mixed");
+		} else {
+			return "true".equals(productAttributes.get("useFeatures"));
+		}
+	}
+
+	/** The ids of the `<features><feature>` elements, in order. */
+	List<String> features() {
+		return Collections.unmodifiableList(features);
+	}
+
+	/** The attributes of each `<configurations><plugin>`, keyed by plugin id. */
+	Map<String, Map<String, String>> pluginConfigurations() {
+		return Collections.unmodifiableMap(pluginConfigurations);
+	}
+
+	/** The `<configurations><property>` elements, from name to value. */
+	Map<String, String> configurationProperties() {
+		return Collections.unmodifiableMap(configurationProperties);
+	}
+
+	/** The content of each child of `<launcherArgs>`, e.g. `programArgs` or `vmArgsMac`. */
+	Map<String, String> launcherArgs() {
+		return Collections.unmodifiableMap(launcherArgs);
+	}
+
+	/** Parses the given product file. */
+	static ProductFile parse(File productFile) throws IOException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(productFile))) {
+			return process(INPUT_FACTORY.createXMLStreamReader(input), null, null);
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to parse " + productFile, e);
+		}
+	}
+
+	/**
+	 * Copies the given product file to `output` while parsing it.  The version of
+	 * the product is set to `version`, plugins for unsupported platforms are removed,
+	 * and every other plugin gets one entry for each version in the catalog.
+	 */
+	static ProductFile transform(File productFile, File output, PluginCatalog catalog, String version) throws IOException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(productFile));
+				OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output));
+				Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+			XMLStreamWriter xmlWriter = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+			ProductFile result = process(INPUT_FACTORY.createXMLStreamReader(input), new Output(xmlWriter), new Transform(catalog, version));
+			xmlWriter.flush();
+			return result;
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to transform " + productFile, e);
+		}
+	}
+
+	/** Reads only as far as the `<product>` element, so that a truncated file is fine. */
+	static Map<String, String> parseProductAttributes(Reader reader) throws IOException {
+		try {
+			XMLStreamReader xmlReader = INPUT_FACTORY.createXMLStreamReader(reader);
+			while (xmlReader.hasNext()) {
+				if (xmlReader.next() == XMLStreamConstants.START_ELEMENT) {
+					return attributes(xmlReader);
+				}
+			}
+			return Collections.emptyMap();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	static {
+		// a product file has no need for a DTD, and we certainly don't want to resolve one
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/** Walks the document, building the model and writing to `output` (if any) as it goes. */
+	private static ProductFile process(XMLStreamReader reader, @Nullable Output output, @Nullable Transform transform) throws XMLStreamException {
+		ProductFile model = new ProductFile();
+		Deque<String> path = new ArrayDeque<>();
+		StringBuilder launcherArg = null;
+		if (output != null) {
+			output.startDocument(reader.getVersion());
+		}
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				String name = reader.getLocalName();
+				String parent = path.peek();
+				Map<String, String> attributes = attributes(reader);
+				if (parent == null && name.equals(PRODUCT)) {
+					model.productAttributes.putAll(attributes);
+					if (transform != null) {
+						attributes.put(VERSION, transform.version);
+					}
+				} else if (PLUGINS.equals(parent) && name.equals(PLUGIN)) {
+					String id = Objects.requireNonNull(attributes.get(ID), "<plugin> without an id");
+					model.plugins.add(id);
+					if (output != null && transform != null) {
+						// <plugin> has no children, so we consume through its end and write its replacements
+						skipToEnd(reader);
+						transform.writePlugins(output, attributes);
+						break;
+					}
+				} else if (FEATURES.equals(parent) && name.equals(FEATURE)) {
+					model.features.add(Objects.requireNonNull(attributes.get(ID), "<feature> without an id"));
+				} else if (CONFIGURATIONS.equals(parent) && name.equals(PLUGIN)) {
+					model.pluginConfigurations.put(attributes.get(ID), attributes);
+				} else if (CONFIGURATIONS.equals(parent) && name.equals(PROPERTY)) {
+					model.configurationProperties.put(attributes.get("name"), attributes.get("value"));
+				} else if (LAUNCHER_ARGS.equals(parent)) {
+					launcherArg = new StringBuilder();
+				}
+				path.push(name);
+				if (output != null) {
+					output.startElement(name, attributes);
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				String ended = path.pop();
+				if (launcherArg != null && LAUNCHER_ARGS.equals(path.peek())) {
+					model.launcherArgs.put(ended, launcherArg.toString().trim());
+					launcherArg = null;
+				}
+				if (output != null) {
+					output.endElement();
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.CDATA:
+				if (launcherArg != null) {
+					launcherArg.append(reader.getText());
+				}
+				if (output != null && !path.isEmpty()) {
+					output.characters(reader.getText(), reader.isWhiteSpace(), reader.getEventType() == XMLStreamConstants.CDATA);
+				}
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				if (output != null) {
+					output.processingInstruction(reader.getPITarget(), reader.getPIData(), path.isEmpty());
+				}
+				break;
+			case XMLStreamConstants.COMMENT:
+				if (output != null) {
+					output.comment(reader.getText(), path.isEmpty());
+				}
+				break;
+			default:
+				// DTDs, entity references, etc. have no place in a product file
+				break;
+			}
+		}
+		if (output != null) {
+			output.endDocument();
+		}
+		return model;
+	}
+
+	/** Consumes events through the end of the element that was just started. */
+	private static void skipToEnd(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int eventType = reader.next();
+			if (eventType == XMLStreamConstants.START_ELEMENT) {
+				++depth;
+			} else if (eventType == XMLStreamConstants.END_ELEMENT) {
+				--depth;
+			}
+		}
+	}
+
+	/** The attributes of the current element, in document order. */
+	private static Map<String, String> attributes(XMLStreamReader reader) {
+		Map<String, String> attributes = new LinkedHashMap<>();
+		for (int i = 0; i < reader.getAttributeCount(); ++i) {
+			attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		return attributes;
+	}
+
+	/**
+	 * Writes the transformed document.  Start tags and whitespace are held back until
+	 * we know what comes next, so that empty elements stay `<empty/>`, and elements
+	 * which are removed take their indentation with them.
+	 */
+	private static class Output {
+		final XMLStreamWriter writer;
+		String pendingName;
+		Map<String, String> pendingAttributes;
+		final StringBuilder pendingWhitespace = new StringBuilder();
+
+		Output(XMLStreamWriter writer) {
+			this.writer = Objects.requireNonNull(writer);
+		}
+
+		void startDocument(@Nullable String version) throws XMLStreamException {
+			writer.writeStartDocument(StandardCharsets.UTF_8.name(), version == null ? "1.0" : version);
+			writer.writeCharacters("\n");
+		}
+
+		void startElement(String name, Map<String, String> attributes) throws XMLStreamException {
+			flush();
+			pendingName = name;
+			pendingAttributes = attributes;
+		}
+
+		void emptyElement(String name, Map<String, String> attributes) throws XMLStreamException {
+			flush();
+			writer.writeEmptyElement(name);
+			writeAttributes(attributes);
+		}
+
+		void endElement() throws XMLStreamException {
+			if (pendingName != null) {
+				writer.writeEmptyElement(pendingName);
+				writeAttributes(pendingAttributes);
+				pendingName = null;
+			} else {
+				flush();
+				writer.writeEndElement();
+			}
+		}
+
+		void characters(String text, boolean isWhitespace, boolean isCData) throws XMLStreamException {
+			flushStart();
+			if (isWhitespace && !isCData) {
+				pendingWhitespace.append(text);
+			} else {
+				flush();
+				if (isCData) {
+					writer.writeCData(text);
+				} else {
+					writer.writeCharacters(text);
+				}
+			}
+		}
+
+		/** Removes and returns the whitespace since the last thing that was written. */
+		String takeWhitespace() {
+			String whitespace = pendingWhitespace.toString();
+			pendingWhitespace.setLength(0);
+			return whitespace;
+		}
+
+		void processingInstruction(String target, String data, boolean isProlog) throws XMLStreamException {
+			flush();
+			writer.writeProcessingInstruction(target, data);
+			if (isProlog) {
+				writer.writeCharacters("\n");
+			}
+		}
+
+		void comment(String text, boolean isProlog) throws XMLStreamException {
+			flush();
+			writer.writeComment(text);
+			if (isProlog) {
+				writer.writeCharacters("\n");
+			}
+		}
+
+		void endDocument() throws XMLStreamException {
+			flush();
+			writer.writeEndDocument();
+			writer.writeCharacters("\n");
+		}
+
+		private void flush() throws XMLStreamException {
+			flushStart();
+			if (pendingWhitespace.length() > 0) {
+				writer.writeCharacters(takeWhitespace());
+			}
+		}
+
+		private void flushStart() throws XMLStreamException {
+			if (pendingName != null) {
+				writer.writeStartElement(pendingName);
+				writeAttributes(pendingAttributes);
+				pendingName = null;
+			}
+		}
+
+		private void writeAttributes(Map<String, String> attributes) throws XMLStreamException {
+			for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+				writer.writeAttribute(attribute.getKey(), attribute.getValue());
+			}
+		}
+	}
+
+	/** Rewrites the versions of the product and its plugins. */
+	private static class Transform {
+		final PluginCatalog catalog;
+		final String version;
+
+		Transform(PluginCatalog catalog, String version) {
+			this.catalog = Objects.requireNonNull(catalog);
+			this.version = Objects.requireNonNull(version);
+		}
+
+		/** Writes one `<plugin>` for each version of the plugin in the catalog, or none if it's for an unsupported platform. */
+		void writePlugins(Output output, Map<String, String> attributes) throws XMLStreamException {
+			String id = attributes.get(ID);
+			String indent = output.takeWhitespace();
+			if (attributes.containsKey(VERSION)) {
+				System.err.println("Ignoring version in <plugin id=\"" + id + "\" version=\"" + attributes.get(VERSION) + "\">, Goomph sets it automatically.");
+			}
+			if (!catalog.isSupportedPlatform(id)) {
+				// ignore plugins for unsupported platforms
+				return;
+			}
+			Set<Version> versions = catalog.getVersionsFor(id);
+			for (Version pluginVersion : versions) {
+				// id, then version, then everything else
+				Map<String, String> versioned = new LinkedHashMap<>();
+				versioned.put(ID, id);
+				versioned.put(VERSION, pluginVersion.toString());
+				attributes.forEach(versioned::putIfAbsent);
+				output.characters(indent, true, false);
+				output.emptyElement(PLUGIN, versioned);
+			}
+		}
+	}
+}
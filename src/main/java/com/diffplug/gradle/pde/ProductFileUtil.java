@@ -16,99 +16,41 @@
 package com.diffplug.gradle.pde;
 
 
-import com.diffplug.common.base.StringPrinter;
-import com.diffplug.gradle.FileMisc;
+import com.diffplug.common.base.Errors;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.StringReader;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.osgi.framework.Version;
 
+/** Reads and transforms `.product` files, see {@link ProductFile}. */
 public class ProductFileUtil {
-	private static final String PLUGIN_PREFIX = "<plugin id=\"";
-	private static final String PLUGIN_MIDDLE = "\"";
-	private static final String PLUGIN_SUFFIX = "/>";
-	private static final String GROUP = "(.*)";
-	private static final String NO_QUOTE_GROUP = "([^\"]*)";
-
-	private static final Pattern PLUGIN_REGEX = Pattern.compile(GROUP + PLUGIN_PREFIX + NO_QUOTE_GROUP + PLUGIN_MIDDLE + GROUP + PLUGIN_SUFFIX);
-
-	private static final Pattern PRODUCT_VERSION_REGEX = Pattern.compile("<product (?:.*) version=\"([^\"]*)\"(?:.*)>");
-	private static final Pattern INCLUDE_LAUNCHER_REGEX = Pattern.compile("<product (?:.*) includeLaunchers=\"([^\"]*)\"(?:.*)>");
-	private static final String VERSION_EQ = "version=";
-
-	static void transformProductFile(StringPrinter printer, String line, PluginCatalog catalog, String version) {
-		// if we found the product tag, replace the version with our version
-		Matcher productMatcher = PRODUCT_VERSION_REGEX.matcher(line);
-		if (productMatcher.matches()) {
-			int start = productMatcher.start(1);
-			int end = productMatcher.end(1);
-			printer.println(line.substring(0, start) + version + line.substring(end));
-			return;
-		}
-
-		// if it isn't a plugin line, pass it through unscathed
-		if (!line.contains("plugin") || line.contains("plugins")) {
-			printer.println(line);
-			return;
-		}
-		// if it's a plugin line, and it specifies a version, wipe out the version
-		if (line.contains(VERSION_EQ)) {
-			System.err.println("Ignoring version in " + line + ", Goomph sets it automatically.");
-			int versionStart = line.indexOf(VERSION_EQ);
-			int versionEnd = line.indexOf('"', versionStart + VERSION_EQ.length() + 1);
-			line = line.substring(0, versionStart) + line.substring(versionEnd + 1);
-		}
-
-		Matcher pluginMatcher = PLUGIN_REGEX.matcher(line);
-		if (pluginMatcher.matches()) {
-			String pluginName = pluginMatcher.group(2);
-			if (!catalog.isSupportedPlatform(pluginName)) {
-				// ignore plugins for unsupported platforms
-				return;
-			} else {
-				// set versions for all the rest
-				for (Version pluginVersion : catalog.getVersionsFor(pluginName)) {
-					printer.println(pluginMatcher.group(1) + PLUGIN_PREFIX + pluginName + PLUGIN_MIDDLE + " version=\"" + pluginVersion + "\"" + pluginMatcher.group(3) + PLUGIN_SUFFIX);
-				}
-			}
-		} else {
-			System.err.println("Unexpected line " + line);
-		}
+	/**
+	 * Writes a copy of the given product file to `output` with the version of the product set to `version`,
+	 * plugins for unsupported platforms removed, and an explicit version for every other plugin.
+	 */
+	static ProductFile transformProductFile(File productFile, File output, PluginCatalog catalog, String version) throws IOException {
+		return ProductFile.transform(productFile, output, catalog, version);
 	}
 
-	static Optional<String> parsePlugin(String line) {
-		// if it isn't a plugin line, pass it through unscathed
-		if (!line.contains("plugin") || line.contains("plugins")) {
-			return Optional.empty();
-		}
-		Matcher pluginMatcher = PLUGIN_REGEX.matcher(line);
-		if (pluginMatcher.matches()) {
-			String pluginName = pluginMatcher.group(2);
-			return Optional.of(pluginName);
-		} else {
-			return Optional.empty();
-		}
+	/** Returns the properties of the product element which are relevant to {@link PdeBuildProperties}. */
+	static Map<String, String> extractProperties(ProductFile productFile) {
+		return extractProperties(productFile.productAttributes());
 	}
 
+	/** Returns the properties of the product element which are relevant to {@link PdeBuildProperties}. */
 	static Map<String, String> extractProperties(String[] lines) {
+		return extractProperties(Errors.rethrow().get(() -> ProductFile.parseProductAttributes(new StringReader(String.join("\n", lines)))));
+	}
+
+	private static Map<String, String> extractProperties(Map<String, String> productAttributes) {
 		Map<String, String> props = new LinkedHashMap<>();
-		for (String line : lines) {
-			Matcher includeLauncherMatcher = INCLUDE_LAUNCHER_REGEX.matcher(line);
-			if (includeLauncherMatcher.matches()) {
-				props.put("includeLaunchers", includeLauncherMatcher.group(1));
-			}
+		String includeLaunchers = productAttributes.get(INCLUDE_LAUNCHERS);
+		if (includeLaunchers != null) {
+			props.put(INCLUDE_LAUNCHERS, includeLaunchers);
 		}
 		return props;
 	}
 
-	static String[] readLines(File productFile) throws IOException {
-		String inputStr = new String(Files.readAllBytes(productFile.toPath()), StandardCharsets.UTF_8);
-		return FileMisc.toUnixNewline(inputStr).split("\n");
-	}
+	private static final String INCLUDE_LAUNCHERS = "includeLaunchers";
 }
@@ -72,4 +72,10 @@ public class FileMiscTest {
 		Assert.assertEquals(false, b.exists());
 		Assert.assertEquals(true, folder.getRoot().exists());
 	}
+
+	@Test
+	public void testHash() {
+		Assert.assertEquals("00ff10", FileMisc.toHex(new byte[]{0, (byte) 0xff, 0x10}));
+		Assert.assertEquals("ba7816bf8f01cfea", FileMisc.shortHash("abc"));
+	}
 }
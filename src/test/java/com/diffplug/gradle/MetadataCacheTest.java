@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetadataCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String url;
+	private volatile String content = "v1";
+	private volatile boolean failing = false;
+	/** The If-None-Match header of each request, or "" if there wasn't one. */
+	private final List<String> ifNoneMatch = new ArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/artifacts.jar", exchange -> {
+			String etag = "\"" + content + "\"";
+			String requested = exchange.getRequestHeaders().getFirst("If-None-Match");
+			synchronized (ifNoneMatch) {
+				ifNoneMatch.add(requested == null ? "" : requested);
+			}
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (failing) {
+				exchange.sendResponseHeaders(500, -1);
+			} else if (etag.equals(requested)) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(200, bytes.length);
+				try (OutputStream output = exchange.getResponseBody()) {
+					output.write(bytes);
+				}
+			}
+			exchange.close();
+		});
+		server.start();
+		url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/artifacts.jar";
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+		MetadataCache.offline = false;
+		MetadataCache.revalidateAfter = Duration.ofDays(30);
+		MetadataCache.retryAfterFailure = Duration.ofHours(1);
+	}
+
+	@Test
+	public void revalidates() throws IOException {
+		File dst = new File(folder.getRoot(), "artifacts.jar");
+		MetadataCache.get(url, dst);
+		Assert.assertEquals("v1", read(dst));
+
+		// fresh, so there's no request at all
+		MetadataCache.get(url, dst);
+		Assert.assertEquals(1, ifNoneMatch.size());
+
+		// stale but unchanged, so a conditional request which doesn't download anything
+		MetadataCache.revalidateAfter = Duration.ZERO;
+		MetadataCache.get(url, dst);
+		Assert.assertEquals("\"v1\"", ifNoneMatch.get(1));
+		Assert.assertEquals("v1", read(dst));
+
+		// stale and changed, so it gets downloaded again
+		content = "v2";
+		MetadataCache.get(url, dst);
+		Assert.assertEquals("\"v1\"", ifNoneMatch.get(2));
+		Assert.assertEquals("v2", read(dst));
+	}
+
+	@Test
+	public void offline() throws IOException {
+		File dst = new File(folder.getRoot(), "artifacts.jar");
+		MetadataCache.offline = true;
+		try {
+			MetadataCache.get(url, dst);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Gradle is running with --offline, but goomph needs " + url));
+		}
+		Assert.assertFalse(dst.exists());
+
+		// once it's cached, offline never touches the network, even when it's stale
+		MetadataCache.offline = false;
+		MetadataCache.get(url, dst);
+		MetadataCache.offline = true;
+		MetadataCache.revalidateAfter = Duration.ZERO;
+		server.stop(0);
+		Assert.assertEquals("v1", read(MetadataCache.get(url, dst)));
+		Assert.assertEquals(1, ifNoneMatch.size());
+	}
+
+	@Test
+	public void unreachable() throws IOException {
+		File dst = new File(folder.getRoot(), "artifacts.jar");
+		MetadataCache.get(url, dst);
+		server.stop(0);
+		// a stale copy is still better than nothing
+		MetadataCache.revalidateAfter = Duration.ZERO;
+		Assert.assertEquals("v1", read(MetadataCache.get(url, dst)));
+	}
+
+	@Test
+	public void failureBacksOff() throws IOException {
+		File dst = new File(folder.getRoot(), "artifacts.jar");
+		MetadataCache.get(url, dst);
+		MetadataCache.revalidateAfter = Duration.ZERO;
+		failing = true;
+		Assert.assertEquals("v1", read(MetadataCache.get(url, dst)));
+		Assert.assertEquals(2, ifNoneMatch.size());
+
+		// the failure was recorded, so the next build doesn't try again right away
+		Assert.assertEquals("v1", read(MetadataCache.get(url, dst)));
+		Assert.assertEquals(2, ifNoneMatch.size());
+
+		// until the back-off has passed
+		failing = false;
+		content = "v2";
+		MetadataCache.retryAfterFailure = Duration.ZERO;
+		Assert.assertEquals("v2", read(MetadataCache.get(url, dst)));
+		Assert.assertEquals(3, ifNoneMatch.size());
+	}
+
+	@Test
+	public void adoptsLegacyDownload() throws IOException {
+		File dst = new File(folder.getRoot(), "artifacts.jar");
+		Files.write(dst.toPath(), "legacy".getBytes(StandardCharsets.UTF_8));
+		MetadataCache.offline = true;
+		Assert.assertEquals("legacy", read(MetadataCache.get(url, dst)));
+		Assert.assertTrue(MetadataCache.metadataFile(dst).isFile());
+	}
+
+	@Test
+	public void initFromProject() {
+		// the settings of a previous build in the same daemon don't leak into this one
+		MetadataCache.revalidateAfter = Duration.ZERO;
+		MetadataCache.retryAfterFailure = Duration.ZERO;
+		Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+		MetadataCache.initFromProject(project);
+		Assert.assertEquals(Duration.ofDays(30), MetadataCache.revalidateAfter);
+		Assert.assertEquals(Duration.ofHours(1), MetadataCache.retryAfterFailure);
+
+		project.getExtensions().getExtraProperties().set("goomph_metadataRevalidationDays", "7");
+		MetadataCache.initFromProject(project);
+		Assert.assertEquals(Duration.ofDays(7), MetadataCache.revalidateAfter);
+
+		project.getExtensions().getExtraProperties().set("goomph_metadataRevalidationDays", "-1");
+		MetadataCache.initFromProject(project);
+		Assert.assertNull(MetadataCache.revalidateAfter);
+	}
+
+	@Test
+	public void offlineAllowsLocalUrls() throws IOException {
+		File dst = new File(folder.getRoot(), "bootstrap");
+		MetadataCache.offline = true;
+		MetadataCache.checkOnline("the bootstrap", folder.getRoot().toURI().toString(), dst);
+		try {
+			MetadataCache.checkOnline("the bootstrap", url, dst);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Gradle is running with --offline, but goomph needs the bootstrap"));
+		}
+
+		// and a local url is copied without any network
+		File source = folder.newFile("source.zip");
+		Files.write(source.toPath(), "local".getBytes(StandardCharsets.UTF_8));
+		FileMisc.download(source.toURI().toString(), dst);
+		Assert.assertEquals("local", read(dst));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
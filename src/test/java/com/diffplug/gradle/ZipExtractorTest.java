@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipExtractorTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void unzip() throws IOException {
+		byte[] big = new byte[200_000];
+		Arrays.fill(big, (byte) 'x');
+		File zip = zip("a.txt", "a".getBytes(StandardCharsets.UTF_8),
+				"dir/", null,
+				"dir/big.bin", big,
+				"dir/sub/empty.txt", new byte[0],
+				"implicit/parent/c.txt", "c".getBytes(StandardCharsets.UTF_8));
+		File dest = folder.newFolder("dest");
+		ZipExtractor.unzip(zip, dest, 3);
+		Assert.assertEquals("a", read(new File(dest, "a.txt")));
+		Assert.assertArrayEquals(big, Files.readAllBytes(new File(dest, "dir/big.bin").toPath()));
+		Assert.assertEquals(0, new File(dest, "dir/sub/empty.txt").length());
+		Assert.assertEquals("c", read(new File(dest, "implicit/parent/c.txt")));
+	}
+
+	@Test
+	public void stored() throws IOException {
+		byte[] content = new byte[100_000];
+		new Random(0).nextBytes(content);
+		File zip = folder.newFile();
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+			output.putNextEntry(new ZipEntry("deflated.txt"));
+			output.write("deflated".getBytes(StandardCharsets.UTF_8));
+			ZipEntry stored = new ZipEntry("lib/stored.jar");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(content.length);
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			stored.setCrc(crc.getValue());
+			// an extra field makes the data start somewhere other than right after the name
+			stored.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 0, 0});
+			output.putNextEntry(stored);
+			output.write(content);
+			ZipEntry empty = new ZipEntry("empty.txt");
+			empty.setMethod(ZipEntry.STORED);
+			empty.setSize(0);
+			empty.setCrc(0);
+			output.putNextEntry(empty);
+		}
+		File dest = folder.newFolder("dest");
+		ZipMisc.unzip(zip, dest);
+		Assert.assertArrayEquals(content, Files.readAllBytes(new File(dest, "lib/stored.jar").toPath()));
+		Assert.assertEquals("deflated", read(new File(dest, "deflated.txt")));
+		Assert.assertEquals(0, new File(dest, "empty.txt").length());
+	}
+
+	@Test
+	public void partition() {
+		List<ZipEntry> entries = Arrays.asList(entry("a", 10), entry("b", 7), entry("c", 5), entry("d", 3), entry("e", 2));
+		List<List<ZipEntry>> partitions = ZipExtractor.partition(entries, 2);
+		// biggest first, each into the lightest partition
+		Assert.assertEquals(Arrays.asList("a", "d"), names(partitions.get(0)));
+		Assert.assertEquals(Arrays.asList("b", "c", "e"), names(partitions.get(1)));
+	}
+
+	@Test
+	public void permissions() throws IOException {
+		Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		File zip = zip("eclipse", "#!/bin/sh".getBytes(StandardCharsets.UTF_8),
+				"eclipse.ini", "-vmargs".getBytes(StandardCharsets.UTF_8));
+		setUnixMode(zip, "eclipse", 0100755);
+		setUnixMode(zip, "eclipse.ini", 0100644);
+		Assert.assertEquals(0755, unixMode(zip, "eclipse"));
+
+		File dest = folder.newFolder("dest");
+		ZipExtractor.unzip(zip, dest);
+		// the execute bits come from the archive, and the rest from the umask
+		Set<PosixFilePermission> created = Files.getPosixFilePermissions(folder.newFile().toPath());
+		Set<PosixFilePermission> executable = EnumSet.copyOf(created);
+		executable.addAll(FileMisc.fromOctalFileModeInt(0111));
+		executable.removeIf(permission -> permission == PosixFilePermission.GROUP_EXECUTE && !created.contains(PosixFilePermission.GROUP_READ)
+				|| permission == PosixFilePermission.OTHERS_EXECUTE && !created.contains(PosixFilePermission.OTHERS_READ));
+		Assert.assertEquals(executable, Files.getPosixFilePermissions(new File(dest, "eclipse").toPath()));
+		Assert.assertEquals(created, Files.getPosixFilePermissions(new File(dest, "eclipse.ini").toPath()));
+	}
+
+	@Test
+	public void readOnlyEntriesCanBeExtractedAgain() throws IOException {
+		Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		File zip = zip("readme.txt", "v1".getBytes(StandardCharsets.UTF_8));
+		setUnixMode(zip, "readme.txt", 0100444);
+		File dest = folder.newFolder("dest");
+		ZipExtractor.unzip(zip, dest);
+		Assert.assertTrue(Files.isWritable(new File(dest, "readme.txt").toPath()));
+
+		File updated = zip("readme.txt", "v2".getBytes(StandardCharsets.UTF_8));
+		setUnixMode(updated, "readme.txt", 0100444);
+		ZipExtractor.unzip(updated, dest);
+		Assert.assertEquals("v2", read(new File(dest, "readme.txt")));
+	}
+
+	@Test
+	public void badEntry() throws IOException {
+		File zip = zip("../escape.txt", new byte[0]);
+		File dest = folder.newFolder("dest");
+		try {
+			ZipExtractor.unzip(zip, dest);
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertEquals("Bad zip entry", e.getMessage());
+		}
+		Assert.assertFalse(new File(folder.getRoot(), "escape.txt").exists());
+	}
+
+	/** Takes name/content pairs, where a null content is a directory. */
+	private File zip(Object... namesAndContent) throws IOException {
+		File zip = folder.newFile();
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+			for (int i = 0; i < namesAndContent.length; i += 2) {
+				output.putNextEntry(new ZipEntry((String) namesAndContent[i]));
+				if (namesAndContent[i + 1] != null) {
+					output.write((byte[]) namesAndContent[i + 1]);
+				}
+				output.closeEntry();
+			}
+		}
+		return zip;
+	}
+
+	/** ZipOutputStream can't write unix modes, so we patch them into the central directory ourselves. */
+	private static void setUnixMode(File zip, String name, int mode) throws IOException {
+		byte[] bytes = Files.readAllBytes(zip.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i + 46 + nameBytes.length <= bytes.length; ++i) {
+			if (buffer.getInt(i) == 0x02014b50 && buffer.getShort(i + 28) == nameBytes.length
+					&& Arrays.equals(nameBytes, Arrays.copyOfRange(bytes, i + 46, i + 46 + nameBytes.length))) {
+				buffer.putShort(i + 4, (short) ((3 << 8) | 20));
+				buffer.putInt(i + 38, mode << 16);
+				Files.write(zip.toPath(), bytes);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No such entry " + name);
+	}
+
+	/** {@link ZipEntry} doesn't expose the external attributes, so we read the permission bits straight from the central directory. */
+	private static int unixMode(File zip, String name) throws IOException {
+		try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+			for (ZipCentralDirectory.Entry entry : ZipCentralDirectory.read(channel).entries) {
+				if (entry.name.equals(name)) {
+					return entry.unixMode();
+				}
+			}
+		}
+		throw new IllegalArgumentException("No such entry " + name);
+	}
+
+	private static ZipEntry entry(String name, long size) {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setSize(size);
+		return entry;
+	}
+
+	private static List<String> names(List<ZipEntry> entries) {
+		return entries.stream().map(ZipEntry::getName).collect(Collectors.toList());
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle;
+
+import com.diffplug.common.base.Predicates;
+import com.diffplug.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.jar.JarInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipMiscTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void modify() throws IOException {
+		File jar = folder.newFile("test.jar");
+		byte[] stored = "stored".getBytes(StandardCharsets.UTF_8);
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			output.setComment("the comment");
+			output.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			output.write("Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+			ZipEntry storedEntry = new ZipEntry("stored.txt");
+			storedEntry.setMethod(ZipEntry.STORED);
+			storedEntry.setSize(stored.length);
+			CRC32 crc = new CRC32();
+			crc.update(stored);
+			storedEntry.setCrc(crc.getValue());
+			output.putNextEntry(storedEntry);
+			output.write(stored);
+			output.putNextEntry(new ZipEntry("com/diffplug/Deflated.class"));
+			output.write(new byte[10_000]);
+			output.putNextEntry(new ZipEntry("omit.txt"));
+			output.write(stored);
+		}
+		long deflatedSize = compressedSize(jar, "com/diffplug/Deflated.class");
+
+		byte[] manifest = "Manifest-Version: 1.0\r\nBundle-SymbolicName: test\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		ImmutableMap<String, Function<byte[], byte[]>> toModify = ImmutableMap.of("META-INF/MANIFEST.MF", in -> manifest);
+		ZipMisc.modify(jar, toModify, name -> name.equals("omit.txt"));
+
+		Assert.assertEquals("Manifest-Version: 1.0\nBundle-SymbolicName: test\n\n", ZipMisc.read(jar, "META-INF/MANIFEST.MF"));
+		Assert.assertEquals("stored", ZipMisc.read(jar, "stored.txt"));
+		// the unmodified entry was copied without being recompressed
+		Assert.assertEquals(deflatedSize, compressedSize(jar, "com/diffplug/Deflated.class"));
+		try (ZipFile zip = new ZipFile(jar)) {
+			Assert.assertEquals("the comment", zip.getComment());
+			Assert.assertNull(zip.getEntry("omit.txt"));
+		}
+		// the local headers must agree with the central directory for streaming readers too
+		Assert.assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "stored.txt", "com/diffplug/Deflated.class"), streamedNames(jar));
+		try (JarInputStream input = new JarInputStream(new FileInputStream(jar))) {
+			Assert.assertEquals("test", input.getManifest().getMainAttributes().getValue("Bundle-SymbolicName"));
+		}
+		Assert.assertEquals(Collections.singletonList("test.jar"), Arrays.asList(folder.getRoot().list()));
+	}
+
+	@Test
+	public void modifyNothing() throws IOException {
+		File jar = folder.newFile("test.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			output.putNextEntry(new ZipEntry("a.txt"));
+			output.write("a".getBytes(StandardCharsets.UTF_8));
+		}
+		ZipMisc.modify(jar, Collections.emptyMap(), Predicates.alwaysFalse());
+		Assert.assertEquals("a", ZipMisc.read(jar, "a.txt"));
+	}
+
+	private static long compressedSize(File jar, String name) throws IOException {
+		try (ZipFile zip = new ZipFile(jar)) {
+			return zip.getEntry(name).getCompressedSize();
+		}
+	}
+
+	private static List<String> streamedNames(File jar) throws IOException {
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream input = new ZipInputStream(new FileInputStream(jar))) {
+			ZipEntry entry;
+			while ((entry = input.getNextEntry()) != null) {
+				names.add(entry.getName());
+				// reads through the data, which checks the CRC
+				while (input.read(new byte[1024]) != -1) {}
+			}
+		}
+		return names;
+	}
+}
@@ -17,16 +17,26 @@ package com.diffplug.gradle.eclipse;
 
 
 import com.diffplug.gradle.pde.EclipseRelease;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import javax.xml.parsers.ParserConfigurationException;
 import org.assertj.core.api.Assertions;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.xml.sax.SAXException;
 
 public class MavenCentralMappingTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testParsing463() throws IOException, ParserConfigurationException, SAXException {
 		try (InputStream input = MavenCentralMappingTest.class.getResourceAsStream("/artifacts-4.6.3.xml")) {
@@ -112,6 +122,48 @@ public class MavenCentralMappingTest {
 				.hasSize(833);
 	}
 
+	@Test
+	public void testBundleVersionsRoundTrip() throws IOException {
+		List<Map.Entry<String, String>> bundles;
+		try (InputStream input = MavenCentralMappingTest.class.getResourceAsStream("/artifacts-4.24.0.xml")) {
+			bundles = MavenCentralMapping.parseBundles(input);
+		}
+		File artifactsJar = folder.newFile("artifacts.jar");
+		File bundleVersions = new File(folder.getRoot(), "bundle-versions.bin");
+		Assertions.assertThat(MavenCentralMapping.readBundleVersions(bundleVersions, artifactsJar)).isNull();
+
+		MavenCentralMapping.writeBundleVersions(bundleVersions, artifactsJar, bundles);
+		List<Map.Entry<String, String>> read = MavenCentralMapping.readBundleVersions(bundleVersions, artifactsJar);
+		Assertions.assertThat(read).isEqualTo(bundles);
+
+		// a re-downloaded artifacts.jar makes the bundle versions stale
+		Assertions.assertThat(artifactsJar.setLastModified(artifactsJar.lastModified() - 10_000)).isTrue();
+		Assertions.assertThat(MavenCentralMapping.readBundleVersions(bundleVersions, artifactsJar)).isNull();
+	}
+
+	@Test
+	public void testBom() throws IOException {
+		Map<String, String> versions = new HashMap<>();
+		versions.put("org.eclipse.platform:org.eclipse.swt", "3.120.0");
+		versions.put("org.eclipse.jdt:ecj", "3.30.0");
+		File repository = folder.newFolder("bom");
+		File pom = MavenCentralMapping.writeBom(repository, EclipseRelease.official("4.24.0"), versions);
+		Assertions.assertThat(pom).isEqualTo(new File(repository, "com/diffplug/gradle/goomph/eclipse-release-bom/4.24.0/eclipse-release-bom-4.24.0.pom"));
+		String content = new String(Files.readAllBytes(pom.toPath()), StandardCharsets.UTF_8);
+		Assertions.assertThat(content)
+				.contains("<artifactId>eclipse-release-bom</artifactId>")
+				.contains("<version>4.24.0</version>")
+				.contains("<packaging>pom</packaging>")
+				.contains("<groupId>org.eclipse.jdt</groupId>\n        <artifactId>ecj</artifactId>\n        <version>3.30.0</version>")
+				.contains("<groupId>org.eclipse.platform</groupId>\n        <artifactId>org.eclipse.swt</artifactId>\n        <version>3.120.0</version>");
+		Assertions.assertThat(content.indexOf("ecj")).isLessThan(content.indexOf("org.eclipse.swt"));
+
+		// an unchanged BOM isn't rewritten
+		Assertions.assertThat(pom.setLastModified(1_000_000_000_000L)).isTrue();
+		MavenCentralMapping.writeBom(repository, EclipseRelease.official("4.24.0"), versions);
+		Assertions.assertThat(pom.lastModified()).isEqualTo(1_000_000_000_000L);
+	}
+
 	@Test
 	public void testMissingBugfixVersion() throws IOException {
 		Assertions.assertThatThrownBy(() -> {
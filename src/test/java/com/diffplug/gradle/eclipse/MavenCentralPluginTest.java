@@ -16,8 +16,15 @@
 package com.diffplug.gradle.eclipse;
 
 
+import com.diffplug.common.swt.os.SwtPlatform;
 import com.diffplug.gradle.GradleIntegrationTest;
+import com.diffplug.gradle.pde.EclipseRelease;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class MavenCentralPluginTest extends GradleIntegrationTest {
@@ -61,4 +68,83 @@ public class MavenCentralPluginTest extends GradleIntegrationTest {
 				"}");
 		gradleRunner().withArguments("jar", "--stacktrace").build();
 	}
+
+	@Test
+	public void testMultiProject() throws IOException {
+		write("settings.gradle", "include 'a', 'b'");
+		write("build.gradle",
+				"plugins {",
+				"    id 'com.diffplug.eclipse.mavencentral' apply false",
+				"}",
+				"subprojects {",
+				"    apply plugin: 'java'",
+				"    apply plugin: 'com.diffplug.eclipse.mavencentral'",
+				"    eclipseMavenCentral {",
+				"        release '4.7.0', {",
+				"            implementation 'org.eclipse.equinox.common'",
+				"        }",
+				"    }",
+				"}");
+		// before gradle 6.1, each project computes its own mapping
+		gradleRunner().withArguments("jar", "--stacktrace").build();
+		// after that, both projects use the same release, so its mapping is only computed once
+		String output = gradleRunner().withGradleVersion("7.2").withArguments("jar", "--info", "--stacktrace").build().getOutput();
+		long computed = Arrays.stream(output.split("\n")).filter(line -> line.contains("Computing the maven central mapping of eclipse 4.7.0")).count();
+		Assert.assertEquals(output, 1, computed);
+	}
+
+	@Test
+	public void testConstraintsAndSubstitutions() throws IOException {
+		write("build.gradle",
+				"plugins {",
+				"    id 'com.diffplug.eclipse.mavencentral'",
+				"}",
+				"eclipseMavenCentral {",
+				"    release '4.7.0', {",
+				"        implementation 'org.eclipse.swt'",
+				"        substituteNativesForRunningPlatform()",
+				"        constrainTransitivesToThisReleaseUsingConstraints()",
+				"    }",
+				"}",
+				"repositories {",
+				"    mavenCentral()",
+				"}",
+				"apply plugin: 'java'",
+				"dependencies {",
+				"    implementation 'org.eclipse.platform:org.eclipse.equinox.common:3.15.0'",
+				"}",
+				"task printResolved {",
+				"    doLast {",
+				"        configurations.runtimeClasspath.incoming.resolutionResult.allComponents.each {",
+				"            if (it.moduleVersion.group) println 'resolved ' + it.moduleVersion",
+				"        }",
+				"    }",
+				"}");
+		// substitutions need gradle 6.6+, and say so on older versions
+		String failure = gradleRunner().withArguments("jar", "--stacktrace").buildAndFail().getOutput();
+		Assert.assertTrue(failure, failure.contains("substituteNativesForRunningPlatform() requires Gradle 6.6 or later"));
+
+		String output = gradleRunner().withGradleVersion("7.2").withArguments("jar", "printResolved", "--stacktrace").build().getOutput();
+		List<String> resolved = Arrays.stream(output.split("\\r?\\n"))
+				.filter(line -> line.startsWith("resolved "))
+				.map(line -> line.substring("resolved ".length()))
+				.collect(Collectors.toList());
+
+		Map<String, String> release = MavenCentralMapping.groupIdArtifactIdToVersion(EclipseRelease.official("4.7.0"));
+		String swt = "org.eclipse.platform:org.eclipse.swt";
+		String natives = swt + "." + SwtPlatform.getRunning();
+		String common = "org.eclipse.platform:org.eclipse.equinox.common";
+		Assert.assertTrue(output, resolved.contains(swt + ":" + release.get(swt)));
+		// the ${osgi.platform} placeholder was substituted with the natives of this release
+		Assert.assertTrue(output, resolved.contains(natives + ":" + release.get(natives)));
+		// the strict constraint holds a newer version down to the one in this release
+		Assert.assertTrue(output, resolved.contains(common + ":" + release.get(common)));
+		for (String module : resolved) {
+			Assert.assertFalse(module, module.contains("${osgi.platform}"));
+			String groupIdArtifactId = module.substring(0, module.lastIndexOf(':'));
+			if (release.containsKey(groupIdArtifactId)) {
+				Assert.assertEquals(groupIdArtifactId + ":" + release.get(groupIdArtifactId), module);
+			}
+		}
+	}
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.eclipserunner;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EclipseIniProfileTest {
+	private static final long PLENTY_OF_RAM = 64 * 1024;
+
+	@Test
+	public void heapGrowsWithProjects() {
+		EclipseIniProfile large = EclipseIniProfile.large();
+		Assert.assertEquals(2048, large.heapMb(10, PLENTY_OF_RAM));
+		Assert.assertEquals(512 + 8 * 300, large.heapMb(300, PLENTY_OF_RAM));
+		Assert.assertEquals(8192, large.heapMb(5000, PLENTY_OF_RAM));
+	}
+
+	@Test
+	public void heapNeverExceedsHalfOfMachine() {
+		EclipseIniProfile huge = EclipseIniProfile.huge();
+		Assert.assertEquals(4096, huge.heapMb(300, 8 * 1024));
+		huge.heapMb(3000);
+		Assert.assertEquals(3000, huge.heapMb(300, 8 * 1024));
+	}
+
+	@Test
+	public void presets() {
+		Assert.assertEquals(Arrays.asList("-Xmx1024m"), EclipseIniProfile.preset("small").vmargs(0, PLENTY_OF_RAM));
+		Assert.assertEquals(Arrays.asList("-Xmx2912m", "-XX:+UseG1GC", "-XX:+UseStringDeduplication", "-Dosgi.checkConfiguration=false"),
+				EclipseIniProfile.preset("large").vmargs(300, PLENTY_OF_RAM));
+
+		EclipseIniProfile custom = EclipseIniProfile.preset("Large");
+		custom.gc("parallel");
+		custom.stringDeduplication(false);
+		custom.vmargs("-Dfoo=bar");
+		Assert.assertEquals(Arrays.asList("-Xmx2048m", "-XX:+UseParallelGC", "-Dosgi.checkConfiguration=false", "-Dfoo=bar"),
+				custom.vmargs(0, PLENTY_OF_RAM));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownPreset() {
+		EclipseIniProfile.preset("medium");
+	}
+}
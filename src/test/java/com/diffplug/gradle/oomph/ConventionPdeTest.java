@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.oomph;
+
+import com.diffplug.common.collect.ImmutableMap;
+import com.diffplug.gradle.ConfigMisc;
+import com.diffplug.gradle.FileMisc;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConventionPdeTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ConventionPde.TargetPlatformSetter setter;
+	private File workspace;
+
+	@Before
+	public void setup() throws IOException {
+		GoomphCacheLocations.override_pdeTargetPlatforms = folder.newFolder("cache");
+		setter = new ConventionPde.TargetPlatformSetter("targetplatform", new ArrayList<>(Collections.singletonList(folder.newFolder("installation"))));
+		workspace = folder.newFolder("workspace");
+	}
+
+	@After
+	public void cleanup() {
+		GoomphCacheLocations.override_pdeTargetPlatforms = null;
+	}
+
+	@Test
+	public void beforeLaunchWithoutCache() throws IOException {
+		setter.beforeLaunch(workspace);
+		Assert.assertEquals(Collections.emptyList(), FileMisc.list(workspace));
+	}
+
+	@Test
+	public void beforeLaunchRestoresState() throws IOException {
+		// what a previous run left in the cache
+		write(new File(setter.stateCache, ConventionPde.TargetPlatformSetter.PDE_STATE + "/.local_targets/target.target"), "<target/>");
+		ConfigMisc.writeProps(ImmutableMap.of("targetplatform", setter.contentHash + "|memento"),
+				mkdirs(new File(setter.stateCache, ConventionPde.TargetPlatformSetter.GOOMPH_TARGETS)));
+		write(new File(setter.stateCache, ConventionPde.TargetPlatformSetter.CACHE_COMPLETE), "");
+		// and a pref which was set by workspaceProp
+		File prefsFile = mkdirs(new File(workspace, ConventionPde.TargetPlatformSetter.PDE_PREFS));
+		ConfigMisc.writeProps(ImmutableMap.of("other", "value"), prefsFile);
+
+		setter.beforeLaunch(workspace);
+		Assert.assertEquals("<target/>", read(new File(workspace, ConventionPde.TargetPlatformSetter.PDE_STATE + "/.local_targets/target.target")));
+		Assert.assertTrue(new File(workspace, ConventionPde.TargetPlatformSetter.GOOMPH_TARGETS).isFile());
+		Map<String, String> prefs = ConfigMisc.loadProps(prefsFile);
+		Assert.assertEquals(ImmutableMap.of("other", "value", ConventionPde.TargetPlatformSetter.PDE_PREF_WORKSPACE_TARGET, "memento"), prefs);
+	}
+
+	@Test
+	public void contentHash() throws IOException {
+		File installation = folder.newFolder("hashed");
+		File plugin = write(new File(installation, "plugins/a.jar"), "a");
+		String original = ConventionPde.TargetPlatformSetter.contentHash("targetplatform", Collections.singletonList(installation));
+		Assert.assertEquals(original, ConventionPde.TargetPlatformSetter.contentHash("targetplatform", Collections.singletonList(installation)));
+		Assert.assertNotEquals(original, ConventionPde.TargetPlatformSetter.contentHash("other", Collections.singletonList(installation)));
+		write(plugin, "changed");
+		Assert.assertNotEquals(original, ConventionPde.TargetPlatformSetter.contentHash("targetplatform", Collections.singletonList(installation)));
+	}
+
+	private static File mkdirs(File file) {
+		FileMisc.mkdirs(file.getParentFile());
+		return file;
+	}
+
+	private static File write(File file, String content) throws IOException {
+		Files.write(mkdirs(file).toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
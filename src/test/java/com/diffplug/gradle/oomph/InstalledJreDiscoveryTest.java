@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.oomph;
+
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InstalledJreDiscoveryTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void executionEnvironments() {
+		Assert.assertEquals("JavaSE-1.8", InstalledJreDiscovery.executionEnvironment("1.8.0_392"));
+		Assert.assertEquals("JavaSE-11", InstalledJreDiscovery.executionEnvironment("11.0.21"));
+		Assert.assertEquals("JavaSE-17", InstalledJreDiscovery.executionEnvironment("17"));
+	}
+
+	@Test
+	public void discover() throws IOException {
+		File root = folder.newFolder("jvms");
+		fakeJdk(new File(root, "8.0.392-tem"), "1.8.0_392");
+		fakeJdk(new File(root, "17.0.2-tem"), "17.0.2");
+		fakeJdk(new File(root, "17.0.9-tem"), "17.0.9");
+		Files.createDirectories(new File(root, "not-a-jdk").toPath());
+
+		GoomphCacheLocations.override_installedJreDiscovery = folder.newFolder("cache");
+		try {
+			List<InstalledJre> jres = InstalledJreDiscovery.discover(Collections.singletonList(root));
+			Assert.assertEquals(Arrays.asList("17.0.9", "17.0.2", "1.8.0_392"), jres.stream().map(InstalledJre::getVersion).collect(Collectors.toList()));
+			Assert.assertEquals(Arrays.asList("JavaSE-17"), jres.get(0).getExecutionEnvironments());
+			Assert.assertEquals(Collections.emptyList(), jres.get(1).getExecutionEnvironments());
+			Assert.assertEquals(Arrays.asList("JavaSE-1.8"), jres.get(2).getExecutionEnvironments());
+			Assert.assertTrue(new File(GoomphCacheLocations.installedJreDiscovery(), "cache.properties").isFile());
+
+			// a second pass gets the same result from the cache
+			List<InstalledJre> cached = InstalledJreDiscovery.discover(Collections.singletonList(root));
+			Assert.assertEquals(jres.stream().map(InstalledJre::getInstalledLocation).collect(Collectors.toList()),
+					cached.stream().map(InstalledJre::getInstalledLocation).collect(Collectors.toList()));
+		} finally {
+			GoomphCacheLocations.override_installedJreDiscovery = null;
+		}
+	}
+
+	private static void fakeJdk(File home, String version) throws IOException {
+		Files.createDirectories(new File(home, "bin").toPath());
+		Files.write(new File(home, "release").toPath(), ("IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"" + version + "\"\n").getBytes(StandardCharsets.UTF_8));
+	}
+}
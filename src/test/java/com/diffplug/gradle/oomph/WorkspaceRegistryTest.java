@@ -16,9 +16,11 @@
 package com.diffplug.gradle.oomph;
 
 
+import com.diffplug.gradle.ConfigMisc;
 import com.diffplug.gradle.FileMisc;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 import org.junit.Assert;
@@ -40,60 +42,124 @@ public class WorkspaceRegistryTest {
 		File workspaceA = registry.workspaceDir("a", ideA);
 
 		// check the internals
-		String hashA = "a-" + ideA.getAbsolutePath().hashCode();
+		String hashA = "a-" + FileMisc.shortHash(ideA.getAbsolutePath());
 		assertFolderContents(registryFolder,
 				hashA + "/",
-				hashA + "-owner");
+				hashA + WorkspaceRegistry.OWNER_PATH);
+		assertIndex(registryFolder, hashA + "=" + ideA.getAbsolutePath());
 		Assert.assertTrue(workspaceA.isDirectory());
 
 		// get a workspace dir for ideB
 		File ideB = folder.newFolder("b");
 		File workspaceB = registry.workspaceDir("b", ideB);
-		String hashB = "b-" + ideB.getAbsolutePath().hashCode();
+		String hashB = "b-" + FileMisc.shortHash(ideB.getAbsolutePath());
 
 		// check the internals
 		assertFolderContents(registryFolder,
 				hashA + "/",
-				hashA + "-owner",
+				hashA + WorkspaceRegistry.OWNER_PATH,
 				hashB + "/",
-				hashB + "-owner");
+				hashB + WorkspaceRegistry.OWNER_PATH);
+		assertIndex(registryFolder,
+				hashA + "=" + ideA.getAbsolutePath(),
+				hashB + "=" + ideB.getAbsolutePath());
 		Assert.assertTrue(workspaceB.isDirectory());
 
 		// do a clean
-		registry.clean();
+		Assert.assertEquals(0, registry.cleanAndWait());
 
 		// no change
 		assertFolderContents(registryFolder,
 				hashA + "/",
-				hashA + "-owner",
+				hashA + WorkspaceRegistry.OWNER_PATH,
 				hashB + "/",
-				hashB + "-owner");
+				hashB + WorkspaceRegistry.OWNER_PATH);
 		Assert.assertTrue(workspaceB.isDirectory());
 
 		// remove ideB and clean, its workspace should go away
 		FileMisc.forceDelete(ideB);
-		registry.clean();
+		Files.write(new File(workspaceB, "content").toPath(), new byte[100]);
+		Assert.assertEquals(100, registry.cleanAndWait());
 		assertFolderContents(registryFolder,
 				hashA + "/",
-				hashA + "-owner");
+				hashA + WorkspaceRegistry.OWNER_PATH,
+				WorkspaceRegistry.TRASH + "/");
+		assertIndex(registryFolder, hashA + "=" + ideA.getAbsolutePath());
 		Assert.assertTrue(workspaceA.isDirectory());
 
 		// create a new registry, it should have the same behavior
 		registry = new WorkspaceRegistry(registryFolder);
-		registry.clean();
+		Assert.assertEquals(workspaceA, registry.workspaceDir("a", ideA));
+		registry.cleanAndWait();
 		assertFolderContents(registryFolder,
 				hashA + "/",
-				hashA + "-owner");
+				hashA + WorkspaceRegistry.OWNER_PATH,
+				WorkspaceRegistry.TRASH + "/");
 
 		// remove ideA and clean
 		FileMisc.forceDelete(ideA);
-		registry.clean();
-		assertFolderContents(registryFolder);
+		registry.cleanAndWait();
+		assertFolderContents(registryFolder,
+				WorkspaceRegistry.TRASH + "/");
+		assertIndex(registryFolder);
 	}
 
+	@Test
+	public void migratesLegacyTokens() throws IOException {
+		File registryFolder = folder.newFolder("registry");
+		File ideA = folder.newFolder("a");
+		String legacyA = "a-" + ideA.getAbsolutePath().hashCode();
+		FileMisc.mkdirs(new File(registryFolder, legacyA));
+		FileMisc.writeToken(registryFolder, legacyA + WorkspaceRegistry.OWNER_PATH, ideA.getAbsolutePath());
+		FileMisc.mkdirs(new File(registryFolder, "orphan-without-token"));
+
+		WorkspaceRegistry registry = new WorkspaceRegistry(registryFolder);
+		// the token stays, because older versions of goomph delete workspaces without one
+		assertFolderContents(registryFolder, legacyA + "/", legacyA + WorkspaceRegistry.OWNER_PATH);
+		assertIndex(registryFolder, legacyA + "=" + ideA.getAbsolutePath());
+		Assert.assertEquals(new File(registryFolder, legacyA), registry.workspaceDir("a", ideA));
+	}
+
+	@Test
+	public void indexesLegacyWorkspacesCreatedLater() throws IOException {
+		File registryFolder = folder.newFolder("registry");
+		File ideA = folder.newFolder("a");
+		WorkspaceRegistry registry = new WorkspaceRegistry(registryFolder);
+		String hashA = "a-" + FileMisc.shortHash(ideA.getAbsolutePath());
+		registry.workspaceDir("a", ideA);
+
+		// an older goomph creates a workspace after the index exists
+		File ideB = folder.newFolder("b");
+		String legacyB = "b-" + ideB.getAbsolutePath().hashCode();
+		FileMisc.writeToken(registryFolder, legacyB + WorkspaceRegistry.OWNER_PATH, ideB.getAbsolutePath());
+		FileMisc.mkdirs(new File(registryFolder, legacyB));
+
+		registry = new WorkspaceRegistry(registryFolder);
+		assertIndex(registryFolder, hashA + "=" + ideA.getAbsolutePath(), legacyB + "=" + ideB.getAbsolutePath());
+
+		// and it gets cleaned along with its token
+		FileMisc.forceDelete(ideB);
+		registry.cleanAndWait();
+		assertFolderContents(registryFolder,
+				hashA + "/",
+				hashA + WorkspaceRegistry.OWNER_PATH,
+				WorkspaceRegistry.TRASH + "/");
+		assertIndex(registryFolder, hashA + "=" + ideA.getAbsolutePath());
+	}
+
+	/** Asserts the folder contents, ignoring the index and its lock. */
 	static void assertFolderContents(File folder, String... contents) {
-		String actual = FileMisc.list(folder).stream().map(file -> file.getName() + (file.isFile() ? "" : "/")).sorted().collect(Collectors.joining("\n"));
+		String actual = FileMisc.list(folder).stream()
+				.filter(file -> !file.getName().equals(WorkspaceRegistry.INDEX) && !file.getName().equals(WorkspaceRegistry.LOCK))
+				.map(file -> file.getName() + (file.isFile() ? "" : "/")).sorted().collect(Collectors.joining("\n"));
 		String expected = Arrays.asList(contents).stream().sorted().collect(Collectors.joining("\n"));
 		Assert.assertEquals(expected, actual);
 	}
+
+	static void assertIndex(File folder, String... entries) throws IOException {
+		String actual = ConfigMisc.loadProps(new File(folder, WorkspaceRegistry.INDEX)).entrySet().stream()
+				.map(entry -> entry.getKey() + "=" + entry.getValue()).sorted().collect(Collectors.joining("\n"));
+		String expected = Arrays.asList(entries).stream().sorted().collect(Collectors.joining("\n"));
+		Assert.assertEquals(expected, actual);
+	}
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.osgi;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.Jar;
+import com.diffplug.common.collect.ImmutableMap;
+import com.diffplug.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BndClasspathSummariesTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final Map<String, String> EXPORT_CONTENTS = ImmutableMap.of("-exportcontents", "test.*");
+
+	@Test
+	public void summarizes() throws Exception {
+		File dependency = dependency();
+		Set<String> expected;
+		try (Jar real = new Jar(dependency)) {
+			expected = new TreeSet<>(real.getDirectories().keySet());
+		}
+		File cacheFile = new File(folder.getRoot(), "cache");
+		try (Analyzer analyzer = analyzer(cacheFile, EXPORT_CONTENTS, dependency)) {
+			assertSummary(expected, analyzer.getClasspath().get(0));
+		}
+		Assert.assertTrue(cacheFile.isFile());
+
+		// overwrite the jar with garbage of the same size and timestamp, and the cached summary is used
+		long lastModified = dependency.lastModified();
+		Files.write(dependency.toPath(), new byte[(int) dependency.length()]);
+		Assert.assertTrue(dependency.setLastModified(lastModified));
+		try (Analyzer analyzer = analyzer(cacheFile, EXPORT_CONTENTS, dependency)) {
+			assertSummary(expected, analyzer.getClasspath().get(0));
+		}
+	}
+
+	@Test
+	public void copyingFromClasspathNeedsTheRealJar() throws Exception {
+		File dependency = dependency();
+		try (Analyzer analyzer = analyzer(new File(folder.getRoot(), "cache"), ImmutableMap.of("Private-Package", "a"), dependency)) {
+			Assert.assertEquals("not really a class", read(analyzer.getClasspath().get(0), "a/A.class"));
+		}
+	}
+
+	@Test
+	public void keepsAnnotationTypes() throws Exception {
+		File jar = folder.newFile("annotations.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			put(output, "org/junit/Test.class", classFile(Test.class));
+			put(output, "org/junit/Assert.class", classFile(Assert.class));
+		}
+		try (Analyzer analyzer = analyzer(new File(folder.getRoot(), "cache"), EXPORT_CONTENTS, jar)) {
+			Jar summary = analyzer.getClasspath().get(0);
+			Assert.assertNotNull(summary.getResource("org/junit/Test.class"));
+			Assert.assertNull(summary.getResource("org/junit/Assert.class"));
+		}
+	}
+
+	private static byte[] classFile(Class<?> clazz) throws Exception {
+		try (InputStream input = clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+			return ByteStreams.toByteArray(input);
+		}
+	}
+
+	/** The summary has the same packages as the real jar, along with its manifest and version files, but none of its classes. */
+	private static void assertSummary(Set<String> expected, Jar summary) throws Exception {
+		Assert.assertEquals(expected, new TreeSet<>(summary.getDirectories().keySet()));
+		Assert.assertEquals("a;version=\"1.2.0\"", summary.getManifest().getMainAttributes().getValue("Export-Package"));
+		Assert.assertEquals("version 2.0", read(summary, "b/packageinfo"));
+		Assert.assertNull(summary.getResource("a/A.class"));
+		Assert.assertNotNull(summary.getResource("c/sub/" + BndClasspathSummaries.PLACEHOLDER));
+	}
+
+	private static Analyzer analyzer(File cacheFile, Map<String, String> instructions, File dependency) throws Exception {
+		Analyzer analyzer = new Analyzer();
+		new BndClasspathSummaries(cacheFile).addClasspath(analyzer, instructions, Collections.singletonList(dependency));
+		Assert.assertEquals(1, analyzer.getClasspath().size());
+		return analyzer;
+	}
+
+	private File dependency() throws Exception {
+		File jar = folder.newFile("dependency.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			put(output, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nExport-Package: a;version=\"1.2.0\"\r\n\r\n");
+			put(output, "a/A.class", "not really a class");
+			put(output, "b/packageinfo", "version 2.0");
+			put(output, "b/B.class", "not really a class");
+			put(output, "c/sub/C.class", "not really a class");
+			put(output, "root.txt", "in the default package");
+		}
+		return jar;
+	}
+
+	private static void put(ZipOutputStream output, String name, String content) throws Exception {
+		put(output, name, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void put(ZipOutputStream output, String name, byte[] content) throws Exception {
+		output.putNextEntry(new ZipEntry(name));
+		output.write(content);
+		output.closeEntry();
+	}
+
+	private static String read(Jar jar, String path) throws Exception {
+		try (InputStream input = jar.getResource(path).openInputStream()) {
+			return new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.osgi;
+
+import com.diffplug.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BndManifestCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void fingerprint() throws IOException {
+		File base = folder.getRoot();
+		File classes = folder.newFolder("classes");
+		File api = new File(classes, "test/Api.class");
+		api.getParentFile().mkdirs();
+		Files.write(api.toPath(), new byte[]{1, 2, 3});
+		File dependency = folder.newFile("dependency.jar");
+		Map<String, String> instructions = ImmutableMap.of("Bundle-SymbolicName", "test");
+		List<File> contents = Collections.singletonList(classes);
+		List<File> classpath = Collections.singletonList(dependency);
+
+		String original = BndManifestCache.fingerprint(instructions, false, base, contents, classpath);
+		Assert.assertEquals(original, BndManifestCache.fingerprint(instructions, false, base, contents, classpath));
+		// empty folders are ignored, which is safe because the plugin deletes them before bnd sees them
+		new File(classes, "empty").mkdirs();
+		Assert.assertEquals(original, BndManifestCache.fingerprint(instructions, false, base, contents, classpath));
+		BndManifestPlugin.deleteEmptyFoldersIfExists(classes);
+		Assert.assertFalse(new File(classes, "empty").exists());
+		Assert.assertTrue(api.isFile());
+
+		Assert.assertNotEquals(original, BndManifestCache.fingerprint(ImmutableMap.of("Bundle-SymbolicName", "other"), false, base, contents, classpath));
+		Assert.assertNotEquals(original, BndManifestCache.fingerprint(instructions, true, base, contents, classpath));
+		Files.write(api.toPath(), new byte[]{1, 2, 4});
+		String changedClass = BndManifestCache.fingerprint(instructions, false, base, contents, classpath);
+		Assert.assertNotEquals(original, changedClass);
+		Files.write(dependency.toPath(), new byte[]{1});
+		Assert.assertNotEquals(changedClass, BndManifestCache.fingerprint(instructions, false, base, contents, classpath));
+	}
+
+	@Test
+	public void fingerprintReferencedFiles() throws IOException {
+		File base = folder.getRoot();
+		List<File> contents = Collections.singletonList(folder.newFolder("classes"));
+		File extra = new File(base, "src/extra.txt");
+		extra.getParentFile().mkdirs();
+		Files.write(extra.toPath(), new byte[]{1});
+		Map<String, String> instructions = ImmutableMap.of(
+				"-includeresource", "{OSGI-INF/extra.txt=src/extra.txt}",
+				"Bundle-ClassPath", ".");
+
+		String original = BndManifestCache.fingerprint(instructions, false, base, contents, Collections.emptyList());
+		Files.write(extra.toPath(), new byte[]{2});
+		String changedFile = BndManifestCache.fingerprint(instructions, false, base, contents, Collections.emptyList());
+		Assert.assertNotEquals(original, changedFile);
+		// the project dir holds the contents, so it isn't hashed as a whole
+		Files.write(new File(base, "unrelated.txt").toPath(), new byte[]{1});
+		Assert.assertEquals(changedFile, BndManifestCache.fingerprint(instructions, false, base, contents, Collections.emptyList()));
+	}
+
+	@Test
+	public void isCacheable() {
+		Assert.assertTrue(BndManifestCache.isCacheable(ImmutableMap.of("-exportcontents", "com.diffplug.*")));
+		Assert.assertFalse(BndManifestCache.isCacheable(ImmutableMap.of("Bnd-Built", "${tstamp}")));
+		Assert.assertFalse(BndManifestCache.isCacheable(ImmutableMap.of("-include", "common.bnd")));
+	}
+
+	@Test
+	public void hasMacros() {
+		Assert.assertFalse(BndManifestCache.hasMacros(ImmutableMap.of("-exportcontents", "com.diffplug.*")));
+		Assert.assertTrue(BndManifestCache.hasMacros(ImmutableMap.of("Bnd-Built", "${tstamp}")));
+		Assert.assertTrue(BndManifestCache.hasMacros(ImmutableMap.of("Bnd-Built", "$(tstamp)")));
+	}
+
+	@Test
+	public void restamp() throws IOException {
+		BndManifestCache cache = new BndManifestCache(new File(folder.getRoot(), "cache"));
+		Assert.assertNull(cache.get("fingerprint", "1.0.0", false));
+
+		byte[] manifest = manifest("Manifest-Version: 1.0", "Bundle-SymbolicName: test", "Bundle-Version: 1.0.0.I202601010000");
+		cache.put("fingerprint", "1.0.0.I202601010000", manifest);
+		Assert.assertArrayEquals(manifest, cache.get("fingerprint", "1.0.0.I202601010000", false));
+		Assert.assertNull(cache.get("other", "1.0.0.I202601010000", false));
+
+		Manifest restamped = new Manifest(new ByteArrayInputStream(cache.get("fingerprint", "1.0.0.I202601010001", false)));
+		Assert.assertEquals("1.0.0.I202601010001", restamped.getMainAttributes().getValue("Bundle-Version"));
+		Assert.assertEquals("test", restamped.getMainAttributes().getValue("Bundle-SymbolicName"));
+
+		// an explicit Bundle-Version can't be re-stamped
+		cache.put("fingerprint", "1.0.0", manifest("Manifest-Version: 1.0", "Bundle-Version: 2.0.0"));
+		Assert.assertNull(cache.get("fingerprint", "1.0.1", false));
+
+		// and when the instructions set it, it's used as-is, even if it happens to match the old project version
+		byte[] explicit = manifest("Manifest-Version: 1.0", "Bundle-Version: 1.0.0");
+		cache.put("fingerprint", "1.0.0", explicit);
+		Assert.assertArrayEquals(explicit, cache.get("fingerprint", "1.0.1", true));
+	}
+
+	private static byte[] manifest(String... lines) {
+		return (String.join("\r\n", Arrays.asList(lines)) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -23,6 +23,8 @@ import com.diffplug.gradle.GradleIntegrationTest;
 import com.diffplug.gradle.ZipMisc;
 import java.io.File;
 import java.io.IOException;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -40,6 +42,13 @@ public class BndManifestPluginTest extends GradleIntegrationTest {
 		Assert.assertEquals(generatedManifest().trim(), read("customlocation").trim());
 	}
 
+	@Test
+	public void assertComputeBeforeJar() throws IOException {
+		CleanedAssert.assumeJre8();
+		testCase("osgiBndManifest { computeBeforeJar true }", generatedManifest());
+		Assert.assertEquals(generatedManifest().trim(), read("build/bndManifest/jar/MANIFEST.MF").trim());
+	}
+
 	@Test
 	public void assertNoMerging() throws IOException {
 		CleanedAssert.assumeJre8();
@@ -179,11 +188,91 @@ public class BndManifestPluginTest extends GradleIntegrationTest {
 		testCase(buildscriptAddendum, expected, "customJar");
 	}
 
+	@Test
+	public void assertEmptyFoldersNotExported() throws IOException {
+		CleanedAssert.assumeJre8();
+		testCase(EMPTY_PACKAGE, generatedManifest());
+	}
+
+	@Test
+	public void assertEmptyFoldersNotExportedComputeBeforeJar() throws IOException {
+		CleanedAssert.assumeJre8();
+		testCase(EMPTY_PACKAGE + "\nosgiBndManifest { computeBeforeJar true }", generatedManifest());
+		// the outputs of compileJava are left alone
+		Assert.assertTrue(file("build/classes/java/main/test/empty").isDirectory());
+	}
+
+	@Test
+	public void assertIncludeResourceComputeBeforeJar() throws IOException {
+		CleanedAssert.assumeJre8();
+		writeProject(StringPrinter.buildStringFromLines(
+				"jar.manifest.attributes('-includeresource': 'extra.txt')",
+				"osgiBndManifest { computeBeforeJar true }"));
+		write("extra.txt", "extra");
+		BuildResult result = gradleRunner().withArguments("jar", "--stacktrace").buildAndFail();
+		Assert.assertTrue(result.getOutput(), result.getOutput().contains("-includeresource changes the content of the jar"));
+	}
+
+	/** An empty folder in the classes dir, which would match `-exportcontents: test.*`. */
+	private static final String EMPTY_PACKAGE = "compileJava.doLast { file('build/classes/java/main/test/empty').mkdirs() }";
+
+	@Test
+	public void assertSnapshotComputeBeforeJar() throws IOException {
+		CleanedAssert.assumeJre8();
+		writeProject(StringPrinter.buildStringFromLines(
+				"version = '1.0.0-SNAPSHOT'",
+				"osgiBndManifest { computeBeforeJar true }"));
+		BuildResult result = gradleRunner().withArguments("jar", "--stacktrace").build();
+		Assert.assertEquals(TaskOutcome.SUCCESS, result.task(":jarBndManifest").getOutcome());
+		// the timestamp isn't an input, so the manifest isn't recomputed
+		result = gradleRunner().withArguments("jar", "--stacktrace").build();
+		Assert.assertEquals(TaskOutcome.UP_TO_DATE, result.task(":jarBndManifest").getOutcome());
+
+		File jar = FileMisc.list(file("build/libs")).get(0);
+		String manifestContent = ZipMisc.read(jar, "META-INF/MANIFEST.MF");
+		Assert.assertTrue(manifestContent, manifestContent.matches("(?s).*\\nBundle-Version: 1\\.0\\.0\\.I\\d{12}\\r?\\n.*"));
+	}
+
+	@Test
+	public void assertSummariesKeepMetaAnnotations() throws IOException {
+		CleanedAssert.assumeJre8();
+		write("src/main/java/test/Component.java",
+				"package test;",
+				"",
+				"@org.osgi.service.component.annotations.Component",
+				"public class Component {}");
+		String dependency = "dependencies { compile 'org.osgi:org.osgi.service.component.annotations:1.4.0' }";
+		for (boolean computeBeforeJar : new boolean[]{false, true}) {
+			String addendum = dependency + "\nosgiBndManifest { computeBeforeJar " + computeBeforeJar + " }";
+			String withoutSummaries = manifestOf(addendum);
+			// @Component is meta-annotated with @RequireServiceComponentRuntime
+			Assert.assertTrue(withoutSummaries, withoutSummaries.contains("osgi.extender"));
+			Assert.assertEquals(withoutSummaries, manifestOf(addendum + "\nosgiBndManifest { summarizeClasspath true }"));
+		}
+	}
+
+	private String manifestOf(String buildscriptAddendum) throws IOException {
+		writeProject(buildscriptAddendum);
+		gradleRunner().withArguments("clean", "jar", "--stacktrace").build();
+		return ZipMisc.read(FileMisc.list(file("build/libs")).get(0), "META-INF/MANIFEST.MF");
+	}
+
 	private void testCase(String buildscriptAddendum, String expectedManifest) throws IOException {
 		testCase(buildscriptAddendum, expectedManifest, "jar");
 	}
 
 	private void testCase(String buildscriptAddendum, String expectedManifest, String task) throws IOException {
+		writeProject(buildscriptAddendum);
+		gradleRunner().withArguments(task, "--stacktrace").build();
+
+		// make sure the jar contains the proper manifest
+		File libsDir = file("build/libs");
+		File jar = FileMisc.list(libsDir).get(0);
+		String manifestContent = ZipMisc.read(jar, "META-INF/MANIFEST.MF");
+		Assert.assertEquals(expectedManifest.trim(), manifestContent.trim());
+	}
+
+	private void writeProject(String buildscriptAddendum) throws IOException {
 		write("build.gradle",
 				"plugins {",
 				"    id 'java'",
@@ -207,13 +296,6 @@ public class BndManifestPluginTest extends GradleIntegrationTest {
 				"		return new StringPrinter(str -> {});",
 				"	}",
 				"}");
-		gradleRunner().withArguments(task, "--stacktrace").build();
-
-		// make sure the jar contains the proper manifest
-		File libsDir = file("build/libs");
-		File jar = FileMisc.list(libsDir).get(0);
-		String manifestContent = ZipMisc.read(jar, "META-INF/MANIFEST.MF");
-		Assert.assertEquals(expectedManifest.trim(), manifestContent.trim());
 	}
 
 	private String generatedManifest() {
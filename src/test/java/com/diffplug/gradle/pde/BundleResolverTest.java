@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BundleResolverTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File plugins;
+
+	@Before
+	public void before() throws IOException {
+		GoomphCacheLocations.override_pluginCatalog = folder.newFolder("cache");
+		plugins = folder.newFolder("plugins");
+		jar("app", "1.0.0",
+				"Require-Bundle", "lib;bundle-version=\"[1.0.0,2.0.0)\",swt,system.bundle,unused;resolution:=optional",
+				"Import-Package", "pkg.api;version=\"[1.0,2)\",pkg.own,javax.xml.parsers,java.util,missing.optional;resolution:=optional",
+				"Export-Package", "pkg.own",
+				"Bundle-RequiredExecutionEnvironment", "JavaSE-11");
+		jar("lib", "1.0.0");
+		jar("lib", "1.5.0", "Require-Bundle", "transitive");
+		jar("lib", "2.0.0");
+		jar("transitive", "1.0.0");
+		jar("api", "3.0.0", "Export-Package", "pkg.api;version=\"1.2.0\",pkg.api.internal;x-internal:=true");
+		jar("org.eclipse.osgi", "3.20.0", "Export-Package", "org.osgi.framework;version=\"1.10\"");
+		jar("swt", "3.120.0");
+		jar("swt.linux", "3.120.0", "Fragment-Host", "swt;bundle-version=\"[3.100.0,4.0.0)\"", "Eclipse-PlatformFilter", "(osgi.os=linux)");
+		jar("swt.nl_de", "3.120.0", "Fragment-Host", "swt");
+		jar("unused", "1.0.0");
+		jar("broken", "1.0.0",
+				"Import-Package", "missing.pkg",
+				"Require-Bundle", "lib;bundle-version=\"[3.0.0,4.0.0)\"",
+				"Bundle-RequiredExecutionEnvironment", "JavaSE-17");
+	}
+
+	@After
+	public void after() {
+		GoomphCacheLocations.override_pluginCatalog = null;
+	}
+
+	@Test
+	public void closure() {
+		BundleResolver.Result result = new BundleResolver(catalog()).executionEnvironment("JavaSE-11").resolve(Collections.singletonList("app"));
+		Assert.assertEquals(Collections.emptyList(), result.unresolved);
+		Assert.assertEquals(Arrays.asList("api 3.0.0", "app 1.0.0", "lib 1.5.0", "org.eclipse.osgi 3.20.0", "swt 3.120.0", "swt.linux 3.120.0", "transitive 1.0.0"), describe(result));
+	}
+
+	@Test
+	public void closureFromCache() {
+		// the first catalog fills the cache, and the second is read entirely from it
+		catalog();
+		BundleResolver.Result result = new BundleResolver(catalog()).resolve(Collections.singletonList("app"));
+		Assert.assertEquals(Collections.emptyList(), result.unresolved);
+		Assert.assertEquals(7, result.plugins.size());
+	}
+
+	@Test
+	public void unresolved() {
+		BundleResolver.Result result = new BundleResolver(catalog()).executionEnvironment("JavaSE-11").resolve(Arrays.asList("broken", "nope"));
+		Assert.assertEquals(Arrays.asList(
+				"No such plugin: nope",
+				"broken 1.0.0 requires Bundle-RequiredExecutionEnvironment [JavaSE-17]",
+				"broken 1.0.0 is missing Require-Bundle lib [3.0.0,4.0.0)",
+				"broken 1.0.0 is missing Import-Package missing.pkg"), result.unresolved);
+	}
+
+	@Test
+	public void javaVersion() {
+		Assert.assertEquals(8, BundleResolver.javaVersion("JavaSE-1.8"));
+		Assert.assertEquals(5, BundleResolver.javaVersion("J2SE-1.5"));
+		Assert.assertEquals(17, BundleResolver.javaVersion("JavaSE-17"));
+		Assert.assertEquals(0, BundleResolver.javaVersion("OSGi/Minimum-1.2"));
+	}
+
+	private PluginCatalog catalog() {
+		List<SwtPlatform> linux = SwtPlatform.getAll().stream()
+				.filter(platform -> platform.getOs().equals("linux"))
+				.collect(Collectors.toList());
+		ExplicitVersionPolicy policy = new ExplicitVersionPolicy();
+		policy.resolve("lib", "1.0.0", "1.5.0", "2.0.0").with("2.0.0");
+		return new PluginCatalog(policy, linux, Collections.singletonList(plugins));
+	}
+
+	private static List<String> describe(BundleResolver.Result result) {
+		return result.plugins.entries().stream()
+				.map(entry -> entry.getKey() + " " + entry.getValue())
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	private void jar(String name, String version, String... headers) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", name);
+		manifest.getMainAttributes().putValue("Bundle-Version", version);
+		for (int i = 0; i < headers.length; i += 2) {
+			manifest.getMainAttributes().putValue(headers[i], headers[i + 1]);
+		}
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(plugins, name + "_" + version + ".jar")), manifest)) {
+			// just the manifest
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarManifestReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void deflatedWithDataDescriptor() throws IOException {
+		// JarOutputStream writes META-INF/ and then META-INF/MANIFEST.MF, both with data descriptors
+		File jar = folder.newFile("deflated.jar");
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar), manifest("deflated"))) {
+			output.putNextEntry(new ZipEntry("a/B.class"));
+			output.write(new byte[1000]);
+		}
+		Assert.assertNotNull(JarManifestReader.readLeading(jar));
+		Assert.assertEquals("deflated", name(JarManifestReader.read(jar)));
+	}
+
+	@Test
+	public void stored() throws IOException {
+		File jar = folder.newFile("stored.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			putStored(output, "META-INF/", new byte[0]);
+			putStored(output, "META-INF/MANIFEST.MF", bytes(manifest("stored")));
+		}
+		Assert.assertNotNull(JarManifestReader.readLeading(jar));
+		Assert.assertEquals("stored", name(JarManifestReader.read(jar)));
+	}
+
+	@Test
+	public void manifestNotAtStart() throws IOException {
+		File jar = folder.newFile("late.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (int i = 0; i < 10; ++i) {
+				output.putNextEntry(new ZipEntry("a/B" + i + ".class"));
+				output.write(new byte[100]);
+			}
+			output.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			manifest("late").write(output);
+		}
+		// not one of the leading entries, so we have to read the central directory
+		Assert.assertNull(JarManifestReader.readLeading(jar));
+		Assert.assertEquals("late", name(JarManifestReader.read(jar)));
+	}
+
+	@Test
+	public void noManifest() throws IOException {
+		File jar = folder.newFile("none.jar");
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+			output.putNextEntry(new ZipEntry("a/B.class"));
+			output.write(new byte[100]);
+		}
+		Assert.assertNull(JarManifestReader.read(jar));
+	}
+
+	private static Manifest manifest(String name) {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", name);
+		return manifest;
+	}
+
+	private static byte[] bytes(Manifest manifest) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		manifest.write(output);
+		return output.toByteArray();
+	}
+
+	private static String name(Manifest manifest) {
+		return manifest.getMainAttributes().getValue("Bundle-SymbolicName");
+	}
+
+	private static void putStored(ZipOutputStream output, String name, byte[] content) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(content.length);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		entry.setCrc(crc.getValue());
+		output.putNextEntry(entry);
+		output.write(content);
+	}
+}
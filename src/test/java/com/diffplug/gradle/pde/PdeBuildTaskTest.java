@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PdeBuildTaskTest {
+	@Test
+	public void shard() {
+		List<SwtPlatform> all = SwtPlatform.getAll();
+		Assert.assertEquals(Arrays.asList(all), PdeBuildTask.shard(all, 1));
+
+		List<List<SwtPlatform>> two = PdeBuildTask.shard(all, 2);
+		Assert.assertEquals(2, two.size());
+		Assert.assertEquals(all.size(), two.get(0).size() + two.get(1).size());
+		Assert.assertEquals(all.get(0), two.get(0).get(0));
+		Assert.assertEquals(all.get(1), two.get(1).get(0));
+
+		// never more shards than platforms
+		Assert.assertEquals(all.size(), PdeBuildTask.shard(all, all.size() + 5).size());
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginCatalogCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File plugins;
+
+	@Before
+	public void before() throws IOException {
+		GoomphCacheLocations.override_pluginCatalog = folder.newFolder("cache");
+		plugins = folder.newFolder("plugins");
+	}
+
+	@After
+	public void after() {
+		GoomphCacheLocations.override_pluginCatalog = null;
+	}
+
+	@Test
+	public void reusesUnchangedPlugins() throws IOException {
+		File a = jar("a_1.0.0.jar", "a;singleton:=true", "1.0.0", null);
+		jar("b_2.0.0.jar", "b", "2.0.0", null);
+		Assert.assertEquals(Arrays.asList("a 1.0.0", "b 2.0.0"), entries(SwtPlatform.getAll()));
+
+		// overwrite a with garbage of the same size and timestamp, and the cached entry is used
+		long lastModified = a.lastModified();
+		byte[] garbage = new byte[(int) a.length()];
+		Files.write(a.toPath(), garbage);
+		Assert.assertTrue(a.setLastModified(lastModified));
+		Assert.assertEquals(Arrays.asList("a 1.0.0", "b 2.0.0"), entries(SwtPlatform.getAll()));
+
+		// change its timestamp, and it gets reread
+		jar("a_1.0.0.jar", "a", "1.0.1", null);
+		Assert.assertTrue(a.setLastModified(lastModified + 2000));
+		Assert.assertEquals(Arrays.asList("a 1.0.1", "b 2.0.0"), entries(SwtPlatform.getAll()));
+
+		// removed plugins are removed
+		Files.delete(a.toPath());
+		Assert.assertEquals(Arrays.asList("b 2.0.0"), entries(SwtPlatform.getAll()));
+	}
+
+	@Test
+	public void folderPlugins() throws IOException {
+		File manifest = new File(plugins, "c_3.0.0/META-INF/MANIFEST.MF");
+		Assert.assertTrue(manifest.getParentFile().mkdirs());
+		try (FileOutputStream output = new FileOutputStream(manifest)) {
+			manifest("c", "3.0.0", null).write(output);
+		}
+		Assert.assertTrue(new File(plugins, "notAPlugin").mkdirs());
+		Assert.assertEquals(Arrays.asList("c 3.0.0"), entries(SwtPlatform.getAll()));
+		Assert.assertEquals(Arrays.asList("c 3.0.0"), entries(SwtPlatform.getAll()));
+	}
+
+	@Test
+	public void jarsWithoutManifestAreCached() throws IOException {
+		jar("a_1.0.0.jar", "a", "1.0.0", null);
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(new File(plugins, "notAPlugin.jar")))) {
+			output.putNextEntry(new ZipEntry("readme.txt"));
+		}
+		Assert.assertEquals(Arrays.asList("a 1.0.0"), entries(SwtPlatform.getAll()));
+
+		// nothing changed, so the cache isn't rewritten
+		File cacheFile = GoomphCacheLocations.pluginCatalog().listFiles()[0];
+		Assert.assertTrue(cacheFile.setLastModified(1000));
+		Assert.assertEquals(Arrays.asList("a 1.0.0"), entries(SwtPlatform.getAll()));
+		Assert.assertEquals(1000, cacheFile.lastModified());
+	}
+
+	@Test
+	public void platformFilterIsRecomputedWhenPlatformsChange() throws IOException {
+		jar("win_1.0.0.jar", "win", "1.0.0", "(& (osgi.ws=win32) (osgi.os=win32) (osgi.arch=x86_64))");
+		Assert.assertEquals(Arrays.asList("win 1.0.0"), entries(SwtPlatform.getAll()));
+		List<SwtPlatform> noWindows = SwtPlatform.getAll().stream()
+				.filter(platform -> !platform.getOs().equals("win32"))
+				.collect(Collectors.toList());
+		Assert.assertEquals(Arrays.asList("win 1.0.0 unsupported"), entries(noWindows));
+		Assert.assertEquals(Arrays.asList("win 1.0.0"), entries(SwtPlatform.getAll()));
+	}
+
+	@Test
+	public void eachPlatformSetHasItsOwnCache() throws IOException {
+		jar("win_1.0.0.jar", "win", "1.0.0", "(osgi.os=win32)");
+		List<SwtPlatform> noWindows = SwtPlatform.getAll().stream()
+				.filter(platform -> !platform.getOs().equals("win32"))
+				.collect(Collectors.toList());
+		entries(SwtPlatform.getAll());
+		entries(noWindows);
+		File[] cacheFiles = GoomphCacheLocations.pluginCatalog().listFiles();
+		Assert.assertEquals(2, cacheFiles.length);
+
+		// alternating between the two doesn't rewrite either of them
+		for (File cacheFile : cacheFiles) {
+			Assert.assertTrue(cacheFile.setLastModified(1000));
+		}
+		Assert.assertEquals(Arrays.asList("win 1.0.0"), entries(SwtPlatform.getAll()));
+		Assert.assertEquals(Arrays.asList("win 1.0.0 unsupported"), entries(noWindows));
+		for (File cacheFile : cacheFiles) {
+			Assert.assertEquals(1000, cacheFile.lastModified());
+		}
+	}
+
+	@Test
+	public void parallelMatchesSerial() throws IOException {
+		for (int i = 0; i < 100; ++i) {
+			jar("p" + i + "_1.0." + i + ".jar", "p" + i, "1.0." + i, i % 2 == 0 ? null : "(osgi.os=win32)");
+		}
+		List<String> serial = entries(SwtPlatform.getAll(), 1, false);
+		Assert.assertEquals(100, serial.size());
+		Files.delete(GoomphCacheLocations.pluginCatalog().listFiles()[0].toPath());
+		Assert.assertEquals(serial, entries(SwtPlatform.getAll(), 4, true));
+	}
+
+	private List<String> entries(List<SwtPlatform> supported) throws IOException {
+		return entries(supported, 1, true);
+	}
+
+	private List<String> entries(List<SwtPlatform> supported, int parallelism, boolean leadingEntries) throws IOException {
+		return new PluginCatalogCache(plugins, supported, parallelism, leadingEntries).entries(Arrays.asList(plugins.listFiles())).stream()
+				.map(entry -> entry.name + " " + entry.version + (entry.isSupportedPlatform ? "" : " unsupported"))
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	private File jar(String fileName, String name, String version, String platformFilter) throws IOException {
+		File jar = new File(plugins, fileName);
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar), manifest(name, version, platformFilter))) {
+			// just the manifest
+		}
+		return jar;
+	}
+
+	private static Manifest manifest(String name, String version, String platformFilter) {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", name);
+		manifest.getMainAttributes().putValue("Bundle-Version", version);
+		if (platformFilter != null) {
+			manifest.getMainAttributes().putValue("Eclipse-PlatformFilter", platformFilter);
+		}
+		return manifest;
+	}
+}
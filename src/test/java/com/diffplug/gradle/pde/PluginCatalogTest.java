@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginCatalogTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File root;
+
+	@Before
+	public void before() throws IOException {
+		GoomphCacheLocations.override_pluginCatalog = folder.newFolder("cache");
+		root = folder.newFolder("install");
+		for (String plugin : Arrays.asList("core", "ui", "swt", "swt.win32", "swt.linux", "extra")) {
+			plugin(plugin);
+		}
+		featureFolder("base", "1.0.0",
+				"<plugin id=\"core\" version=\"0.0.0\"/>",
+				"<plugin id=\"swt\" version=\"0.0.0\"/>",
+				"<plugin id=\"swt.win32\" version=\"0.0.0\" os=\"win32\" ws=\"win32\"/>",
+				"<plugin id=\"swt.linux\" version=\"0.0.0\" os=\"linux\" ws=\"gtk\"/>");
+		featureJar("ui", "1.0.0",
+				"<includes id=\"base\" version=\"1.0.0.qualifier\"/>",
+				"<includes id=\"missing\" version=\"0.0.0\" optional=\"true\"/>",
+				"<plugin id=\"ui\" version=\"0.0.0\"/>");
+		featureFolder("top", "2.0.0",
+				"<includes id=\"ui\" version=\"0.0.0\"/>",
+				"<includes id=\"base\" version=\"0.0.0\"/>",
+				"<includes id=\"windowsOnly\" version=\"0.0.0\" os=\"win32\"/>");
+		featureFolder("windowsOnly", "1.0.0", "<plugin id=\"extra\" version=\"0.0.0\"/>");
+	}
+
+	@After
+	public void after() {
+		GoomphCacheLocations.override_pluginCatalog = null;
+	}
+
+	@Test
+	public void transitiveFeatures() {
+		PluginCatalog linux = catalog("linux");
+		Assert.assertEquals(set("core", "swt", "swt.linux", "ui"), linux.getPluginsForFeatures(Collections.singletonList("top")));
+
+		PluginCatalog windows = catalog("win32");
+		Assert.assertEquals(set("core", "swt", "swt.win32", "ui", "extra"), windows.getPluginsForFeatures(Collections.singletonList("top")));
+		Assert.assertEquals(set("core", "swt", "swt.win32"), windows.getPluginsForFeatures(Collections.singletonList("base")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingFeature() {
+		catalog("linux").getPluginsForFeatures(Collections.singletonList("nope"));
+	}
+
+	@Test
+	public void jarWithoutFeatureXml() throws IOException {
+		File jar = new File(root, "features/notAFeature_1.0.0.jar");
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+			output.putNextEntry(new ZipEntry("readme.txt"));
+		}
+		Assert.assertNull(FeatureXml.read(jar));
+		Assert.assertEquals(set("core", "swt", "swt.linux", "ui"), catalog("linux").getPluginsForFeatures(Collections.singletonList("ui")));
+	}
+
+	private PluginCatalog catalog(String os) {
+		List<SwtPlatform> platforms = SwtPlatform.getAll().stream()
+				.filter(platform -> platform.getOs().equals(os))
+				.collect(Collectors.toList());
+		return new PluginCatalog(new ExplicitVersionPolicy(), platforms, Collections.singletonList(root));
+	}
+
+	private static LinkedHashSet<String> set(String... values) {
+		return new LinkedHashSet<>(Arrays.asList(values));
+	}
+
+	private void plugin(String name) throws IOException {
+		File plugins = new File(root, "plugins");
+		plugins.mkdirs();
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", name);
+		manifest.getMainAttributes().putValue("Bundle-Version", "1.0.0");
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(plugins, name + "_1.0.0.jar")), manifest)) {
+			// just the manifest
+		}
+	}
+
+	private void featureFolder(String id, String version, String... children) throws IOException {
+		File feature = new File(root, "features/" + id + "_" + version);
+		feature.mkdirs();
+		Files.write(new File(feature, FeatureXml.FEATURE_XML).toPath(), featureXml(id, version, children));
+	}
+
+	private void featureJar(String id, String version, String... children) throws IOException {
+		File features = new File(root, "features");
+		features.mkdirs();
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(features, id + "_" + version + ".jar")))) {
+			output.putNextEntry(new ZipEntry(FeatureXml.FEATURE_XML));
+			output.write(featureXml(id, version, children));
+		}
+	}
+
+	private static byte[] featureXml(String id, String version, String... children) {
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<feature id=\"" + id + "\" label=\"%featureName\" version=\"" + version + "\">\n"
+				+ "   <description>%description</description>\n"
+				+ Arrays.stream(children).map(child -> "   " + child + "\n").collect(Collectors.joining())
+				+ "</feature>\n";
+		return xml.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.pde;
+
+import com.diffplug.common.swt.os.SwtPlatform;
+import com.diffplug.gradle.GoomphCacheLocations;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProductFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void before() throws IOException {
+		GoomphCacheLocations.override_pluginCatalog = folder.newFolder("cache");
+	}
+
+	@After
+	public void after() {
+		GoomphCacheLocations.override_pluginCatalog = null;
+	}
+
+	private static final String PRODUCT = String.join("\n",
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+			"<?pde version=\"3.5\"?>",
+			"<product name=\"Demo\" uid=\"demo\" id=\"demo.product\" application=\"demo.app\" version=\"0.0.0\" useFeatures=\"false\" includeLaunchers=\"true\">",
+			"   <launcherArgs>",
+			"      <programArgs>-consoleLog</programArgs>",
+			"      <vmArgsMac>-XstartOnFirstThread</vmArgsMac>",
+			"      <vmArgsLin/>",
+			"   </launcherArgs>",
+			"   <plugins>",
+			"      <plugin id=\"a\"/>",
+			"      <plugin",
+			"            id=\"b\"",
+			"            version=\"0.0.0\"/>",
+			"      <plugin id=\"win\" fragment=\"true\"/>",
+			"   </plugins>",
+			"   <features>",
+			"      <feature id=\"f\"/>",
+			"   </features>",
+			"   <configurations>",
+			"      <plugin id=\"a\" autoStart=\"true\" startLevel=\"2\" />",
+			"      <property name=\"osgi.instance.area.default\" value=\"@user.home/demo\" />",
+			"   </configurations>",
+			"</product>",
+			"");
+
+	@Test
+	public void parse() throws IOException {
+		ProductFile parsed = ProductFile.parse(write("demo.product", PRODUCT));
+		Assert.assertEquals("0.0.0", parsed.productAttributes().get("version"));
+		Assert.assertEquals("true", parsed.productAttributes().get("includeLaunchers"));
+		// the multi-line <plugin> is found, and the <configurations><plugin> is not mistaken for a plugin
+		Assert.assertEquals(Arrays.asList("a", "b", "win"), parsed.plugins());
+		Assert.assertEquals(Arrays.asList("f"), parsed.features());
+		Assert.assertEquals("2", parsed.pluginConfigurations().get("a").get("startLevel"));
+		Assert.assertEquals(Collections.singletonMap("osgi.instance.area.default", "@user.home/demo"), parsed.configurationProperties());
+		Assert.assertEquals("-consoleLog", parsed.launcherArgs().get("programArgs"));
+		Assert.assertEquals("-XstartOnFirstThread", parsed.launcherArgs().get("vmArgsMac"));
+		Assert.assertEquals("", parsed.launcherArgs().get("vmArgsLin"));
+	}
+
+	@Test
+	public void transform() throws IOException {
+		File plugins = folder.newFolder("plugins");
+		jar(plugins, "a", "1.0.0", null);
+		jar(plugins, "b", "1.0.0", null);
+		jar(plugins, "b", "2.0.0", null);
+		jar(plugins, "win", "1.0.0", "(osgi.os=win32)");
+		ExplicitVersionPolicy policy = new ExplicitVersionPolicy();
+		policy.resolve("b", "1.0.0", "2.0.0").with("1.0.0", "2.0.0");
+		List<SwtPlatform> linux = SwtPlatform.getAll().stream()
+				.filter(platform -> platform.getOs().equals("linux"))
+				.collect(Collectors.toList());
+		PluginCatalog catalog = new PluginCatalog(policy, linux, Collections.singletonList(plugins));
+
+		File output = new File(folder.getRoot(), "transformed.product");
+		ProductFile parsed = ProductFile.transform(write("demo.product", PRODUCT), output, catalog, "1.2.3");
+		Assert.assertEquals(Arrays.asList("a", "b", "win"), parsed.plugins());
+
+		String transformed = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(transformed, transformed.contains("id=\"demo.product\" application=\"demo.app\" version=\"1.2.3\""));
+		Assert.assertTrue(transformed, transformed.contains("      <plugin id=\"a\" version=\"1.0.0\"/>\n"));
+		Assert.assertTrue(transformed, transformed.contains("<plugin id=\"b\" version=\"1.0.0\"/>"));
+		Assert.assertTrue(transformed, transformed.contains("<plugin id=\"b\" version=\"2.0.0\"/>"));
+		Assert.assertFalse(transformed, transformed.contains("win"));
+		// everything else is untouched
+		Assert.assertTrue(transformed, transformed.contains("      <plugin id=\"a\" autoStart=\"true\" startLevel=\"2\"/>"));
+		Assert.assertTrue(transformed, transformed.contains("<vmArgsMac>-XstartOnFirstThread</vmArgsMac>"));
+		Assert.assertTrue(transformed, transformed.contains("<?pde version=\"3.5\"?>\n"));
+
+		// and the result is still a valid product file
+		Assert.assertEquals(Arrays.asList("a", "b", "b"), ProductFile.parse(output).plugins());
+	}
+
+	@Test
+	public void extractPropertiesFromLines() {
+		String[] lines = PRODUCT.split("\n");
+		Assert.assertEquals(Collections.singletonMap("includeLaunchers", "true"), ProductFileUtil.extractProperties(lines));
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static void jar(File plugins, String name, String version, String platformFilter) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", name);
+		manifest.getMainAttributes().putValue("Bundle-Version", version);
+		if (platformFilter != null) {
+			manifest.getMainAttributes().putValue("Eclipse-PlatformFilter", platformFilter);
+		}
+		try (JarOutputStream output = new JarOutputStream(new FileOutputStream(new File(plugins, name + "_" + version + ".jar")), manifest)) {
+			// just the manifest
+		}
+	}
+}